@@ -0,0 +1,143 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Minimal dependency-free micro-benchmark harness (JMH-style: warmup, timed iterations,
+ * results sink against dead-code elimination).
+ * Results are collected as rows and can be saved to / compared with a CSV file.
+ */
+public final class BenchmarkRunner {
+
+    /** Benchmark body: perform {@code ops} operations and return any value derived from them. */
+    public interface Op {
+        long run(int ops);
+    }
+
+    public static final class Result {
+        public final String name;
+        public final int size;
+        public final double density;
+        public final double nsPerOp;
+        public final double minNsPerOp;
+        public final double maxNsPerOp;
+
+        public Result(String name, int size, double density, double nsPerOp, double minNsPerOp, double maxNsPerOp) {
+            this.name = name;
+            this.size = size;
+            this.density = density;
+            this.nsPerOp = nsPerOp;
+            this.minNsPerOp = minNsPerOp;
+            this.maxNsPerOp = maxNsPerOp;
+        }
+
+        String key() {
+            return name + "|" + size + "|" + density;
+        }
+    }
+
+    // sink: result of every batch goes here so JIT cannot drop the work
+    private static volatile long sink;
+
+    private final long warmupNanos;
+    private final long iterationNanos;
+    private final int iterations;
+    private final List<Result> results = new ArrayList<>();
+
+    public BenchmarkRunner(long warmupMillis, long iterationMillis, int iterations) {
+        this.warmupNanos = warmupMillis * 1_000_000L;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+        this.iterations = Math.max(1, iterations);
+    }
+
+    public List<Result> results() {
+        return Collections.unmodifiableList(results);
+    }
+
+    public Result run(String name, int size, double density, Op op) {
+        // calibrate batch so one call takes ~1/10 of an iteration
+        int batch = 1;
+        long target = Math.max(1, iterationNanos / 10);
+        while (true) {
+            long t0 = System.nanoTime();
+            sink += op.run(batch);
+            long dt = System.nanoTime() - t0;
+            if (dt >= target || batch >= (1 << 28)) break;
+            batch = (dt <= 0) ? batch * 16 : (int) Math.min(1L << 28, Math.max(batch * 2L, batch * target / dt));
+        }
+
+        // warmup
+        long end = System.nanoTime() + warmupNanos;
+        while (System.nanoTime() < end) sink += op.run(batch);
+
+        double sum = 0, min = Double.MAX_VALUE, max = 0;
+        for (int i = 0; i < iterations; i++) {
+            long ops = 0;
+            long t0 = System.nanoTime();
+            long deadline = t0 + iterationNanos;
+            long now;
+            do {
+                sink += op.run(batch);
+                ops += batch;
+                now = System.nanoTime();
+            } while (now < deadline);
+            double ns = (double) (now - t0) / ops;
+            sum += ns;
+            min = Math.min(min, ns);
+            max = Math.max(max, ns);
+        }
+
+        Result r = new Result(name, size, density, sum / iterations, min, max);
+        results.add(r);
+        System.out.printf(Locale.ROOT, "%-28s n=%-5d density=%-4.2f %14.1f ns/op  [%.1f .. %.1f]%n",
+                name, size, density, r.nsPerOp, r.minNsPerOp, r.maxNsPerOp);
+        return r;
+    }
+
+    // ===== CSV =====
+
+    private static final String HEADER = "benchmark,size,density,ns_per_op,min_ns_per_op,max_ns_per_op";
+
+    public void save(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+        try (PrintWriter w = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            w.println(HEADER);
+            for (Result r : results) {
+                w.printf(Locale.ROOT, "%s,%d,%.2f,%.3f,%.3f,%.3f%n",
+                        r.name, r.size, r.density, r.nsPerOp, r.minNsPerOp, r.maxNsPerOp);
+            }
+        }
+    }
+
+    public static List<Result> load(File file) throws IOException {
+        List<Result> out = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line = in.readLine(); // header
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                String[] f = line.split(",");
+                out.add(new Result(f[0], Integer.parseInt(f[1]), Double.parseDouble(f[2]),
+                        Double.parseDouble(f[3]), Double.parseDouble(f[4]), Double.parseDouble(f[5])));
+            }
+        }
+        return out;
+    }
+
+    /** Prints current results against a baseline (ratio > 1 means slower than baseline). */
+    public void printComparison(List<Result> baseline, PrintStream out) {
+        Map<String, Result> base = new HashMap<>();
+        for (Result r : baseline) base.put(r.key(), r);
+
+        out.printf(Locale.ROOT, "%-28s %-6s %-7s %14s %14s %8s%n", "benchmark", "size", "density", "baseline", "current", "ratio");
+        for (Result r : results) {
+            Result b = base.get(r.key());
+            if (b == null) {
+                out.printf(Locale.ROOT, "%-28s %-6d %-7.2f %14s %14.1f %8s%n", r.name, r.size, r.density, "-", r.nsPerOp, "new");
+                continue;
+            }
+            out.printf(Locale.ROOT, "%-28s %-6d %-7.2f %14.1f %14.1f %8.2f%n",
+                    r.name, r.size, r.density, b.nsPerOp, r.nsPerOp, r.nsPerOp / b.nsPerOp);
+        }
+    }
+}
@@ -0,0 +1,425 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark suite for Board, GameEngine, GameState, TranspositionTable, PortalNetwork, EntityPlacer, PortalAnalysis, GridGeometry, BoardRenderer, MazeGenerator and MctsBot.
+ * Every benchmark is run for each (board size, wall density) pair.
+ *
+ * Usage:
+ *   java Benchmarks [--sizes 15,64,256,1024,4096] [--densities 0,0.25,0.5]
+ *                   [--only regex] [--warmup-ms 300] [--iteration-ms 300] [--iterations 5]
+ *                   [--out bench-results/run.csv] [--compare bench-results/baseline.csv]
+ */
+public final class Benchmarks {
+
+    private static final int SAMPLES = 4096; // power of two, see MASK
+    private static final int MASK = SAMPLES - 1;
+    private static final int IMAGE_SIZE = 1024;
+    private static final int CROWD = 256;
+    private static final int RESET_OPS = 1024;
+
+    /** Board + game state + random inputs for one (size, density) pair. */
+    static final class Fixture {
+        final int n;
+        final double density;
+        final Board board;
+        final GameState state;
+        final GameEngine engine;
+        final PortalNetwork portals = new PortalNetwork();
+        final TranspositionTable table = new TranspositionTable(SAMPLES);
+        final int portalGroups;
+        final int[] cells = new int[SAMPLES];
+        final int[] xs = new int[SAMPLES];
+        final int[] ys = new int[SAMPLES];
+        final Direction[] dirs = new Direction[SAMPLES];
+        final int[] portalQueryCells = new int[SAMPLES];
+        final GridMetrics pickMetrics;
+        final int[] mouseX = new int[SAMPLES];
+        final int[] mouseY = new int[SAMPLES];
+
+        Fixture(int n, double density, long seed) {
+            this.n = n;
+            this.density = density;
+            Random rnd = new Random(seed ^ (n * 31L) ^ Double.doubleToLongBits(density));
+
+            board = new Board(n);
+            for (int y = 0; y < n; y++) {
+                for (int x = 0; x < n - 1; x++) {
+                    if (rnd.nextDouble() < density) board.toggleVerticalWall(x, y);
+                }
+            }
+            for (int y = 0; y < n - 1; y++) {
+                for (int x = 0; x < n; x++) {
+                    if (rnd.nextDouble() < density) board.toggleHorizontalWall(x, y);
+                }
+            }
+
+            Direction[] all = Direction.values();
+            for (int i = 0; i < SAMPLES; i++) {
+                xs[i] = rnd.nextInt(n);
+                ys[i] = rnd.nextInt(n);
+                cells[i] = board.cellOf(xs[i], ys[i]);
+                dirs[i] = all[rnd.nextInt(all.length)];
+            }
+
+            // game without key/exit/minotaur: it never ends, so engine benchmarks run forever
+            state = new GameState();
+            state.setBoard(board);
+            state.clearEntitiesAndPlayers();
+            state.p1.setPosition(rnd.nextInt(n), rnd.nextInt(n));
+            state.p2.setPosition(rnd.nextInt(n), rnd.nextInt(n));
+            state.entities.add(EntityGrid.HOSPITAL, 0, 0);
+            portalGroups = Math.min(64, n);
+            for (int g = 0; g < portalGroups; g++) {
+                state.portals.addPairGroup();
+                for (int i = 0; i < 2; i++) {
+                    while (!state.portals.place(PortalNetwork.Type.PAIR, g, i, rnd.nextInt(n), rnd.nextInt(n))) {
+                        // retry occupied cell
+                    }
+                }
+            }
+            state.setMode(Mode.PLAY);
+            state.resetRunStateForPlay();
+            engine = new GameEngine(state);
+
+            portals.setBoardSize(n);
+            for (int g = 0; g < portalGroups; g++) portals.addPairGroup();
+            for (int i = 0; i < SAMPLES; i++) {
+                if ((i & 1) == 0) {
+                    // half of queries hit a portal
+                    int g = rnd.nextInt(portalGroups);
+                    int j = rnd.nextInt(2);
+                    PortalNetwork.Type t = PortalNetwork.Type.PAIR;
+                    portalQueryCells[i] = board.cellOf(state.portals.portalX(t, g, j), state.portals.portalY(t, g, j));
+                } else {
+                    portalQueryCells[i] = rnd.nextInt(n * n);
+                }
+            }
+
+            int cell = 12;
+            pickMetrics = new GridMetrics(n, cell, cell * n, GridGeometry.DEFAULT_PADDING, GridGeometry.DEFAULT_PADDING);
+            for (int i = 0; i < SAMPLES; i++) {
+                mouseX[i] = pickMetrics.startX + (int) (rnd.nextDouble() * pickMetrics.gridSize);
+                mouseY[i] = pickMetrics.startY + (int) (rnd.nextDouble() * pickMetrics.gridSize);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {15, 64, 256, 1024, 4096};
+        double[] densities = {0.0, 0.25, 0.5};
+        Pattern only = null;
+        long warmupMs = 300, iterationMs = 300;
+        int iterations = 5;
+        File out = new File("bench-results", "results-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".csv");
+        File compare = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            String v = (i + 1 < args.length) ? args[i + 1] : null;
+            switch (a) {
+                case "--sizes": sizes = Arrays.stream(v.split(",")).mapToInt(Integer::parseInt).toArray(); i++; break;
+                case "--densities": densities = Arrays.stream(v.split(",")).mapToDouble(Double::parseDouble).toArray(); i++; break;
+                case "--only": only = Pattern.compile(v); i++; break;
+                case "--warmup-ms": warmupMs = Long.parseLong(v); i++; break;
+                case "--iteration-ms": iterationMs = Long.parseLong(v); i++; break;
+                case "--iterations": iterations = Integer.parseInt(v); i++; break;
+                case "--out": out = new File(v); i++; break;
+                case "--compare": compare = new File(v); i++; break;
+                default: throw new IllegalArgumentException("Unknown option: " + a);
+            }
+        }
+
+        BenchmarkRunner runner = new BenchmarkRunner(warmupMs, iterationMs, iterations);
+        for (int n : sizes) {
+            for (double density : densities) {
+                Fixture f = new Fixture(n, density, 42L);
+                runAll(runner, f, only);
+            }
+        }
+
+        runner.save(out);
+        System.out.println("Saved: " + out.getPath());
+        if (compare != null) {
+            runner.printComparison(BenchmarkRunner.load(compare), System.out);
+        }
+    }
+
+    private static void runAll(BenchmarkRunner runner, Fixture f, Pattern only) {
+        Map<String, BenchmarkRunner.Op> ops = new LinkedHashMap<>();
+
+        ops.put("board.canMove", count -> {
+            long acc = 0;
+            for (int i = 0; i < count; i++) {
+                int k = i & MASK;
+                if (f.board.canMove(f.xs[k], f.ys[k], f.dirs[k])) acc++;
+            }
+            return acc;
+        });
+        ops.put("board.canMoveCell", count -> {
+            long acc = 0;
+            for (int i = 0; i < count; i++) {
+                int k = i & MASK;
+                if (f.board.canMove(f.cells[k], f.dirs[k])) acc++;
+            }
+            return acc;
+        });
+        ops.put("board.move", count -> {
+            long acc = 0;
+            for (int i = 0; i < count; i++) {
+                int k = i & MASK;
+                acc += f.board.move(f.xs[k], f.ys[k], f.dirs[k])[0];
+            }
+            return acc;
+        });
+        ops.put("board.moveCell", count -> {
+            long acc = 0;
+            for (int i = 0; i < count; i++) {
+                int k = i & MASK;
+                acc += f.board.moveCell(f.cells[k], f.dirs[k]);
+            }
+            return acc;
+        });
+
+        ops.put("engine.performMove", count -> {
+            GameState s = f.state;
+            for (int i = 0; i < count; i++) {
+                f.engine.performMove(s.currentPlayer(), s.currentPlayerIndex(), f.dirs[i & MASK]);
+            }
+            return s.p1.x() + s.p2.y();
+        });
+        ops.put("engine.performShoot", count -> {
+            GameState s = f.state;
+            for (int i = 0; i < count; i++) {
+                GameState.PlayerState p = s.currentPlayer();
+                p.setShotsLeft(2);
+                f.engine.performShoot(p, s.currentPlayerIndex(), f.dirs[i & MASK]);
+            }
+            return s.p1.x() + s.p2.y();
+        });
+        ops.put("engine.endTurn", count -> {
+            for (int i = 0; i < count; i++) f.engine.endTurn();
+            return f.state.currentPlayerIndex();
+        });
+        ops.put("state.snapshotRestore", count -> {
+            GameState s = f.state;
+            int[] saved = new int[s.snapshotSize()];
+            for (int i = 0; i < count; i++) {
+                s.snapshot(saved);
+                s.restore(saved);
+            }
+            return s.p1.x() + s.p2.y();
+        });
+
+        // free-for-all on the same board: CROWD players (half the cells on small boards) at random cells;
+        // shots and knives look cells up in the occupancy index instead of checking every player.
+        // Victims pile up on the hospital, so the crowd is put back every RESET_OPS ops (counted across batches)
+        GameState crowd = f.state.copyForSimulation();
+        crowd.setPlayerCount(Math.max(GameState.MIN_PLAYERS, Math.min(CROWD, f.n * f.n / 2)));
+        for (int i = 3; i <= crowd.playerCount(); i++) crowd.player(i).setPosition(f.xs[i], f.ys[i]);
+        crowd.resetRunStateForPlay();
+        int[] crowdStart = crowd.snapshot();
+        GameEngine crowdEngine = new GameEngine(crowd);
+        int[] crowdOps = {0};
+        ops.put("crowd.performMove", count -> {
+            for (int i = 0; i < count; i++) {
+                crowdEngine.performMove(crowd.currentPlayer(), crowd.currentPlayerIndex(), f.dirs[i & MASK]);
+            }
+            return crowd.currentPlayerIndex();
+        });
+        ops.put("crowd.performShoot", count -> {
+            long acc = 0;
+            for (int i = 0; i < count; i++) {
+                if (crowdOps[0]++ % RESET_OPS == 0) crowd.restore(crowdStart);
+                GameState.PlayerState p = crowd.currentPlayer();
+                p.setShotsLeft(2);
+                crowdEngine.performShoot(p, crowd.currentPlayerIndex(), f.dirs[i & MASK]);
+                crowdEngine.endTurn();
+                acc += crowd.currentPlayerIndex();
+            }
+            return acc;
+        });
+        ops.put("crowd.performKnife", count -> {
+            long acc = 0;
+            for (int i = 0; i < count; i++) {
+                if (crowdOps[0]++ % RESET_OPS == 0) crowd.restore(crowdStart);
+                GameState.PlayerState p = crowd.currentPlayer();
+                Direction d = f.dirs[i & MASK];
+                crowdEngine.performKnife(p, crowd.currentPlayerIndex(), p.x() + d.dx, p.y() + d.dy);
+                crowdEngine.endTurn();
+                acc += crowd.currentPlayerIndex();
+            }
+            return acc;
+        });
+        ops.put("crowd.snapshotRestore", count -> {
+            int[] saved = new int[crowd.snapshotSize()];
+            for (int i = 0; i < count; i++) {
+                crowd.snapshot(saved);
+                crowd.restore(saved);
+            }
+            return crowd.p1.x();
+        });
+
+        ops.put("table.addProbe", count -> {
+            // hashes of scattered cells stand in for positions; half of the probes miss
+            long acc = 0;
+            for (int i = 0; i < count; i++) {
+                long h = Zobrist.square(Zobrist.key(0), f.xs[i & MASK], f.ys[i & MASK]);
+                if ((i & 1) == 0) f.table.add(h, 0.5);
+                acc += TranspositionTable.visits(f.table.probe(h ^ (i & 2)));
+            }
+            return acc;
+        });
+
+        ops.put("portals.place", count -> {
+            long acc = 0;
+            for (int i = 0; i < count; i++) {
+                int k = i & MASK;
+                if (f.portals.place(PortalNetwork.Type.PAIR, i % f.portalGroups, i & 1, f.xs[k], f.ys[k])) acc++;
+            }
+            return acc;
+        });
+        ops.put("portals.destinationFrom", count -> {
+            long acc = 0;
+            for (int i = 0; i < count; i++) {
+                int k = i & MASK;
+                acc += f.state.portals.destinationFrom(f.portalQueryCells[k]);
+            }
+            return acc;
+        });
+
+        // one op = one exit or hospital put on a sample cell by placeAll (rules checked against the cell mask),
+        // then erased again, newest first; SAMPLES entities are on the board at the end of a chunk
+        GameState editor = new GameState();
+        editor.setBoard(f.board);
+        EntityPlacer placer = new EntityPlacer(editor);
+        ops.put("editor.placeAllErase", count -> {
+            long acc = 0;
+            for (int done = 0; done < count; ) {
+                int chunk = Math.min(SAMPLES, count - done);
+                acc += placer.placeAll((done & SAMPLES) == 0 ? PlacementTool.EXIT : PlacementTool.HOSPITAL, f.cells, chunk);
+                for (int i = chunk - 1; i >= 0; i--) placer.erase(f.xs[i], f.ys[i]);
+                done += chunk;
+            }
+            return acc;
+        });
+
+        GridGeometry geometry = new GridGeometry();
+        ops.put("geometry.pickEdgeAt", count -> {
+            long acc = 0;
+            for (int i = 0; i < count; i++) {
+                int k = i & MASK;
+                if (geometry.pickEdgeAt(f.mouseX[k], f.mouseY[k], f.pickMetrics) != null) acc++;
+            }
+            return acc;
+        });
+
+        BufferedImage image = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        // boards that do not fit get 1px cells and only the visible part is drawn
+        GridMetrics gm = geometry.compute(IMAGE_SIZE, IMAGE_SIZE, f.n);
+        BoardRenderer renderer = new BoardRenderer();
+        ops.put("renderer.render", count -> {
+            for (int i = 0; i < count; i++) {
+                Graphics2D g2 = image.createGraphics();
+                try {
+                    g2.setColor(Color.WHITE);
+                    g2.fillRect(0, 0, IMAGE_SIZE, IMAGE_SIZE);
+                    renderer.render(g2, f.state, gm, null);
+                } finally {
+                    g2.dispose();
+                }
+            }
+            return image.getRGB(IMAGE_SIZE / 2, IMAGE_SIZE / 2);
+        });
+        ops.put("renderer.renderAfterWallEdit", count -> {
+            Board board = f.state.getBoard();
+            for (int i = 0; i < count; i++) {
+                // two toggles leave the maze as it was but bump the wall version: full layer rebuild
+                board.toggleVerticalWall(0, 0);
+                board.toggleVerticalWall(0, 0);
+                Graphics2D g2 = image.createGraphics();
+                try {
+                    g2.setColor(Color.WHITE);
+                    g2.fillRect(0, 0, IMAGE_SIZE, IMAGE_SIZE);
+                    renderer.render(g2, f.state, gm, null);
+                } finally {
+                    g2.dispose();
+                }
+            }
+            return image.getRGB(IMAGE_SIZE / 2, IMAGE_SIZE / 2);
+        });
+
+        if (f.n <= 1024) {
+            // editor state with key and exit and the fixture's portals; the analysis keeps 7 n x n fields
+            GameState a = new GameState();
+            a.setBoard(f.board);
+            a.clearEntitiesAndPlayers();
+            a.p1.setPosition(f.state.p1.x(), f.state.p1.y());
+            a.p2.setPosition(f.state.p2.x(), f.state.p2.y());
+            a.entities.add(EntityGrid.HOSPITAL, 0, 0);
+            a.addKey(f.n / 2, f.n / 2);
+            a.entities.add(EntityGrid.EXIT, f.n - 1, f.n - 1);
+            PortalNetwork.Type pair = PortalNetwork.Type.PAIR;
+            for (int g = 0; g < f.portalGroups; g++) {
+                a.portals.addPairGroup();
+                for (int i = 0; i < 2; i++) {
+                    a.portals.place(pair, g, i, f.state.portals.portalX(pair, g, i), f.state.portals.portalY(pair, g, i));
+                }
+            }
+            // one op = move one portal, then read a distance: only the fields the move can affect are redone;
+            // the move counter runs on across batches (a batch starting over would put portals where they are)
+            int[] moves = {0};
+            ops.put("analysis.portalMoved", count -> {
+                long acc = 0;
+                for (int i = 0; i < count; i++) {
+                    int m = moves[0]++;
+                    int k = m & MASK;
+                    a.portals.place(pair, m % f.portalGroups, (m / f.portalGroups) & 1, f.xs[k], f.ys[k]);
+                    acc += a.portalAnalysis.turns(PortalAnalysis.Entity.P1, PortalAnalysis.Entity.KEY);
+                }
+                return acc;
+            });
+            // one op = a wall edit, then read a distance: everything is redone
+            ops.put("analysis.wallToggled", count -> {
+                long acc = 0;
+                for (int i = 0; i < count; i++) {
+                    f.board.toggleVerticalWall(0, 0);
+                    acc += a.portalAnalysis.turns(PortalAnalysis.Entity.P1, PortalAnalysis.Entity.KEY);
+                }
+                if ((count & 1) != 0) f.board.toggleVerticalWall(0, 0);
+                return acc;
+            });
+
+            // one op = one bot playout (selection, expansion, rollout, backpropagation) on one thread;
+            // the bigger boards are left out: every tree keeps its own n x n search arrays
+            MctsBot.Tree tree = new MctsBot.Tree(f.state, 1);
+            ops.put("bot.playout", count -> {
+                for (int i = 0; i < count; i++) tree.playout();
+                return tree.playouts;
+            });
+        }
+
+        if (f.density == 0.0) {
+            // one op = one whole f.n x f.n maze; wall density does not matter, so only run once per size
+            for (MazeGenerator.Algorithm algorithm : MazeGenerator.Algorithm.values()) {
+                ops.put("generator." + algorithm.name().toLowerCase(Locale.ROOT), count -> {
+                    long sink = 0;
+                    for (int i = 0; i < count; i++) {
+                        sink += MazeGenerator.generate(f.n, algorithm, i, false).moveMask(0);
+                    }
+                    return sink;
+                });
+            }
+        }
+
+        for (Map.Entry<String, BenchmarkRunner.Op> e : ops.entrySet()) {
+            if (only != null && !only.matcher(e.getKey()).find()) continue;
+            runner.run(e.getKey(), f.n, f.density, e.getValue());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Board wall checks, dependency-free like the benchmark harness: run main, an AssertionError means a failure.
+ * Walls on the border do not exist; asking for one must throw instead of reaching a bit of the next row.
+ */
+public final class BoardTest {
+
+    public static void main(String[] args) {
+        borderWallsAreRejected(true);
+        borderWallsAreRejected(false);
+        insideWallsStillToggle();
+        System.out.println("BoardTest ok");
+    }
+
+    private static void borderWallsAreRejected(boolean cacheMoveMasks) {
+        int n = 5;
+        Board board = new Board(n, cacheMoveMasks);
+
+        // (n-1, y) would alias the vertical wall (0, y+1), (x, n-1) the first row past the horizontal plane
+        expectOutOfBounds(() -> board.toggleVerticalWall(n - 1, 1));
+        expectOutOfBounds(() -> board.hasVerticalWall(n - 1, 1));
+        expectOutOfBounds(() -> board.toggleVerticalWall(-1, 0));
+        expectOutOfBounds(() -> board.toggleVerticalWall(0, n));
+        expectOutOfBounds(() -> board.toggleHorizontalWall(1, n - 1));
+        expectOutOfBounds(() -> board.hasHorizontalWall(1, n - 1));
+        expectOutOfBounds(() -> board.toggleHorizontalWall(n, 0));
+        expectOutOfBounds(() -> board.toggleHorizontalWall(0, -1));
+
+        // the rejected toggles changed nothing: the east border stays closed, (0,2) keeps its wall state
+        check(!board.canMove(n - 1, 1, Direction.RIGHT), "east border opened");
+        check(board.moveCell(board.cellOf(n - 1, 1), Direction.RIGHT) == board.cellOf(n - 1, 1), "walked through border");
+        check(!board.hasVerticalWall(0, 2), "wall (0,2) corrupted");
+        check(board.canMove(0, 2, Direction.RIGHT), "(0,2) closed");
+        check(board.getWallVersion() == 0, "wall version moved");
+    }
+
+    private static void insideWallsStillToggle() {
+        int n = 5;
+        Board board = new Board(n);
+        check(board.toggleVerticalWall(n - 2, n - 1), "last vertical wall");
+        check(!board.canMove(n - 2, n - 1, Direction.RIGHT), "last vertical wall open");
+        check(board.toggleHorizontalWall(n - 1, n - 2), "last horizontal wall");
+        check(!board.canMove(n - 1, n - 2, Direction.DOWN), "last horizontal wall open");
+        check(!board.toggleVerticalWall(n - 2, n - 1), "toggle back");
+    }
+
+    private static void expectOutOfBounds(Runnable r) {
+        try {
+            r.run();
+        } catch (IndexOutOfBoundsException expected) {
+            return;
+        }
+        throw new AssertionError("no IndexOutOfBoundsException");
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) throw new AssertionError(what);
+    }
+}
@@ -0,0 +1,213 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Append-only log of player actions as GameEngine received them (see GameReplayer).
+ * Together with the state the game started from it is enough to rebuild every later state.
+ *
+ * Record = one header byte, bits:
+ *   0-1 action (MOVE, SHOOT, KNIFE, END_TURN), 2-3 direction ordinal, 4-7 player index
+ *   (15 = index follows as a varint). KNIFE adds the target offset from the attacker
+ *   as two zigzag varints. So moves, shots and turn ends take 1 byte, a knife usually 3.
+ *
+ * File: int magic "LBRJ", int version, int action count, int byte length, records; little-endian.
+ */
+public final class ActionJournal {
+
+    public enum Action { MOVE, SHOOT, KNIFE, END_TURN }
+
+    /** Receives records in order; see {@link #forEach}. */
+    public interface Visitor {
+        void move(int player, Direction dir);
+
+        void shoot(int player, Direction dir);
+
+        /** Target is (attacker.x + dx, attacker.y + dy) at the moment of the knife. */
+        void knife(int player, int dx, int dy);
+
+        void endTurn();
+    }
+
+    private static final int MAGIC = 0x4C42524A; // "LBRJ"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int PLAYER_ESCAPE = 15;
+
+    private static final Action[] ACTIONS = Action.values();
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private byte[] data;
+    private int length;
+    private int actions;
+
+    public ActionJournal() {
+        this(256);
+    }
+
+    public ActionJournal(int initialBytes) {
+        data = new byte[Math.max(16, initialBytes)];
+    }
+
+    public void recordMove(int player, Direction dir) {
+        header(Action.MOVE, dir, player);
+    }
+
+    public void recordShoot(int player, Direction dir) {
+        header(Action.SHOOT, dir, player);
+    }
+
+    public void recordKnife(int player, int dx, int dy) {
+        header(Action.KNIFE, null, player);
+        writeVarint(zigzag(dx));
+        writeVarint(zigzag(dy));
+    }
+
+    public void recordEndTurn() {
+        header(Action.END_TURN, null, 0);
+    }
+
+    /** Number of recorded actions. */
+    public int size() {
+        return actions;
+    }
+
+    public int byteLength() {
+        return length;
+    }
+
+    public void clear() {
+        length = 0;
+        actions = 0;
+    }
+
+    /** Feeds the first maxActions records (all if larger than size()) to visitor; returns how many were fed. */
+    public int forEach(Visitor visitor, int maxActions) {
+        byte[] d = data;
+        int pos = 0;
+        int done = 0;
+        int limit = Math.min(maxActions, actions);
+        while (done < limit) {
+            int h = d[pos++] & 0xff;
+            int player = h >>> 4;
+            if (player == PLAYER_ESCAPE) {
+                int v = 0;
+                for (int shift = 0; ; shift += 7) {
+                    int b = d[pos++];
+                    v |= (b & 0x7f) << shift;
+                    if (b >= 0) break;
+                }
+                player = v;
+            }
+            Direction dir = DIRECTIONS[(h >>> 2) & 3];
+            switch (ACTIONS[h & 3]) {
+                case MOVE: visitor.move(player, dir); break;
+                case SHOOT: visitor.shoot(player, dir); break;
+                case KNIFE: {
+                    int dx = 0, dy = 0;
+                    for (int shift = 0; ; shift += 7) {
+                        int b = d[pos++];
+                        dx |= (b & 0x7f) << shift;
+                        if (b >= 0) break;
+                    }
+                    for (int shift = 0; ; shift += 7) {
+                        int b = d[pos++];
+                        dy |= (b & 0x7f) << shift;
+                        if (b >= 0) break;
+                    }
+                    visitor.knife(player, unzigzag(dx), unzigzag(dy));
+                    break;
+                }
+                default: visitor.endTurn(); break;
+            }
+            done++;
+        }
+        return done;
+    }
+
+    public void save(Path path) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(HEADER_SIZE + length).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(MAGIC).putInt(VERSION).putInt(actions).putInt(length);
+        b.put(data, 0, length);
+        Files.write(path, b.array());
+    }
+
+    public static ActionJournal load(Path path) throws IOException {
+        byte[] file = Files.readAllBytes(path);
+        ByteBuffer b = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+        if (file.length < HEADER_SIZE || b.getInt() != MAGIC) throw new IOException("not a journal file: " + path);
+        int version = b.getInt();
+        if (version != VERSION) throw new IOException("unsupported journal version " + version);
+        int actions = b.getInt();
+        int length = b.getInt();
+        // records are 1 byte and up: count must fit the payload, and the records must end exactly at its end
+        if (actions < 0 || length < 0 || length != file.length - HEADER_SIZE || actions > length
+                || recordsEnd(file, HEADER_SIZE, file.length, actions) != file.length) {
+            throw new IOException("corrupt journal file: " + path);
+        }
+
+        ActionJournal j = new ActionJournal(length);
+        System.arraycopy(file, HEADER_SIZE, j.data, 0, length);
+        j.length = length;
+        j.actions = actions;
+        return j;
+    }
+
+    /** Position after count records starting at pos, or -1 if they run past end (or a varint is too long). */
+    private static int recordsEnd(byte[] d, int pos, int end, int count) {
+        for (int i = 0; i < count; i++) {
+            if (pos >= end) return -1;
+            int h = d[pos++] & 0xff;
+            if ((h >>> 4) == PLAYER_ESCAPE) pos = varintEnd(d, pos, end);
+            if (pos >= 0 && ACTIONS[h & 3] == Action.KNIFE) {
+                pos = varintEnd(d, pos, end);
+                if (pos >= 0) pos = varintEnd(d, pos, end);
+            }
+            if (pos < 0) return -1;
+        }
+        return pos;
+    }
+
+    private static int varintEnd(byte[] d, int pos, int end) {
+        for (int i = 0; i < 5; i++) {
+            if (pos >= end) return -1;
+            if (d[pos++] >= 0) return pos;
+        }
+        return -1;
+    }
+
+    private void header(Action action, Direction dir, int player) {
+        if (player < 0) throw new IllegalArgumentException("player index " + player);
+        ensure(1 + 5 + 10);
+        int d = (dir != null) ? dir.ordinal() : 0;
+        int p = Math.min(player, PLAYER_ESCAPE);
+        data[length++] = (byte) (action.ordinal() | (d << 2) | (p << 4));
+        if (p == PLAYER_ESCAPE) writeVarint(player);
+        actions++;
+    }
+
+    private void writeVarint(int v) {
+        while ((v & ~0x7f) != 0) {
+            data[length++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        data[length++] = (byte) v;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > data.length) {
+            data = Arrays.copyOf(data, Math.max(length + extra, data.length * 2));
+        }
+    }
+
+    private static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
@@ -1,73 +1,303 @@
+import java.nio.LongBuffer;
+
 public class Board {
+    private static final int ALL_DIRECTIONS = 0b1111;
+
     private final int size;
 
-    // verticalWalls[x][y] — между (x,y) и (x+1,y), x=0..n-2, y=0..n-1
-    private final boolean[][] verticalWalls;
+    // вертикальные стенки упакованы по битам: бит (y*(n-1)+x) — между (x,y) и (x+1,y), x=0..n-2, y=0..n-1
+    private long[] verticalWalls;
+
+    // горизонтальные стенки: бит (y*n+x) — между (x,y) и (x,y+1), x=0..n-1, y=0..n-2
+    private long[] horizontalWalls;
+
+    // те же биты прямо в отображённом в память файле (MazeFile); тогда массивы выше — null
+    private LongBuffer mappedVertical;
+    private LongBuffer mappedHorizontal;
+
+    // moveMasks[y*n+x] — открытые стороны клетки (биты Direction.mask); null, если кэш выключен
+    private final byte[] moveMasks;
+
+    // длины коридоров строятся по первому запросу, дальше обновляются при переключении стен
+    private CorridorTable corridors;
 
-    // horizontalWalls[x][y] — между (x,y) и (x,y+1), x=0..n-1, y=0..n-2
-    private final boolean[][] horizontalWalls;
+    // связность клеток (по стенам), тоже по первому запросу
+    private Connectivity connectivity;
+
+    // растёт при каждом переключении стены: по нему кэши понимают, что стены изменились
+    private int wallVersion;
 
     public Board(int size) {
+        this(size, true);
+    }
+
+    /**
+     * @param cacheMoveMasks хранить ли по байту на клетку с маской открытых сторон.
+     *                       С кэшем canMove — одна проверка бита, без него — чтение из упакованных стен.
+     */
+    public Board(int size, boolean cacheMoveMasks) {
         if (size < 2) throw new IllegalArgumentException("size must be >= 2");
+        if ((long) size * size > Integer.MAX_VALUE) throw new IllegalArgumentException("size too large: " + size);
         this.size = size;
-        this.verticalWalls = new boolean[size - 1][size];
-        this.horizontalWalls = new boolean[size][size - 1];
+        this.verticalWalls = new long[wordCount((long) (size - 1) * size)];
+        this.horizontalWalls = new long[wordCount((long) size * (size - 1))];
+        this.moveMasks = cacheMoveMasks ? new byte[size * size] : null;
+        if (moveMasks != null) initMoveMasks();
+    }
+
+    /**
+     * Board over ready wall planes (see MazeGenerator), bit layout as in the fields above.
+     * The arrays are taken as is, not copied.
+     */
+    Board(int size, long[] verticalWalls, long[] horizontalWalls, boolean cacheMoveMasks) {
+        if (size < 2) throw new IllegalArgumentException("size must be >= 2");
+        if ((long) size * size > Integer.MAX_VALUE) throw new IllegalArgumentException("size too large: " + size);
+        if (verticalWalls.length != wordCount((long) (size - 1) * size)
+                || horizontalWalls.length != wordCount((long) size * (size - 1))) {
+            throw new IllegalArgumentException("wall planes do not match size " + size);
+        }
+        this.size = size;
+        this.verticalWalls = verticalWalls;
+        this.horizontalWalls = horizontalWalls;
+        this.moveMasks = cacheMoveMasks ? new byte[size * size] : null;
+        if (moveMasks != null) {
+            for (int y = 0, cell = 0; y < size; y++) {
+                for (int x = 0; x < size; x++, cell++) moveMasks[cell] = (byte) computeMoveMask(x, y);
+            }
+        }
+    }
+
+    /**
+     * Board over wall planes mapped from a file (see MazeFile): nothing is copied, bits are read
+     * from the buffers on demand, and there is no move-mask cache (it would cost a byte per cell).
+     * Edits go into the buffers; a read-only mapping is copied to the heap on the first edit.
+     */
+    Board(int size, LongBuffer verticalWalls, LongBuffer horizontalWalls) {
+        if (size < 2) throw new IllegalArgumentException("size must be >= 2");
+        if ((long) size * size > Integer.MAX_VALUE) throw new IllegalArgumentException("size too large: " + size);
+        if (verticalWalls.capacity() != wordCount((long) (size - 1) * size)
+                || horizontalWalls.capacity() != wordCount((long) size * (size - 1))) {
+            throw new IllegalArgumentException("wall planes do not match size " + size);
+        }
+        this.size = size;
+        this.mappedVertical = verticalWalls;
+        this.mappedHorizontal = horizontalWalls;
+        this.moveMasks = null;
     }
 
     public int getSize() {
         return size;
     }
 
+    // ===== упакованные клетки: cell = y*n + x =====
+
+    public int cellOf(int x, int y) {
+        return y * size + x;
+    }
+
+    public int cellX(int cell) {
+        return cell % size;
+    }
+
+    public int cellY(int cell) {
+        return cell / size;
+    }
+
+    /** Сдвиг индекса клетки при шаге в dir (без проверки стен). */
+    public int cellDelta(Direction dir) {
+        return dir.dy * size + dir.dx;
+    }
+
+    public int getWallVersion() {
+        return wallVersion;
+    }
+
+    public boolean hasMoveMaskCache() {
+        return moveMasks != null;
+    }
+
     public boolean hasVerticalWall(int x, int y) {
-        return verticalWalls[x][y];
+        if (mappedVertical != null) return getBit(mappedVertical, verticalBit(x, y));
+        return getBit(verticalWalls, verticalBit(x, y));
     }
 
     public boolean hasHorizontalWall(int x, int y) {
-        return horizontalWalls[x][y];
+        if (mappedHorizontal != null) return getBit(mappedHorizontal, horizontalBit(x, y));
+        return getBit(horizontalWalls, horizontalBit(x, y));
     }
 
     public boolean toggleVerticalWall(int x, int y) {
-        verticalWalls[x][y] = !verticalWalls[x][y];
-        return verticalWalls[x][y];
+        if (mappedVertical != null && mappedVertical.isReadOnly()) copyMappedWalls();
+        boolean wall = (mappedVertical != null)
+                ? flipBit(mappedVertical, verticalBit(x, y))
+                : flipBit(verticalWalls, verticalBit(x, y));
+        if (moveMasks != null) {
+            int left = y * size + x;
+            setOpen(left, Direction.RIGHT, !wall);
+            setOpen(left + 1, Direction.LEFT, !wall);
+        }
+        wallVersion++;
+        if (corridors != null) corridors.onVerticalWall(x, y, wall);
+        if (connectivity != null) connectivity.onVerticalWall(x, y, wall);
+        return wall;
     }
 
     public boolean toggleHorizontalWall(int x, int y) {
-        horizontalWalls[x][y] = !horizontalWalls[x][y];
-        return horizontalWalls[x][y];
+        if (mappedHorizontal != null && mappedHorizontal.isReadOnly()) copyMappedWalls();
+        boolean wall = (mappedHorizontal != null)
+                ? flipBit(mappedHorizontal, horizontalBit(x, y))
+                : flipBit(horizontalWalls, horizontalBit(x, y));
+        if (moveMasks != null) {
+            int top = y * size + x;
+            setOpen(top, Direction.DOWN, !wall);
+            setOpen(top + size, Direction.UP, !wall);
+        }
+        wallVersion++;
+        if (corridors != null) corridors.onHorizontalWall(x, y, wall);
+        if (connectivity != null) connectivity.onHorizontalWall(x, y, wall);
+        return wall;
+    }
+
+    /** Таблица длин коридоров (создаётся при первом вызове). */
+    public CorridorTable corridors() {
+        if (corridors == null) corridors = new CorridorTable(this);
+        return corridors;
+    }
+
+    /** Связность клеток по стенам (создаётся при первом вызове). */
+    public Connectivity connectivity() {
+        if (connectivity == null) connectivity = new Connectivity(this);
+        return connectivity;
+    }
+
+    /** Маска открытых сторон клетки: бит dir.mask установлен, если можно шагнуть в dir. */
+    public int moveMask(int x, int y) {
+        if (moveMasks != null) return moveMasks[y * size + x];
+        return computeMoveMask(x, y);
+    }
+
+    public int moveMask(int cell) {
+        if (moveMasks != null) return moveMasks[cell];
+        return computeMoveMask(cell % size, cell / size);
     }
 
     public boolean canMove(int x, int y, Direction dir) {
-        int n = size;
-        switch (dir) {
-            case UP:
-                if (y == 0) return false;
-                // стена между (x,y-1) и (x,y) => horizontalWalls[x][y-1]
-                return !horizontalWalls[x][y - 1];
-            case DOWN:
-                if (y == n - 1) return false;
-                // стена между (x,y) и (x,y+1) => horizontalWalls[x][y]
-                return !horizontalWalls[x][y];
-            case LEFT:
-                if (x == 0) return false;
-                // стена между (x-1,y) и (x,y) => verticalWalls[x-1][y]
-                return !verticalWalls[x - 1][y];
-            case RIGHT:
-                if (x == n - 1) return false;
-                // стена между (x,y) и (x+1,y) => verticalWalls[x][y]
-                return !verticalWalls[x][y];
-            default:
-                return false;
-        }
+        return (moveMask(x, y) & dir.mask) != 0;
+    }
+
+    public boolean canMove(int cell, Direction dir) {
+        return (moveMask(cell) & dir.mask) != 0;
+    }
+
+    /** Клетка после шага из cell в dir; та же клетка, если шаг закрыт стеной/границей. */
+    public int moveCell(int cell, Direction dir) {
+        if (!canMove(cell, dir)) return cell;
+        return cell + cellDelta(dir);
     }
 
     public int[] move(int x, int y, Direction dir) {
         if (!canMove(x, y, dir)) return new int[]{x, y};
-        switch (dir) {
-            case UP: return new int[]{x, y - 1};
-            case DOWN: return new int[]{x, y + 1};
-            case LEFT: return new int[]{x - 1, y};
-            case RIGHT: return new int[]{x + 1, y};
-            default: return new int[]{x, y};
+        return new int[]{x + dir.dx, y + dir.dy};
+    }
+
+    // ===== упакованные стены как есть (для MazeFile) =====
+
+    int verticalWallWordCount() {
+        return wordCount((long) (size - 1) * size);
+    }
+
+    int horizontalWallWordCount() {
+        return wordCount((long) size * (size - 1));
+    }
+
+    long verticalWallWord(int i) {
+        return (mappedVertical != null) ? mappedVertical.get(i) : verticalWalls[i];
+    }
+
+    long horizontalWallWord(int i) {
+        return (mappedHorizontal != null) ? mappedHorizontal.get(i) : horizontalWalls[i];
+    }
+
+    /** Read-only mapping: first edit moves both planes to the heap. */
+    private void copyMappedWalls() {
+        verticalWalls = new long[mappedVertical.capacity()];
+        mappedVertical.get(0, verticalWalls);
+        horizontalWalls = new long[mappedHorizontal.capacity()];
+        mappedHorizontal.get(0, horizontalWalls);
+        mappedVertical = null;
+        mappedHorizontal = null;
+    }
+
+    private int computeMoveMask(int x, int y) {
+        int n = size;
+        int m = 0;
+        // стена между (x,y-1) и (x,y) => horizontal(x, y-1)
+        if (y > 0 && !hasHorizontalWall(x, y - 1)) m |= Direction.UP.mask;
+        // стена между (x,y) и (x,y+1) => horizontal(x, y)
+        if (y < n - 1 && !hasHorizontalWall(x, y)) m |= Direction.DOWN.mask;
+        // стена между (x-1,y) и (x,y) => vertical(x-1, y)
+        if (x > 0 && !hasVerticalWall(x - 1, y)) m |= Direction.LEFT.mask;
+        // стена между (x,y) и (x+1,y) => vertical(x, y)
+        if (x < n - 1 && !hasVerticalWall(x, y)) m |= Direction.RIGHT.mask;
+        return m;
+    }
+
+    private void initMoveMasks() {
+        int n = size;
+        for (int y = 0; y < n; y++) {
+            for (int x = 0; x < n; x++) {
+                int m = ALL_DIRECTIONS;
+                if (y == 0) m &= ~Direction.UP.mask;
+                if (y == n - 1) m &= ~Direction.DOWN.mask;
+                if (x == 0) m &= ~Direction.LEFT.mask;
+                if (x == n - 1) m &= ~Direction.RIGHT.mask;
+                moveMasks[y * n + x] = (byte) m;
+            }
+        }
+    }
+
+    private void setOpen(int cell, Direction dir, boolean open) {
+        if (open) moveMasks[cell] |= (byte) dir.mask;
+        else moveMasks[cell] &= (byte) ~dir.mask;
+    }
+
+    // без проверки (size-1, y) попал бы в бит (0, y+1): стена на границе сливалась бы с соседней строкой
+    private long verticalBit(int x, int y) {
+        if (x < 0 || x >= size - 1 || y < 0 || y >= size) {
+            throw new IndexOutOfBoundsException("vertical wall (" + x + "," + y + ") on " + size + "x" + size);
+        }
+        return (long) y * (size - 1) + x;
+    }
+
+    private long horizontalBit(int x, int y) {
+        if (x < 0 || x >= size || y < 0 || y >= size - 1) {
+            throw new IndexOutOfBoundsException("horizontal wall (" + x + "," + y + ") on " + size + "x" + size);
         }
+        return (long) y * size + x;
+    }
+
+    private static int wordCount(long bits) {
+        return (int) ((bits + 63) >>> 6);
+    }
+
+    private static boolean getBit(long[] words, long bit) {
+        return (words[(int) (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    private static boolean flipBit(long[] words, long bit) {
+        int w = (int) (bit >>> 6);
+        words[w] ^= 1L << bit;
+        return (words[w] & (1L << bit)) != 0;
+    }
+
+    private static boolean getBit(LongBuffer words, long bit) {
+        return (words.get((int) (bit >>> 6)) & (1L << bit)) != 0;
+    }
+
+    private static boolean flipBit(LongBuffer words, long bit) {
+        int w = (int) (bit >>> 6);
+        long v = words.get(w) ^ (1L << bit);
+        words.put(w, v);
+        return (v & (1L << bit)) != 0;
     }
 }
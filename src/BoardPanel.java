@@ -1,6 +1,8 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 
 public class BoardPanel extends JPanel {
@@ -8,28 +10,68 @@ public class BoardPanel extends JPanel {
     private GameState state;
     private Consumer<String> statusConsumer = s -> {};
     private Consumer<PlacementTool> placementToolConsumer = t -> {};
+    private Runnable editListener = () -> {};
 
     private Edge hoverEdge = null;
     private final BoardRenderer renderer = new BoardRenderer();
     private final GridGeometry geometry = new GridGeometry();
     private final GameEngine engine = new GameEngine();
+    private final ActionJournal journal = new ActionJournal();
+    private final EditHistory history = new EditHistory();
+    private final EntityPlacer placer = new EntityPlacer(); // правила постановки — PlacementRules
+    private final StatusLine engineStatus = new StatusLine();
+    private boolean portalAnalysis = false; // разбор порталов: рамки у проблемных порталов + сводка в статусе
+
+    // компьютерный игрок: ищет ход в своих потоках, результат применяется здесь, на EDT
+    private final MctsBot bot = new MctsBot();
+    private int botPlayer = 0;       // 0 — бота нет
+    private int botSearch = 0;       // номер текущего поиска; результат старого поиска отбрасывается
+    private boolean botThinking = false;
+    private boolean botApplying = false;
 
     private final ModeController buildMazeController = new BuildMazeController();
     private final ModeController placementController = new PlacementController();
     private final ModeController playController = new PlayController();
 
+    // вид: zoom 1.0 = поле вписано в панель, pan — сдвиг сетки в пикселях
+    private static final double ZOOM_STEP = 1.25;
+    private double zoom = 1.0;
+    private int panX = 0;
+    private int panY = 0;
+    private Point panAnchor = null;
+
+    // запас вокруг перерисовываемой линии стены: половина HOVER_STROKE + сглаживание
+    private static final int EDGE_REPAINT_MARGIN = 6;
+
+    // клетки, изменённые движком за одно действие; рисуются после него, каждая область отдельно
+    private final List<Rectangle> pendingDirty = new ArrayList<>();
+
     public BoardPanel() {
         setFocusable(true);
         setBackground(Color.WHITE);
+        engine.setDirtyRegionListener(this::collectDirtyCells);
+        engine.setJournal(journal);
+        engine.setEventListener(engineStatus);
+        placer.setHistory(history);
+        placer.setDirtyRegionListener(this::repaintCells);
 
         MouseAdapter mouse = new MouseAdapter() {
             @Override public void mouseMoved(MouseEvent e) { onMouseMoved(e.getX(), e.getY()); }
             @Override public void mouseExited(MouseEvent e) { clearHover(); }
             @Override public void mouseClicked(MouseEvent e) { onMouseClicked(e); }
+            @Override public void mousePressed(MouseEvent e) { onMousePressed(e); }
+            @Override public void mouseReleased(MouseEvent e) { onMouseReleased(e); }
+            @Override public void mouseDragged(MouseEvent e) { onMouseDragged(e); }
         };
         addMouseMotionListener(mouse);
         addMouseListener(mouse);
 
+        // колесо — zoom к курсору, средняя кнопка — перетаскивание поля, Home — сброс вида
+        addMouseWheelListener(e -> {
+            double factor = Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation());
+            zoomAt(e.getX(), e.getY(), factor);
+        });
+
         // управление в режиме PLAY
         addKeyListener(new KeyAdapter() {
             @Override
@@ -40,17 +82,50 @@ public class BoardPanel extends JPanel {
     }
 
     public void setGameState(GameState state) {
+        cancelDrags();
+        history.clear();
         this.state = state;
         engine.setState(state);
+        placer.setState(state);
+    }
+
+    /** Actions of the current game (MainWindow clears it when PLAY starts). */
+    public ActionJournal getJournal() {
+        return journal;
+    }
+
+    /** Forget undo/redo steps (the board was replaced or cleared wholesale). */
+    public void clearHistory() {
+        cancelDrags();
+        history.clear();
+    }
+
+    /** Switches the mode; a drag still in progress ends here, its undo step closed. */
+    public void setMode(Mode mode) {
+        if (state.getMode() != mode) {
+            cancelDrags();
+            history.close(state);
+        }
+        state.setMode(mode);
+    }
+
+    private void cancelDrags() {
+        buildMazeController.cancelDrag(this);
+        placementController.cancelDrag(this);
+        playController.cancelDrag(this);
     }
 
     public void setPlacementToolConsumer(Consumer<PlacementTool> consumer) {
         this.placementToolConsumer = (consumer != null) ? consumer : (t -> {});
     }
 
+    /** Called after every editor change to the board or entities (an edit, undo or redo). */
+    public void setEditListener(Runnable listener) {
+        this.editListener = (listener != null) ? listener : (() -> {});
+    }
+
     public void setStatusConsumer(Consumer<String> consumer) {
         this.statusConsumer = (consumer != null) ? consumer : (s -> {});
-        engine.setStatusConsumer(this.statusConsumer);
     }
 
     private ModeController controller() {
@@ -72,155 +147,343 @@ public class BoardPanel extends JPanel {
 
     void performMove(GameState.PlayerState p, int idx, Direction dir) {
         engine.performMove(p, idx, dir);
-        repaint();
+        afterEngineAction();
     }
 
     void performShoot(GameState.PlayerState shooter, int shooterIndex, Direction dir) {
         engine.performShoot(shooter, shooterIndex, dir);
-        repaint();
+        afterEngineAction();
     }
 
-    void performKnife(GameState.PlayerState attacker, int attackerIndex, int tx, int ty, String label) {
-        engine.performKnife(attacker, attackerIndex, tx, ty, label);
-        repaint();
+    void performKnife(GameState.PlayerState attacker, int attackerIndex, int tx, int ty) {
+        engine.performKnife(attacker, attackerIndex, tx, ty);
+        afterEngineAction();
     }
 
     void endTurn() {
         engine.endTurn();
-        repaint();
+        afterEngineAction();
     }
 
-    private void onMouseClicked(MouseEvent e) {
-        controller().mouseClicked(this, e);
+    /** Status text of the action's last event (formatted only here, once), then the changed cells. */
+    private void afterEngineAction() {
+        if (engineStatus.hasEvent()) {
+            statusConsumer.accept(engineStatus.format(state));
+            engineStatus.clear();
+        }
+        flushDirty();
+        if (!botApplying) startBotIfItsTurn();
     }
 
-    private void onKeyPressed(KeyEvent e) {
-        if (state == null || state.getMode() != Mode.PLAY) return;
-        controller().keyPressed(this, e);
+    /** Player index the bot plays for, 0 = none. */
+    void setBotPlayer(int player) {
+        cancelBot();
+        botPlayer = player;
+        startBotIfItsTurn();
     }
 
+    void setBotTimeBudget(int millis) {
+        bot.setTimeBudgetMillis(millis);
+    }
 
-    protected boolean placeAtCell(int x, int y) {
-        PlacementTool tool = state.getPlacementTool();
+    boolean isBotTurn() {
+        return botPlayer != 0 && hasBoard() && state.getMode() == Mode.PLAY && !state.isGameOver()
+                && state.currentPlayerIndex() == botPlayer && MctsBot.supports(state);
+    }
 
-        // helper-флаги "кто уже в клетке"
-        boolean hasKey = (state.keyX == x && state.keyY == y);
-        boolean hasExit = (state.exitX == x && state.exitY == y);
-        boolean hasHospital = (state.hospitalX == x && state.hospitalY == y);
+    /** Starts the bot's search if it is to move; the EDT is not blocked while it thinks. */
+    void startBotIfItsTurn() {
+        if (botThinking || !isBotTurn()) return;
+        botThinking = true;
+        int search = ++botSearch;
+        statusConsumer.accept("Player " + botPlayer + " (bot) is thinking...");
+        bot.think(state).whenComplete((result, error) ->
+                SwingUtilities.invokeLater(() -> onBotResult(search, result, error)));
+    }
 
-        boolean hasP1 = (state.p1.x == x && state.p1.y == y);
-        boolean hasP2 = (state.p2.x == x && state.p2.y == y);
-        boolean hasPlayer = hasP1 || hasP2;
+    /** Stops thinking (leaving PLAY, the board is about to change); a late result is ignored. */
+    void cancelBot() {
+        botSearch++;
+        botThinking = false;
+        bot.cancel();
+    }
 
-        boolean hasMinotaur = (state.minotaurX == x && state.minotaurY == y);
+    private void onBotResult(int search, MctsBot.Result result, Throwable error) {
+        if (search != botSearch) return;
+        botThinking = false;
+        if (error != null) {
+            statusConsumer.accept("Bot failed: " + error);
+            return;
+        }
+        if (!isBotTurn()) return;
 
-        boolean hasPortal = state.portals.hasPortalAt(x, y);
+        // the same calls as a human turn in PlayController
+        GameState.PlayerState p = state.currentPlayer();
+        int idx = state.currentPlayerIndex();
+        int a = result.action;
+        botApplying = true;
+        try {
+            if (a < MctsBot.SHOOT) {
+                performMove(p, idx, Direction.values()[a - MctsBot.MOVE]);
+            } else {
+                if (a < MctsBot.KNIFE_HERE) {
+                    performShoot(p, idx, Direction.values()[a - MctsBot.SHOOT]);
+                } else if (a == MctsBot.KNIFE_HERE) {
+                    performKnife(p, idx, p.x(), p.y());
+                } else if (a < MctsBot.SKIP) {
+                    Direction d = Direction.values()[a - MctsBot.KNIFE];
+                    performKnife(p, idx, p.x() + d.dx, p.y() + d.dy);
+                }
+                endTurn();
+            }
+        } finally {
+            botApplying = false;
+        }
+        startBotIfItsTurn(); // the other player is out: the bot moves again
+    }
 
-        boolean hasAnyEntity = hasKey || hasExit || hasHospital || hasMinotaur || hasPlayer;
+    private void collectDirtyCells(int x0, int y0, int x1, int y1) {
+        Rectangle r = cellsBounds(x0, y0, x1, y1);
+        if (r == null) return;
+        for (Rectangle d : pendingDirty) {
+            if (d.intersects(r)) {
+                d.add(r);
+                return;
+            }
+        }
+        pendingDirty.add(r);
+    }
 
-        if ((tool == PlacementTool.PORTAL_PAIR || tool == PlacementTool.PORTAL_CYCLE3) && hasAnyEntity) {
-            statusConsumer.accept("Нельзя ставить портал в клетку с сущностями/игроками.");
-            return false;
+    /**
+     * Paints what the engine reported during the last action. RepaintManager would merge all repaint()
+     * calls into one bounding rectangle (two far-apart cells = most of the board), so each region
+     * is painted on its own here; we are on the EDT and the action is complete.
+     */
+    private void flushDirty() {
+        if (state.isGameOver()) {
+            // the game-over text is outside the cells
+            pendingDirty.clear();
+            repaint();
+            return;
         }
-        if ((tool != PlacementTool.PORTAL_PAIR && tool != PlacementTool.PORTAL_CYCLE3) && hasPortal) {
-            statusConsumer.accept("Нельзя ставить сущности/игроков в клетку с порталом.");
-            return false;
+        for (Rectangle r : pendingDirty) paintImmediately(r);
+        pendingDirty.clear();
+    }
+
+    /**
+     * Pixel bounds of cells (x0,y0)-(x1,y1) plus one cell around them: markers, the hint line
+     * and wall strokes reach into the neighbours.
+     */
+    private Rectangle cellsBounds(int x0, int y0, int x1, int y1) {
+        if (!hasBoard()) return null;
+        GridMetrics gm = metrics();
+        if (gm == null) return null;
+        int lx = Math.min(x0, x1) - 1, hx = Math.max(x0, x1) + 1;
+        int ly = Math.min(y0, y1) - 1, hy = Math.max(y0, y1) + 1;
+        return new Rectangle(gm.startX + lx * gm.cell, gm.startY + ly * gm.cell,
+                (hx - lx + 1) * gm.cell, (hy - ly + 1) * gm.cell);
+    }
+
+    void repaintCells(int x0, int y0, int x1, int y1) {
+        Rectangle r = cellsBounds(x0, y0, x1, y1);
+        if (r != null) repaint(r);
+    }
+
+    void repaintCell(int x, int y) {
+        if (x >= 0 && y >= 0) repaintCells(x, y, x, y);
+    }
+
+    /** Repaints the strip around one wall segment (hover highlight, toggled wall). */
+    void repaintEdge(Edge edge) {
+        if (edge == null || !hasBoard()) return;
+        GridMetrics gm = metrics();
+        if (gm == null) return;
+        int m = EDGE_REPAINT_MARGIN;
+        if (edge.type == Edge.Type.VERTICAL) {
+            int xPix = gm.startX + (edge.x + 1) * gm.cell;
+            int yPix = gm.startY + edge.y * gm.cell;
+            repaint(xPix - m, yPix - m, 2 * m, gm.cell + 2 * m);
+        } else {
+            int xPix = gm.startX + edge.x * gm.cell;
+            int yPix = gm.startY + (edge.y + 1) * gm.cell;
+            repaint(xPix - m, yPix - m, gm.cell + 2 * m, 2 * m);
         }
+    }
 
+    private void onMouseClicked(MouseEvent e) {
+        if (SwingUtilities.isMiddleMouseButton(e)) return; // pan, not a click
+        controller().mouseClicked(this, e);
+    }
 
-        // RULE 1: key/exit/hospital mutually exclusive
-        if (tool == PlacementTool.KEY || tool == PlacementTool.EXIT || tool == PlacementTool.HOSPITAL) {
-            boolean cellHasSpecial = hasKey || hasExit || hasHospital;
-            // если ставим "спешл" и там уже другой "спешл" — запрет
-            if (cellHasSpecial && !(
-                    (tool == PlacementTool.KEY && hasKey) ||
-                            (tool == PlacementTool.EXIT && hasExit) ||
-                            (tool == PlacementTool.HOSPITAL && hasHospital)
-            )) {
-                statusConsumer.accept("Нельзя ставить ключ/выход/больницу в одну клетку.");
-                return false;
-            }
+    private void onMousePressed(MouseEvent e) {
+        if (SwingUtilities.isMiddleMouseButton(e)) {
+            panAnchor = e.getPoint();
+            return;
         }
+        controller().mousePressed(this, e);
+    }
 
-        // RULE 2: players <-> minotaur нельзя вместе
-        if (tool == PlacementTool.MINOTAUR && hasPlayer) {
-            statusConsumer.accept("Нельзя ставить минотавра в клетку с игроком.");
-            return false;
+    private void onMouseReleased(MouseEvent e) {
+        if (SwingUtilities.isMiddleMouseButton(e)) {
+            panAnchor = null;
+            return;
         }
-        if ((tool == PlacementTool.PLAYER_1 || tool == PlacementTool.PLAYER_2) && hasMinotaur) {
-            statusConsumer.accept("Нельзя ставить игрока в клетку с минотавром.");
-            return false;
+        controller().mouseReleased(this, e);
+    }
+
+    private void onMouseDragged(MouseEvent e) {
+        if (panAnchor == null) {
+            controller().mouseDragged(this, e);
+            return;
         }
+        panX += e.getX() - panAnchor.x;
+        panY += e.getY() - panAnchor.y;
+        panAnchor = e.getPoint();
+        repaint();
+    }
 
-        // RULE 3: players нельзя на ключ
-        if ((tool == PlacementTool.PLAYER_1 || tool == PlacementTool.PLAYER_2) && hasKey) {
-            statusConsumer.accept("Нельзя ставить игрока на ключ.");
-            return false;
+    /** Zoom keeping the board point under (mx, my) in place. */
+    void zoomAt(int mx, int my, double factor) {
+        if (!hasBoard()) return;
+        GridMetrics before = metrics();
+        if (before == null) return;
+
+        int n = state.getBoard().getSize();
+        zoom = geometry.clampZoom(getWidth(), getHeight(), n, zoom * factor);
+        GridMetrics centered = geometry.compute(getWidth(), getHeight(), n, zoom, 0, 0);
+        if (centered.cell == before.cell) return; // cell size is whole pixels: wait for the next step
+
+        double u = (mx - before.startX) / (double) before.cell;
+        double v = (my - before.startY) / (double) before.cell;
+        panX = (int) Math.round(mx - u * centered.cell - centered.startX);
+        panY = (int) Math.round(my - v * centered.cell - centered.startY);
+        repaint();
+    }
+
+    /** Back to "whole board fitted in the panel". */
+    void resetView() {
+        zoom = 1.0;
+        panX = 0;
+        panY = 0;
+        repaint();
+    }
+
+    private void onKeyPressed(KeyEvent e) {
+        if (e.getKeyCode() == KeyEvent.VK_HOME) {
+            resetView();
+            return;
         }
+        // Ctrl+Z — отмена, Ctrl+Y / Ctrl+Shift+Z — повтор (только в редакторе)
+        if ((e.isControlDown() || e.isMetaDown()) && state != null && state.getMode() != Mode.PLAY) {
+            if (e.getKeyCode() == KeyEvent.VK_Z && !e.isShiftDown()) {
+                undo();
+                return;
+            }
+            if (e.getKeyCode() == KeyEvent.VK_Y || e.getKeyCode() == KeyEvent.VK_Z) {
+                redo();
+                return;
+            }
+        }
+        if (state == null || state.getMode() != Mode.PLAY) return;
+        controller().keyPressed(this, e);
+    }
 
-        // --- если всё ок — ставим ---
-        switch (tool) {
-            case KEY: state.keyX = x; state.keyY = y; break;
-            case EXIT: state.exitX = x; state.exitY = y; break;
-            case HOSPITAL: state.hospitalX = x; state.hospitalY = y; break;
-            case MINOTAUR: state.minotaurX = x; state.minotaurY = y; break;
-            case PLAYER_1: state.p1.x = x; state.p1.y = y; state.p1.alive = true; break;
-            case PLAYER_2: state.p2.x = x; state.p2.y = y; state.p2.alive = true; break;
-            case PORTAL_PAIR: {
-                while (state.portals.getPairGroups().size() <= state.pairCursorGroup) {
-                    state.portals.addPairGroup();
-                }
-                int g = state.pairCursorGroup;
-                int i = state.pairCursorIndex;
 
-                if (hasPortal || !state.portals.place(PortalNetwork.Type.PAIR, g, i, x, y)) {
-                    statusConsumer.accept("Клетка уже занята порталом.");
-                    return false;
-                }
+    void undo() {
+        if (!hasBoard() || !history.undo(state)) {
+            statusConsumer.accept("Nothing to undo");
+            return;
+        }
+        editListener.run();
+        pushPlacementToolToUI(state.getPlacementTool());
+        repaint();
+        statusConsumer.accept("Undo");
+    }
 
-                statusConsumer.accept("Placed PORTAL_PAIR group " + g + " index " + i + " at (" + x + "," + y + ")");
+    void redo() {
+        if (!hasBoard() || !history.redo(state)) {
+            statusConsumer.accept("Nothing to redo");
+            return;
+        }
+        editListener.run();
+        pushPlacementToolToUI(state.getPlacementTool());
+        repaint();
+        statusConsumer.accept("Redo");
+    }
 
-                state.pairCursorIndex++;
-                if (state.pairCursorIndex >= 2) {
-                    state.pairCursorIndex = 0;
-                    state.pairCursorGroup++;
-                }
-                break;
-            }
+    /** Start of an undo step; edits up to the matching endEdit() are undone together. */
+    void beginEdit() {
+        history.begin(state);
+    }
 
-            case PORTAL_CYCLE3: {
-                while (state.portals.getCycleGroups().size() <= state.cycleCursorGroup) {
-                    state.portals.addCycleGroup3();
-                }
-                int g = state.cycleCursorGroup;
-                int i = state.cycleCursorIndex;
+    void endEdit() {
+        history.end(state);
+    }
 
-                if (hasPortal || !state.portals.place(PortalNetwork.Type.CYCLE, g, i, x, y)) {
-                    statusConsumer.accept("Клетка уже занята порталом.");
-                    return false;
-                }
+    /** Toggles a wall as one undo step (or as part of the open one). Returns true if it is a wall now. */
+    boolean toggleWall(Edge edge) {
+        Board board = state.getBoard();
+        history.begin(state);
+        boolean nowWall = (edge.type == Edge.Type.VERTICAL)
+                ? board.toggleVerticalWall(edge.x, edge.y)
+                : board.toggleHorizontalWall(edge.x, edge.y);
+        history.wallToggled(edge.type, edge.x, edge.y);
+        history.end(state);
+        editListener.run();
+        repaintEdge(edge);
+        repaintAnalysis();
+        return nowWall;
+    }
+
+    /** Places the current tool, then advances it; one undo step (or part of the open one). */
+    boolean placeAtCellAndAdvance(int x, int y) {
+        history.begin(state);
+        try {
+            if (!placeAtCell(x, y)) return false;
+            editListener.run();
+            // PLAYER может остаться тем же инструментом, но со следующим игроком — отдаём в UI всегда
+            pushPlacementToolToUI(state.advancePlacementTool());
+            return true;
+        } finally {
+            history.end(state);
+        }
+    }
 
-                statusConsumer.accept("Placed PORTAL_CYCLE3 group " + g + " index " + i + " at (" + x + "," + y + ")");
+    /** Erases everything in the cell; one undo step (or part of the open one). */
+    void eraseAtCellRecorded(int x, int y) {
+        history.begin(state);
+        try {
+            eraseAtCell(x, y);
+            editListener.run();
+        } finally {
+            history.end(state);
+        }
+    }
 
-                state.cycleCursorIndex++;
-                if (state.cycleCursorIndex >= 3) {
-                    state.cycleCursorIndex = 0;
-                    state.cycleCursorGroup++;
-                }
-                break;
-            }
+    protected boolean placeAtCell(int x, int y) {
+        PlacementTool tool = state.getPlacementTool();
+        // портальный курсор до постановки — для сообщения
+        int g = (tool == PlacementTool.PORTAL_PAIR) ? state.pairCursorGroup : state.cycleCursorGroup;
+        int i = (tool == PlacementTool.PORTAL_PAIR) ? state.pairCursorIndex : state.cycleCursorIndex;
+
+        String refused = placer.place(tool, x, y);
+        if (refused != null) {
+            statusConsumer.accept(refused);
+            return false;
         }
+        if (tool == PlacementTool.PORTAL_PAIR) {
+            statusConsumer.accept("Placed PORTAL_PAIR group " + g + " index " + i + " at (" + x + "," + y + ")");
+        } else if (tool == PlacementTool.PORTAL_CYCLE) {
+            int size = state.portals.groupSize(PortalNetwork.Type.CYCLE, g);
+            statusConsumer.accept("Placed PORTAL_CYCLE group " + g + " index " + i + "/" + size + " at (" + x + "," + y + ")");
+        }
+        repaintAnalysis();
         return true;
     }
 
     protected void eraseAtCell(int x, int y) {
-        state.portals.removeAt(x, y);
-        if (state.keyX == x && state.keyY == y) { state.keyX = state.keyY = -1; }
-        if (state.exitX == x && state.exitY == y) { state.exitX = state.exitY = -1; }
-        if (state.hospitalX == x && state.hospitalY == y) { state.hospitalX = state.hospitalY = -1; }
-        if (state.minotaurX == x && state.minotaurY == y) { state.minotaurX = state.minotaurY = -1; }
-        if (state.p1.x == x && state.p1.y == y) { state.p1.x = state.p1.y = -1; state.p1.hasKey = false; }
-        if (state.p2.x == x && state.p2.y == y) { state.p2.x = state.p2.y = -1; state.p2.hasKey = false; }
+        placer.erase(x, y);
+        repaintAnalysis();
     }
 
     @Override
@@ -233,7 +496,7 @@ public class BoardPanel extends JPanel {
             return;
         }
 
-        GridMetrics gm = geometry.compute(getWidth(), getHeight(), state.getBoard().getSize());
+        GridMetrics gm = metrics();
         if (gm == null) return;
 
         Graphics2D g2 = (Graphics2D) g.create();
@@ -252,14 +515,37 @@ public class BoardPanel extends JPanel {
 
     void pushPlacementToolToUI(PlacementTool t) { placementToolConsumer.accept(t); }
 
-    GridMetrics metrics() { return geometry.compute(getWidth(), getHeight(), state.getBoard().getSize()); }
+    GridMetrics metrics() { return geometry.compute(getWidth(), getHeight(), state.getBoard().getSize(), zoom, panX, panY); }
     Edge edgeAt(int mx, int my, GridMetrics gm) { return geometry.pickEdgeAt(mx, my, gm); }
     int[] cellAt(int mx, int my, GridMetrics gm) { return geometry.pickCellAt(mx, my, gm); }
+    int cellIndexAt(int mx, int my, GridMetrics gm) { return geometry.pickCellIndexAt(mx, my, gm); }
+
+    void setHintOverlay(boolean on) {
+        renderer.setHintOverlay(on);
+        repaint();
+    }
+
+    void setPortalAnalysisOverlay(boolean on) {
+        portalAnalysis = on;
+        renderer.setPortalAnalysisOverlay(on);
+        repaint();
+    }
+
+    /** Status text with the analysis summary appended when the overlay is on. */
+    String withAnalysis(String s) {
+        return (portalAnalysis && state.getMode() != Mode.PLAY) ? s + " — " + state.portalAnalysis.summary() : s;
+    }
+
+    /** An edit can change the flags of portals anywhere on the board: with the overlay on, repaint it all. */
+    private void repaintAnalysis() {
+        if (portalAnalysis) repaint();
+    }
 
     void setHoverEdge(Edge newHover) {
         if ((newHover == null && hoverEdge != null) || (newHover != null && !newHover.equals(hoverEdge))) {
+            repaintEdge(hoverEdge);
             hoverEdge = newHover;
-            repaint();
+            repaintEdge(newHover);
         }
     }
 
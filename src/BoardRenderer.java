@@ -1,14 +1,87 @@
 import java.awt.*;
-import java.util.List;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
 
 /**
  * Pure rendering (no Swing events, no state mutation).
  * BoardPanel should delegate all drawing here.
+ *
+ * Only cells in the GridMetrics viewport are visited, so a frame costs O(visible cells), not O(n^2).
+ * Grid, borders and walls are drawn once into a cached layer image and blitted every frame; the layer
+ * is rebuilt only when the walls change (Board.getWallVersion), the board is replaced or GridMetrics change.
+ * A partial repaint (clip set on the Graphics) blits only the clip and skips portals outside it.
+ *
+ * A frame allocates nothing in steady state: colors and strokes are constants, fonts and portal labels
+ * are cached. Walls are merged into straight runs, one drawLine per run instead of per segment.
  */
 public final class BoardRenderer {
 
     private static final float WALL_STROKE = 4f;
     private static final float HOVER_STROKE = 8f;
+    // below this cell size grid lines would merge into a solid fill
+    private static final int MIN_GRID_LINE_CELL = 4;
+
+    private static final Color GRID_COLOR = Color.BLACK;
+    private static final Color WALL_COLOR = Color.RED;
+    private static final Color HOVER_COLOR = new Color(255, 0, 0, 140);
+    private static final Color EXIT_COLOR = new Color(0, 140, 255);
+    private static final Color HOSPITAL_COLOR = new Color(0, 180, 0);
+    private static final Color MINOTAUR_COLOR = new Color(120, 0, 0);
+    private static final Color KEY_COLOR = new Color(255, 215, 0);
+    private static final Color P1_COLOR = new Color(160, 0, 200);
+    private static final Color P2_COLOR = new Color(255, 120, 0);
+    private static final Color DEAD_COLOR = new Color(140, 140, 140);
+    private static final Color[] EXTRA_PLAYER_COLORS = goldenHues(32);
+    private static final Color PAIR_PORTAL_COLOR = new Color(110, 210, 255);
+    private static final Color CYCLE_PORTAL_COLOR = new Color(180, 120, 255);
+    private static final Color LABEL_COLOR = new Color(0, 0, 0, 170);
+    private static final Color HIGHLIGHT_COLOR = new Color(0, 0, 0, 120);
+    private static final Color HINT_COLOR = new Color(0, 160, 60, 170);
+    private static final Color BROKEN_PORTAL_COLOR = new Color(220, 0, 0, 200);
+    private static final Color UNUSED_PORTAL_COLOR = new Color(90, 90, 90, 170);
+    private static final Color GAME_OVER_COLOR = new Color(0, 0, 0, 160);
+
+    private static final BasicStroke GRID_LINE = new BasicStroke(1f);
+    private static final BasicStroke WALL_LINE = new BasicStroke(WALL_STROKE, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    private static final BasicStroke HOVER_LINE = new BasicStroke(HOVER_STROKE, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    private static final BasicStroke HIGHLIGHT_LINE = new BasicStroke(3f);
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private boolean hintOverlay = false;
+    private boolean portalAnalysisOverlay = false;
+
+    // reused per frame
+    private final Rectangle clip = new Rectangle();
+    private int[] runStart = new int[0]; // open vertical wall run per column, -1 = none
+    private int cullX0, cullX1, cullY0, cullY1; // cells touched by the clip (inclusive)
+
+    // values that depend on the cell size / base font, rebuilt only when those change
+    private BasicStroke hintLine;
+    private int hintLineCell = -1;
+    private Font labelFont;
+    private Font labelFontBase;
+    private int labelFontCell = -1;
+    private Font gameOverFont;
+    private Font gameOverFontBase;
+    private String[][] pairLabels = new String[0][];  // "P<g>:<i>" at [g][i]
+    private String[][] cycleLabels = new String[0][]; // "C<g>:<i>" at [g][i]
+
+    // static layer cache: grid + borders + walls
+    private BufferedImage staticLayer;
+    private Board layerBoard;
+    private int layerWallVersion;
+    private GridMetrics layerMetrics;
+
+    /** Show the current player's next step towards the key (or the exit once the key is picked up). */
+    public void setHintOverlay(boolean on) {
+        this.hintOverlay = on;
+    }
+
+    /** Outline the portals PortalAnalysis flags (editor modes only): red if the teleport is broken, grey if unused. */
+    public void setPortalAnalysisOverlay(boolean on) {
+        this.portalAnalysisOverlay = on;
+    }
 
     public void render(Graphics2D g2, GameState state, GridMetrics gm, Edge hoverEdge) {
         if (state == null || state.getBoard() == null || gm == null) {
@@ -19,180 +92,342 @@ public final class BoardRenderer {
 
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-        // 1) grid
-        drawGrid(g2, gm);
-
-        // 2) borders (red)
-        drawBorders(g2, gm);
-
-        // 3) internal walls
-        drawInternalWalls(g2, gm, board);
+        // 1-3) grid, borders (red), internal walls — cached
+        drawStaticLayer(g2, gm, board);
 
         // 4) hover edge (only BUILD_MAZE)
         if (state.getMode() == Mode.BUILD_MAZE && hoverEdge != null) {
-            g2.setColor(new Color(255, 0, 0, 140));
-            g2.setStroke(new BasicStroke(HOVER_STROKE, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            g2.setColor(HOVER_COLOR);
+            g2.setStroke(HOVER_LINE);
             drawEdge(g2, gm, hoverEdge);
         }
 
-        // 5) entities
+        // 5) entities (portals are culled to the clip: a dirty-cell repaint touches only a few cells)
+        computeCull(g2, gm);
         drawEntities(g2, gm, state);
 
         // 6) active player highlight
         drawCurrentPlayerHighlight(g2, gm, state);
 
+        // 6.1) next-step hint (reads cached distance field, O(1) per frame)
+        if (hintOverlay) drawHint(g2, gm, state);
+
         // 7) game over overlay text
-        if (state.gameOver) {
-            g2.setColor(new Color(0, 0, 0, 160));
-            g2.setFont(g2.getFont().deriveFont(Font.BOLD, 22f));
-            g2.drawString(state.gameOverMessage, gm.startX, gm.startY - 10);
+        if (state.isGameOver()) {
+            Font base = g2.getFont();
+            if (base != gameOverFontBase) {
+                gameOverFont = base.deriveFont(Font.BOLD, 22f);
+                gameOverFontBase = base;
+            }
+            g2.setColor(GAME_OVER_COLOR);
+            g2.setFont(gameOverFont);
+            // keep the text on screen when the grid is panned away from the top-left
+            g2.drawString(state.gameOverMessage(), Math.max(gm.startX, 10), Math.max(gm.startY - 10, 30));
         }
     }
 
+    /** Cells touched by the clip, with one cell of margin (a portal label may run into the next cell). */
+    private void computeCull(Graphics2D g2, GridMetrics gm) {
+        clip.setBounds(0, 0, gm.viewWidth, gm.viewHeight);
+        g2.getClipBounds(clip); // left as is when there is no clip
+        long x0 = (long) clip.x - gm.cell, y0 = (long) clip.y - gm.cell;
+        long x1 = (long) clip.x + clip.width + gm.cell, y1 = (long) clip.y + clip.height + gm.cell;
+        cullX0 = (int) Math.max(gm.firstCol, Math.floorDiv(x0 - gm.startX, gm.cell));
+        cullX1 = (int) Math.min(gm.lastCol, Math.floorDiv(x1 - 1 - gm.startX, gm.cell));
+        cullY0 = (int) Math.max(gm.firstRow, Math.floorDiv(y0 - gm.startY, gm.cell));
+        cullY1 = (int) Math.min(gm.lastRow, Math.floorDiv(y1 - 1 - gm.startY, gm.cell));
+    }
+
+    private boolean inCull(int x, int y) {
+        return x >= cullX0 && x <= cullX1 && y >= cullY0 && y <= cullY1;
+    }
+
+    private void drawStaticLayer(Graphics2D g2, GridMetrics gm, Board board) {
+        int w = gm.viewWidth, h = gm.viewHeight;
+        if (w <= 0 || h <= 0) {
+            drawStatic(g2, gm, board);
+            return;
+        }
+
+        if (staticLayer == null || board != layerBoard || board.getWallVersion() != layerWallVersion
+                || !gm.equals(layerMetrics)) {
+            if (staticLayer == null || staticLayer.getWidth() != w || staticLayer.getHeight() != h) {
+                staticLayer = g2.getDeviceConfiguration().createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+            }
+            Graphics2D lg = staticLayer.createGraphics();
+            try {
+                lg.setComposite(AlphaComposite.Clear);
+                lg.fillRect(0, 0, w, h);
+                lg.setComposite(AlphaComposite.SrcOver);
+                lg.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                drawStatic(lg, gm, board);
+            } finally {
+                lg.dispose();
+            }
+            layerBoard = board;
+            layerWallVersion = board.getWallVersion();
+            layerMetrics = gm;
+        }
+        g2.drawImage(staticLayer, 0, 0, null);
+    }
+
+    private void drawStatic(Graphics2D g2, GridMetrics gm, Board board) {
+        drawGrid(g2, gm);
+        drawBorders(g2, gm);
+        drawInternalWalls(g2, gm, board);
+    }
+
     private void drawGrid(Graphics2D g2, GridMetrics gm) {
-        g2.setColor(Color.BLACK);
-        g2.setStroke(new BasicStroke(1f));
+        g2.setColor(GRID_COLOR);
+        g2.setStroke(GRID_LINE);
         g2.drawRect(gm.startX, gm.startY, gm.gridSize, gm.gridSize);
+        if (gm.cell < MIN_GRID_LINE_CELL || gm.firstCol > gm.lastCol || gm.firstRow > gm.lastRow) return;
 
-        for (int i = 1; i < gm.n; i++) {
-            int x = gm.startX + i * gm.cell;
-            g2.drawLine(x, gm.startY, x, gm.startY + gm.gridSize);
+        // inner lines of the visible range only
+        int x0 = gm.startX + gm.firstCol * gm.cell;
+        int x1 = gm.startX + (gm.lastCol + 1) * gm.cell;
+        int y0 = gm.startY + gm.firstRow * gm.cell;
+        int y1 = gm.startY + (gm.lastRow + 1) * gm.cell;
 
+        for (int i = Math.max(1, gm.firstCol); i <= Math.min(gm.n - 1, gm.lastCol + 1); i++) {
+            int x = gm.startX + i * gm.cell;
+            g2.drawLine(x, y0, x, y1);
+        }
+        for (int i = Math.max(1, gm.firstRow); i <= Math.min(gm.n - 1, gm.lastRow + 1); i++) {
             int y = gm.startY + i * gm.cell;
-            g2.drawLine(gm.startX, y, gm.startX + gm.gridSize, y);
+            g2.drawLine(x0, y, x1, y);
         }
     }
 
     private void drawBorders(Graphics2D g2, GridMetrics gm) {
-        g2.setColor(Color.RED);
-        g2.setStroke(new BasicStroke(WALL_STROKE, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        g2.setColor(WALL_COLOR);
+        g2.setStroke(WALL_LINE);
         g2.drawLine(gm.startX, gm.startY, gm.startX + gm.gridSize, gm.startY);
         g2.drawLine(gm.startX, gm.startY + gm.gridSize, gm.startX + gm.gridSize, gm.startY + gm.gridSize);
         g2.drawLine(gm.startX, gm.startY, gm.startX, gm.startY + gm.gridSize);
         g2.drawLine(gm.startX + gm.gridSize, gm.startY, gm.startX + gm.gridSize, gm.startY + gm.gridSize);
     }
 
+    /**
+     * Walls as straight runs: consecutive wall segments on one grid line become a single line.
+     * Rows are scanned in order (the layout of the wall bitsets); open vertical runs are tracked per column.
+     * (Stroking all runs as one Path2D was measured slower: the layer is drawn by the software
+     * rasterizer, where a path spanning the whole view costs more than many short lines.)
+     */
     private void drawInternalWalls(Graphics2D g2, GridMetrics gm, Board board) {
-        g2.setColor(Color.RED);
-        g2.setStroke(new BasicStroke(WALL_STROKE, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-
         int n = gm.n;
 
+        // margin around the viewport: round caps of off-screen walls reach into it
+        int m = 1 + (int) (WALL_STROKE / 2) / gm.cell;
+        int c0 = Math.max(0, gm.firstCol - m), c1 = Math.min(n - 1, gm.lastCol + m);
+        int r0 = Math.max(0, gm.firstRow - m), r1 = Math.min(n - 1, gm.lastRow + m);
+        if (c0 > c1 || r0 > r1) return;
+
+        g2.setColor(WALL_COLOR);
+        g2.setStroke(WALL_LINE);
+
         // vertical walls: x in [0..n-2], y in [0..n-1]
-        for (int x = 0; x < n - 1; x++) {
-            for (int y = 0; y < n; y++) {
+        int vc1 = Math.min(n - 2, c1);
+        if (runStart.length < n) runStart = new int[n];
+        Arrays.fill(runStart, c0, Math.max(c0, vc1 + 1), -1);
+        for (int y = r0; y <= r1; y++) {
+            for (int x = c0; x <= vc1; x++) {
                 if (board.hasVerticalWall(x, y)) {
-                    drawEdge(g2, gm, new Edge(Edge.Type.VERTICAL, x, y));
+                    if (runStart[x] < 0) runStart[x] = y;
+                } else if (runStart[x] >= 0) {
+                    drawVerticalRun(g2, gm, x, runStart[x], y);
+                    runStart[x] = -1;
                 }
             }
         }
+        for (int x = c0; x <= vc1; x++) {
+            if (runStart[x] >= 0) drawVerticalRun(g2, gm, x, runStart[x], r1 + 1);
+        }
 
         // horizontal walls: x in [0..n-1], y in [0..n-2]
-        for (int x = 0; x < n; x++) {
-            for (int y = 0; y < n - 1; y++) {
+        for (int y = r0; y <= Math.min(n - 2, r1); y++) {
+            int start = -1;
+            for (int x = c0; x <= c1; x++) {
                 if (board.hasHorizontalWall(x, y)) {
-                    drawEdge(g2, gm, new Edge(Edge.Type.HORIZONTAL, x, y));
+                    if (start < 0) start = x;
+                } else if (start >= 0) {
+                    drawHorizontalRun(g2, gm, y, start, x);
+                    start = -1;
                 }
             }
+            if (start >= 0) drawHorizontalRun(g2, gm, y, start, c1 + 1);
         }
     }
 
+    /** Wall line right of column x, rows [fromY, toY). */
+    private void drawVerticalRun(Graphics2D g2, GridMetrics gm, int x, int fromY, int toY) {
+        int xPix = gm.startX + (x + 1) * gm.cell;
+        g2.drawLine(xPix, gm.startY + fromY * gm.cell, xPix, gm.startY + toY * gm.cell);
+    }
+
+    /** Wall line below row y, columns [fromX, toX). */
+    private void drawHorizontalRun(Graphics2D g2, GridMetrics gm, int y, int fromX, int toX) {
+        int yPix = gm.startY + (y + 1) * gm.cell;
+        g2.drawLine(gm.startX + fromX * gm.cell, yPix, gm.startX + toX * gm.cell, yPix);
+    }
+
     private void drawEntities(Graphics2D g2, GridMetrics gm, GameState state) {
-        int pad = Math.max(2, gm.cell / 8);
+        // zoomed far out: fill the whole cell so entities stay visible
+        int pad = (gm.cell >= 8) ? Math.max(2, gm.cell / 8) : 0;
         int size = gm.cell - 2 * pad;
 
         // portals first (as background)
         drawPortals(g2, gm, state, pad, size);
 
-        // key-on-minotaur special case
-        boolean keyOnMinotaur =
-                state.keyX == state.minotaurX && state.keyY == state.minotaurY && state.minotaurX >= 0;
+        // EXITS, HOSPITALS
+        drawStaticEntities(g2, gm, state.entities, EntityGrid.EXIT, pad, size, EXIT_COLOR);
+        drawStaticEntities(g2, gm, state.entities, EntityGrid.HOSPITAL, pad, size, HOSPITAL_COLOR);
 
-        // EXIT
-        if (state.exitX >= 0) {
-            drawFilledRect(g2, gm, state.exitX, state.exitY, pad, size, new Color(0, 140, 255));
-        }
+        // MINOTAURS, then KEYS (a key under a minotaur is its small gold marker)
+        drawPieces(g2, gm, state, false, pad, size);
+        drawPieces(g2, gm, state, true, pad, size);
 
-        // HOSPITAL
-        if (state.hospitalX >= 0) {
-            drawFilledRect(g2, gm, state.hospitalX, state.hospitalY, pad, size, new Color(0, 180, 0));
+        // PLAYERS
+        for (int i = 1; i <= state.playerCount(); i++) {
+            GameState.PlayerState p = state.player(i);
+            if (p.x() >= 0) drawPlayer(g2, gm, p, pad, size, playerColor(i));
         }
+    }
 
-        // MINOTAUR
-        if (state.minotaurX >= 0) {
-            drawFilledCircle(g2, gm, state.minotaurX, state.minotaurY, pad, size, new Color(120, 0, 0));
-
-            // if key is on minotaur — show a small gold marker
-            if (keyOnMinotaur) {
-                int r = Math.max(4, gm.cell / 6);
-                int cx = gm.startX + state.minotaurX * gm.cell + gm.cell - pad - r;
-                int cy = gm.startY + state.minotaurY * gm.cell + pad;
-                g2.setColor(new Color(255, 215, 0));
-                g2.fillOval(cx, cy, r, r);
+    /** Every exit or hospital in the clip: its cell list, or the visible cells' masks if those are fewer. */
+    private void drawStaticEntities(Graphics2D g2, GridMetrics gm, EntityGrid entities, int kind,
+                                    int pad, int size, Color c) {
+        int count = entities.count(kind);
+        if (count == 0 || cullX0 > cullX1 || cullY0 > cullY1) return;
+        if ((long) (cullX1 - cullX0 + 1) * (cullY1 - cullY0 + 1) < count) {
+            for (int y = cullY0; y <= cullY1; y++) {
+                for (int x = cullX0; x <= cullX1; x++) {
+                    if ((entities.mask(x, y) & kind) != 0) drawFilledRect(g2, gm, x, y, pad, size, c);
+                }
             }
+            return;
         }
-
-        // KEY (draw once)
-        if (state.keyX >= 0 && !keyOnMinotaur) {
-            drawFilledCircle(g2, gm, state.keyX, state.keyY, pad, size, new Color(255, 215, 0));
+        for (int i = 0; i < count; i++) {
+            int x = entities.x(kind, i), y = entities.y(kind, i);
+            if (inCull(x, y)) drawFilledRect(g2, gm, x, y, pad, size, c);
         }
+    }
 
-        // PLAYERS
-        if (state.p1.x >= 0) {
-            drawPlayer(g2, gm, state.p1, pad, size, new Color(160, 0, 200));
+    /** Every key on the board or living minotaur in the clip, from its slots or the visible cells if those are fewer. */
+    private void drawPieces(Graphics2D g2, GridMetrics gm, GameState state, boolean keys, int pad, int size) {
+        int count = keys ? state.keyCount() : state.minotaurCount();
+        if (count == 0 || cullX0 > cullX1 || cullY0 > cullY1) return;
+        if ((long) (cullX1 - cullX0 + 1) * (cullY1 - cullY0 + 1) < count) {
+            for (int y = cullY0; y <= cullY1; y++) {
+                for (int x = cullX0; x <= cullX1; x++) {
+                    if ((keys ? state.keyAt(x, y) : state.minotaurAt(x, y)) >= 0) {
+                        drawPiece(g2, gm, state, keys, x, y, pad, size);
+                    }
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            int x = keys ? state.keyX(i) : state.minotaurX(i);
+            int y = keys ? state.keyY(i) : state.minotaurY(i);
+            if (x >= 0 && inCull(x, y)) drawPiece(g2, gm, state, keys, x, y, pad, size);
         }
-        if (state.p2.x >= 0) {
-            drawPlayer(g2, gm, state.p2, pad, size, new Color(255, 120, 0));
+    }
+
+    private void drawPiece(Graphics2D g2, GridMetrics gm, GameState state, boolean key, int x, int y,
+                           int pad, int size) {
+        if (!key) {
+            drawFilledCircle(g2, gm, x, y, pad, size, MINOTAUR_COLOR);
+        } else if (state.minotaurAt(x, y) >= 0) {
+            int r = Math.max(4, gm.cell / 6);
+            int cx = gm.startX + x * gm.cell + gm.cell - pad - r;
+            int cy = gm.startY + y * gm.cell + pad;
+            g2.setColor(KEY_COLOR);
+            g2.fillOval(cx, cy, r, r);
+        } else {
+            drawFilledCircle(g2, gm, x, y, pad, size, KEY_COLOR);
         }
     }
 
+    /** P1 and P2 keep their colours; further players get hues spread by the golden angle, repeating after 32. */
+    private static Color playerColor(int index) {
+        if (index == 1) return P1_COLOR;
+        if (index == 2) return P2_COLOR;
+        return EXTRA_PLAYER_COLORS[(index - 3) % EXTRA_PLAYER_COLORS.length];
+    }
+
+    private static Color[] goldenHues(int count) {
+        Color[] c = new Color[count];
+        for (int i = 0; i < count; i++) c[i] = Color.getHSBColor((0.15f + i * 0.618034f) % 1f, 0.85f, 0.85f);
+        return c;
+    }
+
     private void drawPlayer(Graphics2D g2, GridMetrics gm, GameState.PlayerState p, int pad, int size, Color c) {
-        if (!p.alive) {
-            c = new Color(140, 140, 140);
+        if (!p.isAlive()) {
+            c = DEAD_COLOR;
         }
-        drawFilledCircle(g2, gm, p.x, p.y, pad, size, c);
+        drawFilledCircle(g2, gm, p.x(), p.y(), pad, size, c);
 
-        if (p.hasKey) {
+        if (p.hasKey()) {
             int r = Math.max(4, gm.cell / 6);
-            int cx = gm.startX + p.x * gm.cell + gm.cell - pad - r;
-            int cy = gm.startY + p.y * gm.cell + pad;
-            g2.setColor(new Color(255, 215, 0));
+            int cx = gm.startX + p.x() * gm.cell + gm.cell - pad - r;
+            int cy = gm.startY + p.y() * gm.cell + pad;
+            g2.setColor(KEY_COLOR);
             g2.fillOval(cx, cy, r, r);
         }
     }
 
     private void drawPortals(Graphics2D g2, GridMetrics gm, GameState state, int pad, int size) {
-        // Pair portals
-        List<int[][]> pairs = state.portals.getPairGroups();
-        for (int g = 0; g < pairs.size(); g++) {
-            int[][] group = pairs.get(g); // [2][2]
-            for (int i = 0; i < group.length; i++) {
-                int x = group[i][0];
-                int y = group[i][1];
-                if (x < 0 || y < 0) continue;
-                drawFilledCircle(g2, gm, x, y, pad, size, new Color(110, 210, 255));
-                drawPortalLabel(g2, gm, x, y, "P" + g + ":" + i);
+        PortalAnalysis analysis = (portalAnalysisOverlay && state.getMode() != Mode.PLAY) ? state.portalAnalysis : null;
+        drawPortalGroups(g2, gm, state.portals, analysis, PortalNetwork.Type.PAIR, pad, size, PAIR_PORTAL_COLOR);
+        drawPortalGroups(g2, gm, state.portals, analysis, PortalNetwork.Type.CYCLE, pad, size, CYCLE_PORTAL_COLOR);
+    }
+
+    private void drawPortalGroups(Graphics2D g2, GridMetrics gm, PortalNetwork portals, PortalAnalysis analysis,
+                                  PortalNetwork.Type type, int pad, int size, Color color) {
+        for (int g = 0; g < portals.groupCount(type); g++) {
+            int groupSize = portals.groupSize(type, g);
+            for (int i = 0; i < groupSize; i++) {
+                int x = portals.portalX(type, g, i);
+                int y = portals.portalY(type, g, i);
+                if (x < 0 || y < 0 || !inCull(x, y)) continue;
+                drawFilledCircle(g2, gm, x, y, pad, size, color);
+                drawPortalLabel(g2, gm, x, y, portalLabel(type, g, i, groupSize));
+                if (analysis != null) drawPortalFlags(g2, gm, x, y, analysis.portalFlags(x, y));
             }
         }
+    }
 
-        // Cycle portals (3)
-        List<int[][]> cycles = state.portals.getCycleGroups();
-        for (int g = 0; g < cycles.size(); g++) {
-            int[][] group = cycles.get(g); // [3][2]
-            for (int i = 0; i < group.length; i++) {
-                int x = group[i][0];
-                int y = group[i][1];
-                if (x < 0 || y < 0) continue;
-                drawFilledCircle(g2, gm, x, y, pad, size, new Color(180, 120, 255));
-                drawPortalLabel(g2, gm, x, y, "C" + g + ":" + i);
-            }
+    private void drawPortalFlags(Graphics2D g2, GridMetrics gm, int x, int y, int flags) {
+        if (flags == 0) return;
+        boolean broken = (flags & ~PortalAnalysis.UNUSED) != 0;
+        g2.setColor(broken ? BROKEN_PORTAL_COLOR : UNUSED_PORTAL_COLOR);
+        g2.setStroke(HIGHLIGHT_LINE);
+        g2.drawRect(gm.startX + x * gm.cell + 2, gm.startY + y * gm.cell + 2, gm.cell - 4, gm.cell - 4);
+    }
+
+    private String portalLabel(PortalNetwork.Type type, int g, int i, int groupSize) {
+        String[][] labels = (type == PortalNetwork.Type.PAIR) ? pairLabels : cycleLabels;
+        if (g >= labels.length) {
+            labels = Arrays.copyOf(labels, Math.max(g + 1, labels.length * 2));
+            if (type == PortalNetwork.Type.PAIR) pairLabels = labels;
+            else cycleLabels = labels;
         }
+        // a group index can come back with another size (editor undo), so the row follows the size
+        if (labels[g] == null || labels[g].length != groupSize) labels[g] = new String[groupSize];
+        if (labels[g][i] == null) labels[g][i] = ((type == PortalNetwork.Type.PAIR) ? "P" : "C") + g + ":" + i;
+        return labels[g][i];
     }
 
     private void drawPortalLabel(Graphics2D g2, GridMetrics gm, int x, int y, String text) {
         Font old = g2.getFont();
-        g2.setFont(old.deriveFont(Math.max(10f, gm.cell / 4f)));
-        g2.setColor(new Color(0, 0, 0, 170));
+        if (old != labelFontBase || gm.cell != labelFontCell) {
+            labelFont = old.deriveFont(Math.max(10f, gm.cell / 4f));
+            labelFontBase = old;
+            labelFontCell = gm.cell;
+        }
+        g2.setFont(labelFont);
+        g2.setColor(LABEL_COLOR);
         int px = gm.startX + x * gm.cell + (gm.cell / 6);
         int py = gm.startY + y * gm.cell + (gm.cell / 2);
         g2.drawString(text, px, py);
@@ -203,16 +438,54 @@ public final class BoardRenderer {
         if (state.getMode() != Mode.PLAY) return;
 
         GameState.PlayerState p = state.currentPlayer();
-        if (p.x < 0 || p.y < 0) return;
+        if (p.x() < 0 || p.y() < 0) return;
 
-        int x = gm.startX + p.x * gm.cell;
-        int y = gm.startY + p.y * gm.cell;
+        int x = gm.startX + p.x() * gm.cell;
+        int y = gm.startY + p.y() * gm.cell;
 
-        g2.setColor(new Color(0, 0, 0, 120));
-        g2.setStroke(new BasicStroke(3f));
+        g2.setColor(HIGHLIGHT_COLOR);
+        g2.setStroke(HIGHLIGHT_LINE);
         g2.drawRect(x + 2, y + 2, gm.cell - 4, gm.cell - 4);
     }
 
+    private void drawHint(Graphics2D g2, GridMetrics gm, GameState state) {
+        if (state.getMode() != Mode.PLAY || state.isGameOver()) return;
+
+        GameState.PlayerState p = state.currentPlayer();
+        if (p.x() < 0 || p.y() < 0) return;
+
+        DistanceFields.Target target;
+        if (p.hasKey()) target = DistanceFields.Target.EXIT;
+        else if (state.keysOnBoard() > 0) target = DistanceFields.Target.KEY;
+        else return; // keys are carried by others
+
+        int step = state.distances.nextStep(target, p.x(), p.y());
+        if (step == DistanceFields.STEP_NONE) return;
+
+        int cx = gm.startX + p.x() * gm.cell + gm.cell / 2;
+        int cy = gm.startY + p.y() * gm.cell + gm.cell / 2;
+
+        if (gm.cell != hintLineCell) {
+            hintLine = new BasicStroke(Math.max(2f, gm.cell / 10f), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+            hintLineCell = gm.cell;
+        }
+        g2.setColor(HINT_COLOR);
+        g2.setStroke(hintLine);
+        if (step == DistanceFields.STEP_SKIP) {
+            // stay on the portal and end the turn
+            int r = gm.cell / 2 - 2;
+            g2.drawOval(cx - r, cy - r, 2 * r, 2 * r);
+            return;
+        }
+
+        Direction dir = DIRECTIONS[step];
+        int tx = cx + dir.dx * gm.cell;
+        int ty = cy + dir.dy * gm.cell;
+        g2.drawLine(cx, cy, tx, ty);
+        int dot = Math.max(4, gm.cell / 5);
+        g2.fillOval(tx - dot / 2, ty - dot / 2, dot, dot);
+    }
+
     private void drawFilledCircle(Graphics2D g2, GridMetrics gm, int x, int y, int pad, int size, Color c) {
         int px = gm.startX + x * gm.cell + pad;
         int py = gm.startY + y * gm.cell + pad;
@@ -228,14 +501,18 @@ public final class BoardRenderer {
     }
 
     private void drawEdge(Graphics2D g2, GridMetrics gm, Edge edge) {
-        if (edge.type == Edge.Type.VERTICAL) {
-            int xPix = gm.startX + (edge.x + 1) * gm.cell;
-            int y1 = gm.startY + edge.y * gm.cell;
+        drawEdge(g2, gm, edge.type, edge.x, edge.y);
+    }
+
+    private void drawEdge(Graphics2D g2, GridMetrics gm, Edge.Type type, int ex, int ey) {
+        if (type == Edge.Type.VERTICAL) {
+            int xPix = gm.startX + (ex + 1) * gm.cell;
+            int y1 = gm.startY + ey * gm.cell;
             int y2 = y1 + gm.cell;
             g2.drawLine(xPix, y1, xPix, y2);
         } else {
-            int yPix = gm.startY + (edge.y + 1) * gm.cell;
-            int x1 = gm.startX + edge.x * gm.cell;
+            int yPix = gm.startY + (ey + 1) * gm.cell;
+            int x1 = gm.startX + ex * gm.cell;
             int x2 = x1 + gm.cell;
             g2.drawLine(x1, yPix, x2, yPix);
         }
@@ -1,3 +1,4 @@
+import javax.swing.*;
 import java.awt.event.MouseEvent;
 
 public final class BuildMazeController implements ModeController {
@@ -18,24 +19,70 @@ public final class BuildMazeController implements ModeController {
         panel.setHoverEdge(null);
     }
 
+    // перетаскивание: все стенки под курсором приводятся к состоянию первой переключённой (одним шагом отмены)
+    private boolean dragging;
+    private Boolean dragWall; // null — ещё ни одной стенки не задели
+    private Edge lastEdge;
+
     @Override
-    public void mouseClicked(BoardPanel panel, MouseEvent e) {
-        if (!panel.hasBoard()) return;
+    public void mousePressed(BoardPanel panel, MouseEvent e) {
+        if (!panel.hasBoard() || !SwingUtilities.isLeftMouseButton(e)) return;
+
+        dragging = true;
+        dragWall = null;
+        lastEdge = null;
+        panel.beginEdit();
+        paintEdge(panel, e.getX(), e.getY());
+        panel.requestFocusInWindow();
+    }
 
+    @Override
+    public void mouseDragged(BoardPanel panel, MouseEvent e) {
+        if (!dragging) return;
+        paintEdge(panel, e.getX(), e.getY());
+    }
+
+    @Override
+    public void mouseReleased(BoardPanel panel, MouseEvent e) {
+        if (!dragging || !SwingUtilities.isLeftMouseButton(e)) return;
+        dragging = false;
+        panel.endEdit();
+    }
+
+    @Override
+    public void cancelDrag(BoardPanel panel) {
+        dragging = false;
+        dragWall = null;
+        lastEdge = null;
+    }
+
+    private void paintEdge(BoardPanel panel, int mx, int my) {
         GridMetrics gm = panel.metrics();
         if (gm == null) return;
 
-        Edge edge = panel.edgeAt(e.getX(), e.getY(), gm);
-        if (edge != null) {
-            Board board = panel.board();
-            boolean nowWall = (edge.type == Edge.Type.VERTICAL)
-                    ? board.toggleVerticalWall(edge.x, edge.y)
-                    : board.toggleHorizontalWall(edge.x, edge.y);
+        Edge edge = panel.edgeAt(mx, my, gm);
+        panel.setHoverEdge(edge);
+        if (edge == null || edge.equals(lastEdge)) return;
+        lastEdge = edge;
 
-            panel.status("Wall toggled: " + edge + " -> " + (nowWall ? "ON" : "OFF"));
-            panel.repaint();
-        }
+        Board board = panel.board();
+        boolean isWall = (edge.type == Edge.Type.VERTICAL)
+                ? board.hasVerticalWall(edge.x, edge.y)
+                : board.hasHorizontalWall(edge.x, edge.y);
+        if (dragWall != null && isWall == dragWall) return;
 
-        panel.requestFocusInWindow();
+        boolean nowWall = panel.toggleWall(edge);
+        if (dragWall == null) dragWall = nowWall;
+
+        // live connectivity: regions on both sides of the toggled wall
+        Connectivity conn = board.connectivity();
+        int a = board.cellOf(edge.x, edge.y);
+        int b = (edge.type == Edge.Type.VERTICAL) ? a + 1 : a + board.getSize();
+        String sides = conn.connected(a, b)
+                ? "region " + conn.regionSize(a)
+                : "split " + conn.regionSize(a) + " | " + conn.regionSize(b);
+
+        panel.status(panel.withAnalysis("Wall toggled: " + edge + " -> " + (nowWall ? "ON" : "OFF")
+                + "; regions: " + conn.regionCount() + " (" + sides + " cells)"));
     }
 }
@@ -0,0 +1,138 @@
+import java.util.Arrays;
+
+/**
+ * Which living players stand in which cell (see GameState.playerAt): an open-addressing table from a cell
+ * to the lowest-numbered player there, plus a per-player link to the next player of the same cell, in
+ * ascending order. GameState indexes its keys and minotaurs the same way, numbered by slot + 1. Lookup, add and remove cost O(1) plus the players sharing that one cell, whatever the
+ * number of players; memory follows the number of players, not the board (a cell-indexed array would be
+ * n*n ints for every GameState copy a search or simulation makes).
+ *
+ * A cell is keyed by (y << 16) | x, so the table needs no board (n <= 46340 fits in 16 bits).
+ * The order inside a cell depends only on the player numbers, so a rebuilt index (after restore)
+ * answers exactly like the one that was kept up to date move by move.
+ */
+public final class CellOccupancy {
+
+    private static final int EMPTY = -1;
+
+    private int[] keys = new int[0];   // cell key per slot, EMPTY = free
+    private int[] first = new int[0];  // lowest-numbered player of the slot's cell
+    private int[] next = new int[0];   // by player number: next player in the same cell, 0 = last
+    private int shift;
+
+    /** Empties the index and sizes it for players 1..players. */
+    public void reset(int players) {
+        int capacity = capacity(players);
+        if (keys.length != capacity) {
+            keys = new int[capacity];
+            first = new int[capacity];
+            shift = 32 - Integer.numberOfTrailingZeros(capacity);
+        }
+        Arrays.fill(keys, EMPTY);
+        if (next.length != players + 1) next = new int[players + 1];
+        else Arrays.fill(next, 0);
+    }
+
+    /** Makes room for players 1..players, keeping what is in the index (pieces added one by one). */
+    public void ensureCapacity(int players) {
+        if (next.length < players + 1) next = Arrays.copyOf(next, Math.max(players + 1, 2 * next.length));
+        int capacity = capacity(players);
+        if (keys.length >= capacity) return;
+        int[] oldKeys = keys, oldFirst = first;
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        first = new int[capacity];
+        shift = 32 - Integer.numberOfTrailingZeros(capacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == EMPTY) continue;
+            int s = find(oldKeys[j]);
+            keys[s] = oldKeys[j];
+            first[s] = oldFirst[j];
+        }
+    }
+
+    /** Lowest-numbered player at (x,y), 0 if none. */
+    public int first(int x, int y) {
+        if (x < 0 || y < 0) return 0;
+        int key = key(x, y);
+        for (int s = slot(key); ; s = (s + 1) & (keys.length - 1)) {
+            if (keys[s] == key) return first[s];
+            if (keys[s] == EMPTY) return 0;
+        }
+    }
+
+    /** Next player in the same cell as player (which must be in the index), 0 if it is the last. */
+    public int next(int player) {
+        return next[player];
+    }
+
+    /** Puts player into cell (x,y); nothing for an unplaced player. */
+    public void add(int x, int y, int player) {
+        if (x < 0 || y < 0) return;
+        int key = key(x, y);
+        int s = find(key);
+        if (keys[s] == EMPTY) {
+            keys[s] = key;
+            first[s] = player;
+            next[player] = 0;
+        } else if (player < first[s]) {
+            next[player] = first[s];
+            first[s] = player;
+        } else {
+            int q = first[s];
+            while (next[q] != 0 && next[q] < player) q = next[q];
+            next[player] = next[q];
+            next[q] = player;
+        }
+    }
+
+    /** Takes player out of cell (x,y); nothing if it is not there. */
+    public void remove(int x, int y, int player) {
+        if (x < 0 || y < 0) return;
+        int s = find(key(x, y));
+        if (keys[s] == EMPTY) return;
+        if (first[s] == player) {
+            if (next[player] != 0) first[s] = next[player];
+            else delete(s);
+        } else {
+            int q = first[s];
+            while (next[q] != 0 && next[q] != player) q = next[q];
+            if (next[q] == player) next[q] = next[player];
+        }
+        next[player] = 0;
+    }
+
+    // load factor <= 1/2
+    private static int capacity(int players) {
+        return Integer.highestOneBit(Math.max(8, 2 * players) - 1) << 1;
+    }
+
+    private static int key(int x, int y) {
+        return (y << 16) | x;
+    }
+
+    private int slot(int key) {
+        return (key * 0x9E3779B9) >>> shift;
+    }
+
+    /** Slot holding key, or the free slot where it would go. */
+    private int find(int key) {
+        int s = slot(key);
+        while (keys[s] != EMPTY && keys[s] != key) s = (s + 1) & (keys.length - 1);
+        return s;
+    }
+
+    /** Frees slot s, moving later entries of its probe run back so lookups still find them. */
+    private void delete(int s) {
+        int mask = keys.length - 1;
+        for (int j = (s + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - s) & mask)) {
+                keys[s] = keys[j];
+                first[s] = first[j];
+                s = j;
+            }
+        }
+        keys[s] = EMPTY;
+    }
+}
@@ -0,0 +1,242 @@
+import java.util.Arrays;
+
+/**
+ * Live connectivity of board cells through open sides (walls only, portals are not edges).
+ * Kept up to date by Board on every wall toggle.
+ *
+ *  - Removing a wall between two regions relabels the smaller one (union by size).
+ *  - Adding a wall can only split a region if the new wall segment closes a loop of walls
+ *    (planar duality: a cut in the cell graph is a cycle in the wall graph). If one of its
+ *    end points touches no other wall and not the border, nothing can split: O(1).
+ *    Otherwise two searches run in lock-step from both sides; the first one to exhaust is
+ *    the split-off region, so the cost is O(smaller side).
+ */
+public final class Connectivity {
+
+    private final Board board;
+    private final int n;
+    private final int[] deltas = new int[4]; // cell offset by Direction.ordinal()
+
+    private final int[] label;  // cell -> region label
+    private int[] regionSize = new int[16]; // label -> cell count (0 = free label)
+    private int[] freeLabels = new int[16];
+    private int freeCount;
+    private int nextLabel;
+    private int regionCount;
+
+    // search scratch: stamp[cell] == markA/markB means visited by that side in the current search
+    private final int[] stamp;
+    private int stampGen;
+    private int[] queueA = new int[64];
+    private int[] queueB = new int[64];
+
+    Connectivity(Board board) {
+        this.board = board;
+        this.n = board.getSize();
+        for (Direction d : Direction.values()) deltas[d.ordinal()] = board.cellDelta(d);
+        int cells = n * n;
+        label = new int[cells];
+        stamp = new int[cells];
+        Arrays.fill(label, -1);
+        for (int c = 0; c < cells; c++) {
+            if (label[c] < 0) flood(c, newLabel());
+        }
+    }
+
+    public boolean connected(int cellA, int cellB) {
+        return label[cellA] == label[cellB];
+    }
+
+    public boolean connected(int ax, int ay, int bx, int by) {
+        return connected(ay * n + ax, by * n + bx);
+    }
+
+    /** Number of cells in the region containing cell. */
+    public int regionSize(int cell) {
+        return regionSize[label[cell]];
+    }
+
+    public int regionSize(int x, int y) {
+        return regionSize(y * n + x);
+    }
+
+    public int regionCount() {
+        return regionCount;
+    }
+
+    /** Region id of cell; stable until the region is merged or split. */
+    public int regionOf(int cell) {
+        return label[cell];
+    }
+
+    void onVerticalWall(int x, int y, boolean wall) {
+        int a = y * n + x;
+        if (wall) {
+            // segment from lattice point (x+1,y) to (x+1,y+1)
+            if (isFreeEnd(x + 1, y) || isFreeEnd(x + 1, y + 1)) return;
+            split(a, a + 1);
+        } else {
+            merge(a, a + 1);
+        }
+    }
+
+    void onHorizontalWall(int x, int y, boolean wall) {
+        int a = y * n + x;
+        if (wall) {
+            // segment from lattice point (x,y+1) to (x+1,y+1)
+            if (isFreeEnd(x, y + 1) || isFreeEnd(x + 1, y + 1)) return;
+            split(a, a + n);
+        } else {
+            merge(a, a + n);
+        }
+    }
+
+    /**
+     * True if the just-added segment is the only wall touching lattice point (px,py)
+     * and the point is not on the border.
+     */
+    private boolean isFreeEnd(int px, int py) {
+        if (px == 0 || py == 0 || px == n || py == n) return false;
+        int walls = 0;
+        if (board.hasVerticalWall(px - 1, py - 1)) walls++;
+        if (board.hasVerticalWall(px - 1, py)) walls++;
+        if (board.hasHorizontalWall(px - 1, py - 1)) walls++;
+        if (board.hasHorizontalWall(px, py - 1)) walls++;
+        return walls <= 1;
+    }
+
+    private void merge(int a, int b) {
+        int la = label[a], lb = label[b];
+        if (la == lb) return;
+        // relabel the smaller region
+        if (regionSize[la] < regionSize[lb]) {
+            relabel(a, la, lb);
+        } else {
+            relabel(b, lb, la);
+        }
+    }
+
+    private void relabel(int start, int from, int to) {
+        int moved = 0;
+        int[] q = queueA;
+        int head = 0, tail = 0;
+        label[start] = to;
+        q[tail++] = start;
+        while (head < tail) {
+            int c = q[head++];
+            moved++;
+            int mask = board.moveMask(c);
+            for (int d = 0; d < 4; d++) {
+                if ((mask & (1 << d)) == 0) continue;
+                int nb = c + deltas[d];
+                if (label[nb] != from) continue;
+                label[nb] = to;
+                if (tail == q.length) q = queueA = Arrays.copyOf(q, q.length * 2);
+                q[tail++] = nb;
+            }
+        }
+        regionSize[to] += moved;
+        regionSize[from] -= moved;
+        if (regionSize[from] == 0) releaseLabel(from);
+    }
+
+    private void split(int a, int b) {
+        int markA = nextStamp(), markB = nextStamp();
+        int[] qa = queueA, qb = queueB;
+        int ha = 0, ta = 0, hb = 0, tb = 0;
+        stamp[a] = markA;
+        qa[ta++] = a;
+        stamp[b] = markB;
+        qb[tb++] = b;
+
+        // lock-step: expand one cell from each side until they meet or one side runs out
+        while (true) {
+            if (ha == ta) break; // side A exhausted -> A's region split off
+            int c = qa[ha++];
+            int mask = board.moveMask(c);
+            for (int d = 0; d < 4; d++) {
+                if ((mask & (1 << d)) == 0) continue;
+                int nb = c + deltas[d];
+                int s = stamp[nb];
+                if (s == markB) { queueA = qa; queueB = qb; return; } // still connected
+                if (s == markA) continue;
+                stamp[nb] = markA;
+                if (ta == qa.length) qa = Arrays.copyOf(qa, qa.length * 2);
+                qa[ta++] = nb;
+            }
+
+            if (hb == tb) break;
+            c = qb[hb++];
+            mask = board.moveMask(c);
+            for (int d = 0; d < 4; d++) {
+                if ((mask & (1 << d)) == 0) continue;
+                int nb = c + deltas[d];
+                int s = stamp[nb];
+                if (s == markA) { queueA = qa; queueB = qb; return; }
+                if (s == markB) continue;
+                stamp[nb] = markB;
+                if (tb == qb.length) qb = Arrays.copyOf(qb, qb.length * 2);
+                qb[tb++] = nb;
+            }
+        }
+        queueA = qa;
+        queueB = qb;
+
+        // the exhausted side holds exactly its whole new region
+        int[] part = (ha == ta) ? qa : qb;
+        int count = (ha == ta) ? ta : tb;
+        int old = label[a];
+        int fresh = newLabel();
+        for (int i = 0; i < count; i++) label[part[i]] = fresh;
+        regionSize[fresh] = count;
+        regionSize[old] -= count;
+    }
+
+    private int nextStamp() {
+        if (stampGen == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            stampGen = 0;
+        }
+        return ++stampGen;
+    }
+
+    /** Initial labelling of the unlabelled (-1) region around start. */
+    private void flood(int start, int l) {
+        int[] q = queueA;
+        int head = 0, tail = 0;
+        label[start] = l;
+        q[tail++] = start;
+        while (head < tail) {
+            int c = q[head++];
+            int mask = board.moveMask(c);
+            for (int d = 0; d < 4; d++) {
+                if ((mask & (1 << d)) == 0) continue;
+                int nb = c + deltas[d];
+                if (label[nb] >= 0) continue;
+                label[nb] = l;
+                if (tail == q.length) q = queueA = Arrays.copyOf(q, q.length * 2);
+                q[tail++] = nb;
+            }
+        }
+        regionSize[l] = tail;
+    }
+
+    private int newLabel() {
+        regionCount++;
+        int l;
+        if (freeCount > 0) {
+            l = freeLabels[--freeCount];
+        } else {
+            l = nextLabel++;
+            if (l == regionSize.length) regionSize = Arrays.copyOf(regionSize, regionSize.length * 2);
+        }
+        regionSize[l] = 0;
+        return l;
+    }
+
+    private void releaseLabel(int l) {
+        regionCount--;
+        if (freeCount == freeLabels.length) freeLabels = Arrays.copyOf(freeLabels, freeLabels.length * 2);
+        freeLabels[freeCount++] = l;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Per-cell corridor lengths: how many steps you can go in each Direction before the first wall/border.
+ *
+ * Stores, for every cell, the bounds of the wall-free run it belongs to in its row and in its column
+ * (coordinates fit in char because Board size is limited to 46340). A wall toggle only rewrites
+ * the row or column run that contains that wall.
+ */
+public final class CorridorTable {
+
+    private final Board board;
+    private final int n;
+
+    // индексы по cell = y*n + x
+    private final char[] rowStart; // x самой левой клетки горизонтального прогона
+    private final char[] rowEnd;   // x самой правой
+    private final char[] colStart; // y самой верхней клетки вертикального прогона
+    private final char[] colEnd;   // y самой нижней
+
+    CorridorTable(Board board) {
+        this.board = board;
+        this.n = board.getSize();
+        int cells = n * n;
+        rowStart = new char[cells];
+        rowEnd = new char[cells];
+        colStart = new char[cells];
+        colEnd = new char[cells];
+        rebuild();
+    }
+
+    /** Number of free steps from cell in dir (0 if the neighbouring wall/border is closed). */
+    public int distance(int cell, Direction dir) {
+        switch (dir) {
+            case UP: return cell / n - colStart[cell];
+            case DOWN: return colEnd[cell] - cell / n;
+            case LEFT: return cell % n - rowStart[cell];
+            case RIGHT: return rowEnd[cell] - cell % n;
+            default: return 0;
+        }
+    }
+
+    public int distance(int x, int y, Direction dir) {
+        return distance(y * n + x, dir);
+    }
+
+    void rebuild() {
+        for (int y = 0; y < n; y++) {
+            int start = 0;
+            for (int x = 0; x < n; x++) {
+                if (x == n - 1 || board.hasVerticalWall(x, y)) {
+                    fillRow(y, start, x, start, x);
+                    start = x + 1;
+                }
+            }
+        }
+        for (int x = 0; x < n; x++) {
+            int start = 0;
+            for (int y = 0; y < n; y++) {
+                if (y == n - 1 || board.hasHorizontalWall(x, y)) {
+                    fillColumn(x, start, y, start, y);
+                    start = y + 1;
+                }
+            }
+        }
+    }
+
+    /** Vertical wall between (x,y) and (x+1,y) toggled; updates only the affected run of row y. */
+    void onVerticalWall(int x, int y, boolean wall) {
+        int left = y * n + x;
+        int right = left + 1;
+        int s = rowStart[left], e = rowEnd[right];
+        if (wall) {
+            // один прогон раскололся на два
+            fillRow(y, s, x, s, x);
+            fillRow(y, x + 1, e, x + 1, e);
+        } else {
+            // два прогона слились
+            fillRow(y, s, e, s, e);
+        }
+    }
+
+    /** Horizontal wall between (x,y) and (x,y+1) toggled; updates only the affected run of column x. */
+    void onHorizontalWall(int x, int y, boolean wall) {
+        int top = y * n + x;
+        int bottom = top + n;
+        int s = colStart[top], e = colEnd[bottom];
+        if (wall) {
+            fillColumn(x, s, y, s, y);
+            fillColumn(x, y + 1, e, y + 1, e);
+        } else {
+            fillColumn(x, s, e, s, e);
+        }
+    }
+
+    private void fillRow(int y, int fromX, int toX, int start, int end) {
+        int base = y * n;
+        for (int x = fromX; x <= toX; x++) {
+            rowStart[base + x] = (char) start;
+            rowEnd[base + x] = (char) end;
+        }
+    }
+
+    private void fillColumn(int x, int fromY, int toY, int start, int end) {
+        for (int y = fromY; y <= toY; y++) {
+            int c = y * n + x;
+            colStart[c] = (char) start;
+            colEnd[c] = (char) end;
+        }
+    }
+}
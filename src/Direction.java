@@ -1,3 +1,15 @@
 public enum Direction {
-    UP, DOWN, LEFT, RIGHT
+    UP(0, -1), DOWN(0, 1), LEFT(-1, 0), RIGHT(1, 0);
+
+    public final int dx;
+    public final int dy;
+
+    /** Бит направления в маске открытых сторон клетки (см. Board.moveMask). */
+    public final int mask;
+
+    Direction(int dx, int dy) {
+        this.dx = dx;
+        this.dy = dy;
+        this.mask = 1 << ordinal();
+    }
 }
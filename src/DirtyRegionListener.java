@@ -0,0 +1,8 @@
+/**
+ * Receives the board cells whose picture changed, so the view can repaint just that part.
+ * Bounds are inclusive cell coordinates, in any order (x0 may be greater than x1).
+ */
+@FunctionalInterface
+public interface DirtyRegionListener {
+    void cellsChanged(int x0, int y0, int x1, int y1);
+}
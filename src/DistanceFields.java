@@ -0,0 +1,114 @@
+/**
+ * Cached BFS distance maps to the KEY, EXIT and HOSPITAL: field[cell] = turns from cell to the target
+ * (the nearest one when there are several keys on the board, exits or hospitals; walls and portals as in
+ * MazeSearch; minotaurs are ignored since they may move), -1 if unreachable.
+ *
+ * A field is computed on first use and kept until the walls change (Board.getWallVersion), a key
+ * moves (GameState.keySignature), exits or hospitals are added or removed (EntityGrid.getVersion), or {@link #invalidate()}
+ * is called after editing portals.
+ * Reading a field or the next step from it is O(1), so hints and AI can query it every frame/turn.
+ */
+public final class DistanceFields {
+
+    public enum Target { KEY, EXIT, HOSPITAL }
+
+    /** nextStep(): no step gets closer (unreachable, already there, or target not placed). */
+    public static final int STEP_NONE = -1;
+    /** nextStep(): skip the turn on a portal (end-turn teleport). Other results are Direction ordinals. */
+    public static final int STEP_SKIP = 4;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final GameState state;
+    private final int[][] fields = new int[Target.values().length][];
+    private final long[] fieldTarget = new long[Target.values().length]; // key signature / EntityGrid version
+    private final boolean[] valid = new boolean[Target.values().length];
+
+    private Board board;
+    private int wallVersion;
+    private MazeSearch search;
+    private int[] targets = new int[0]; // key / exit / hospital cells of the field being searched
+
+    public DistanceFields(GameState state) {
+        this.state = state;
+    }
+
+    /** Drops all cached fields (call after placing/erasing entities or portals). */
+    public void invalidate() {
+        for (int i = 0; i < valid.length; i++) valid[i] = false;
+        search = null;
+    }
+
+    /** Distance field to target, or null if there is no board or the target is not placed. */
+    public int[] field(Target target) {
+        Board b = state.getBoard();
+        if (b == null) return null;
+        int kind = 0;
+        if (target == Target.KEY) {
+            if (state.keysOnBoard() == 0) return null;
+        } else {
+            kind = (target == Target.EXIT) ? EntityGrid.EXIT : EntityGrid.HOSPITAL;
+            if (state.entities.count(kind) == 0) return null;
+        }
+        long key = (kind == 0) ? state.keySignature() : state.entities.getVersion(kind);
+
+        if (b != board || b.getWallVersion() != wallVersion) {
+            invalidate();
+            board = b;
+            wallVersion = b.getWallVersion();
+        }
+
+        int i = target.ordinal();
+        if (!valid[i] || fieldTarget[i] != key) {
+            int cells = b.getSize() * b.getSize();
+            if (fields[i] == null || fields[i].length != cells) fields[i] = new int[cells];
+            if (search == null) search = new MazeSearch(b, state.portals);
+            int count = 0;
+            if (kind == 0) {
+                if (targets.length < state.keysOnBoard()) targets = new int[state.keysOnBoard()];
+                for (int k = 0; k < state.keyCount(); k++) {
+                    if (state.keyX(k) >= 0) targets[count++] = b.cellOf(state.keyX(k), state.keyY(k));
+                }
+            } else {
+                count = state.entities.count(kind);
+                if (targets.length < count) targets = new int[count];
+                for (int t = 0; t < count; t++) {
+                    targets[t] = b.cellOf(state.entities.x(kind, t), state.entities.y(kind, t));
+                }
+            }
+            search.distancesTo(targets, count, fields[i]);
+            fieldTarget[i] = key;
+            valid[i] = true;
+        }
+        return fields[i];
+    }
+
+    /** Turns from (x,y) to target, or -1. */
+    public int distance(Target target, int x, int y) {
+        int[] f = field(target);
+        if (f == null) return -1;
+        return f[board.cellOf(x, y)];
+    }
+
+    /**
+     * First move of a shortest way from (x,y) to target:
+     * a Direction ordinal, {@link #STEP_SKIP} or {@link #STEP_NONE}.
+     */
+    public int nextStep(Target target, int x, int y) {
+        int[] f = field(target);
+        if (f == null) return STEP_NONE;
+        int cell = board.cellOf(x, y);
+        int d = f[cell];
+        if (d <= 0) return STEP_NONE;
+
+        int mask = board.moveMask(cell);
+        for (Direction dir : DIRECTIONS) {
+            if ((mask & dir.mask) == 0) continue;
+            int to = search.landing(cell + board.cellDelta(dir));
+            if (f[to] == d - 1) return dir.ordinal();
+        }
+        int dest = search.portalDestination(cell);
+        if (dest >= 0 && f[dest] == d - 1) return STEP_SKIP;
+        return STEP_NONE;
+    }
+}
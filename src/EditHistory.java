@@ -0,0 +1,230 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Undo/redo for the editor (BUILD_MAZE, PLACE_ENTITIES).
+ *
+ * A step keeps only what it changed: toggled walls, added portal groups, moved portal slots and added or
+ * removed exits/hospitals as small int records, plus the entity record (keys/minotaurs, players, portal cursors,
+ * placement tool, portal group counts) before and after. Undo and redo therefore cost O(changes in the step
+ * + players + keys + minotaurs), independent of the board size.
+ *
+ * Every edit runs between begin() and end(); nested begin/end pairs (a drag that toggles many
+ * walls) fold into the outermost one, so a whole drag is undone as one step.
+ */
+public final class EditHistory {
+
+    /** Older steps are dropped beyond this. */
+    public static final int MAX_STEPS = 1000;
+
+    // op records, RECORD ints each
+    private static final int OP_WALL = 0;   // type ordinal, x, y
+    private static final int OP_PORTAL = 1; // type ordinal, group, index, fromX, fromY, toX, toY
+    private static final int OP_GROUP = 2;  // type ordinal, size (undo drops it with the group count)
+    private static final int OP_ENTITY = 3; // EntityGrid kind, x, y, 1 = added / 0 = removed
+    private static final int RECORD = 8;
+
+    // entity record layout (see capture): GameState.snapshot() first (its length follows the player
+    // count), editor fields after it, at these offsets from the end of the snapshot
+    private static final int E_CURSORS = 0;
+    private static final int E_TOOL = E_CURSORS + 4;
+    private static final int E_PAIR_GROUPS = E_TOOL + 1;
+    private static final int E_CYCLE_GROUPS = E_TOOL + 2;
+    private static final int E_PLACEMENT_PLAYER = E_TOOL + 3;
+    private static final int EDITOR_FIELDS = E_TOOL + 4;
+
+    private static final Edge.Type[] EDGE_TYPES = Edge.Type.values();
+    private static final PortalNetwork.Type[] PORTAL_TYPES = PortalNetwork.Type.values();
+    private static final PlacementTool[] TOOLS = PlacementTool.values();
+
+    private static final class Step {
+        final int[] before;
+        int[] after;
+        int[] ops = new int[RECORD * 4];
+        int length;
+
+        Step(int[] before) {
+            this.before = before;
+        }
+
+        void add(int op, int type, int a, int b, int c, int d, int e, int f) {
+            if (length + RECORD > ops.length) ops = Arrays.copyOf(ops, ops.length * 2);
+            int[] o = ops;
+            int i = length;
+            o[i] = op; o[i + 1] = type;
+            o[i + 2] = a; o[i + 3] = b; o[i + 4] = c; o[i + 5] = d; o[i + 6] = e; o[i + 7] = f;
+            length += RECORD;
+        }
+
+        boolean isEmpty() {
+            return length == 0 && Arrays.equals(before, after);
+        }
+    }
+
+    private final ArrayDeque<Step> undo = new ArrayDeque<>();
+    private final ArrayDeque<Step> redo = new ArrayDeque<>();
+    private Step open;
+    private int depth;
+
+    public void begin(GameState state) {
+        if (depth++ == 0) open = new Step(capture(state));
+    }
+
+    public void end(GameState state) {
+        if (depth == 0) throw new IllegalStateException("end() without begin()");
+        if (--depth > 0) return;
+        Step step = open;
+        open = null;
+        step.after = capture(state);
+        if (step.isEmpty()) return;
+        undo.push(step);
+        if (undo.size() > MAX_STEPS) undo.removeLast();
+        redo.clear();
+    }
+
+    /**
+     * Ends the open step however deeply it is nested (a drag cut short by a mode change);
+     * what it changed so far stays one undo step. No-op if no step is open.
+     */
+    public void close(GameState state) {
+        if (depth == 0) return;
+        depth = 1;
+        end(state);
+    }
+
+    /** True between begin() and the matching end(). */
+    public boolean isOpen() {
+        return depth > 0;
+    }
+
+    public void wallToggled(Edge.Type type, int x, int y) {
+        requireOpen().add(OP_WALL, type.ordinal(), x, y, 0, 0, 0, 0);
+    }
+
+    /** Slot (type, group, index) moved from (fromX,fromY) to (toX,toY); -1 = not placed. */
+    public void portalMoved(PortalNetwork.Type type, int group, int index, int fromX, int fromY, int toX, int toY) {
+        requireOpen().add(OP_PORTAL, type.ordinal(), group, index, fromX, fromY, toX, toY);
+    }
+
+    /** A portal group was appended (its index is the current group count). */
+    public void groupAdded(PortalNetwork.Type type, int size) {
+        requireOpen().add(OP_GROUP, type.ordinal(), size, 0, 0, 0, 0, 0);
+    }
+
+    /** An exit or hospital (EntityGrid kind) was added to or removed from (x,y). */
+    public void entityChanged(int kind, int x, int y, boolean added) {
+        requireOpen().add(OP_ENTITY, kind, x, y, added ? 1 : 0, 0, 0, 0);
+    }
+
+    public boolean canUndo() {
+        return !undo.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redo.isEmpty();
+    }
+
+    public void clear() {
+        undo.clear();
+        redo.clear();
+        open = null;
+        depth = 0;
+    }
+
+    /** Reverts the last step; false if there is nothing to undo. */
+    public boolean undo(GameState state) {
+        if (depth > 0 || undo.isEmpty()) return false;
+        Step s = undo.pop();
+        Board board = state.getBoard();
+        PortalNetwork portals = state.portals;
+
+        int[] o = s.ops;
+        for (int i = s.length - RECORD; i >= 0; i -= RECORD) {
+            if (o[i] == OP_WALL) {
+                toggle(board, EDGE_TYPES[o[i + 1]], o[i + 2], o[i + 3]);
+            } else if (o[i] == OP_PORTAL) {
+                // back from (toX,toY) to (fromX,fromY)
+                movePortal(portals, PORTAL_TYPES[o[i + 1]], o[i + 2], o[i + 3], o[i + 6], o[i + 7], o[i + 4], o[i + 5]);
+            } else if (o[i] == OP_ENTITY) {
+                setEntity(state.entities, o[i + 1], o[i + 2], o[i + 3], o[i + 4] == 0);
+            }
+        }
+        restore(state, s.before);
+        redo.push(s);
+        return true;
+    }
+
+    /** Re-applies the last undone step; false if there is nothing to redo. */
+    public boolean redo(GameState state) {
+        if (depth > 0 || redo.isEmpty()) return false;
+        Step s = redo.pop();
+        Board board = state.getBoard();
+        PortalNetwork portals = state.portals;
+
+        int[] o = s.ops;
+        for (int i = 0; i < s.length; i += RECORD) {
+            if (o[i] == OP_WALL) {
+                toggle(board, EDGE_TYPES[o[i + 1]], o[i + 2], o[i + 3]);
+            } else if (o[i] == OP_GROUP) {
+                portals.addGroup(PORTAL_TYPES[o[i + 1]], o[i + 2]);
+            } else if (o[i] == OP_ENTITY) {
+                setEntity(state.entities, o[i + 1], o[i + 2], o[i + 3], o[i + 4] != 0);
+            } else {
+                movePortal(portals, PORTAL_TYPES[o[i + 1]], o[i + 2], o[i + 3], o[i + 4], o[i + 5], o[i + 6], o[i + 7]);
+            }
+        }
+        restore(state, s.after);
+        undo.push(s);
+        return true;
+    }
+
+    private Step requireOpen() {
+        if (open == null) throw new IllegalStateException("edit outside begin()/end()");
+        return open;
+    }
+
+    private static void toggle(Board board, Edge.Type type, int x, int y) {
+        if (type == Edge.Type.VERTICAL) board.toggleVerticalWall(x, y);
+        else board.toggleHorizontalWall(x, y);
+    }
+
+    private static void movePortal(PortalNetwork portals, PortalNetwork.Type type, int group, int index,
+                                   int fromX, int fromY, int toX, int toY) {
+        if (fromX >= 0 && fromY >= 0) portals.removeAt(fromX, fromY);
+        if (toX >= 0 && toY >= 0) portals.place(type, group, index, toX, toY);
+    }
+
+    private static void setEntity(EntityGrid entities, int kind, int x, int y, boolean on) {
+        if (on) entities.add(kind, x, y);
+        else entities.remove(kind, x, y);
+    }
+
+    private static int[] capture(GameState s) {
+        int b = s.snapshotSize();
+        int[] e = new int[b + EDITOR_FIELDS];
+        s.snapshot(e);
+        e[b + E_CURSORS] = s.pairCursorGroup;
+        e[b + E_CURSORS + 1] = s.pairCursorIndex;
+        e[b + E_CURSORS + 2] = s.cycleCursorGroup;
+        e[b + E_CURSORS + 3] = s.cycleCursorIndex;
+        e[b + E_TOOL] = s.getPlacementTool().ordinal();
+        e[b + E_PLACEMENT_PLAYER] = s.getPlacementPlayer();
+        e[b + E_PAIR_GROUPS] = s.portals.groupCount(PortalNetwork.Type.PAIR);
+        e[b + E_CYCLE_GROUPS] = s.portals.groupCount(PortalNetwork.Type.CYCLE);
+        return e;
+    }
+
+    private static void restore(GameState s, int[] e) {
+        int b = e.length - EDITOR_FIELDS;
+        s.restore(e);
+        s.pairCursorGroup = e[b + E_CURSORS];
+        s.pairCursorIndex = e[b + E_CURSORS + 1];
+        s.cycleCursorGroup = e[b + E_CURSORS + 2];
+        s.cycleCursorIndex = e[b + E_CURSORS + 3];
+        s.setPlacementTool(TOOLS[e[b + E_TOOL]]);
+        s.setPlacementPlayer(e[b + E_PLACEMENT_PLAYER]);
+        s.portals.truncateGroups(PortalNetwork.Type.PAIR, e[b + E_PAIR_GROUPS]);
+        s.portals.truncateGroups(PortalNetwork.Type.CYCLE, e[b + E_CYCLE_GROUPS]);
+        s.distances.invalidate();
+    }
+}
@@ -0,0 +1,233 @@
+import java.util.Arrays;
+
+/**
+ * Exits and hospitals, any number of each: an open-addressing table from a cell to the kinds in it for
+ * O(1) "what is in this cell" lookups, plus the placed cells of each kind as a flat list for drawing, saving
+ * and searches. Memory follows the number of entities, not the board, so a 40000x40000 maze with one exit
+ * costs as little as a small one. Like PortalNetwork it does not change in play, so copies of a GameState
+ * share it.
+ *
+ * The bits also name the things GameState.cellMask reports from the run state and the portals
+ * (key, minotaur, players, portals), so placement rules test a whole cell with one mask.
+ */
+public final class EntityGrid {
+
+    public static final int KEY = 1;
+    public static final int EXIT = 2;
+    public static final int HOSPITAL = 4;
+    public static final int MINOTAUR = 8;
+    public static final int PLAYER = 16;
+    public static final int PORTAL = 32;
+
+    private static final int KINDS = 2;
+    private static final int EMPTY = -1;
+    private static final int MIN_CAPACITY = 8;
+
+    private int n;       // board size the cells are on
+    private final int[][] cells = {new int[0], new int[0]}; // placed cells by kind, (y << 16) | x
+    private final int[] count = new int[KINDS];
+    private final int[] version = new int[KINDS]; // bumped on every change, so caches can tell
+
+    // cell key (y << 16) | x -> EXIT / HOSPITAL bits and, by kind, the cell's index in cells
+    private int[] keys;
+    private byte[] bits;
+    private final int[][] index = new int[KINDS][];
+    private int used;
+    private int shift;
+
+    public EntityGrid() {
+        emptyTable();
+    }
+
+    /** Board the cells refer to; a new size re-indexes the placed entities (those off the board are dropped). */
+    public void setBoardSize(int size) {
+        if (size == n) return;
+        n = size;
+        emptyTable();
+        for (int k = 0; k < KINDS; k++) {
+            int kept = 0;
+            for (int i = 0; i < count[k]; i++) {
+                int c = cells[k][i];
+                if ((c & 0xFFFF) < n && (c >>> 16) < n) cells[k][kept++] = c;
+            }
+            if (kept != count[k]) version[k]++;
+            count[k] = kept;
+            for (int i = 0; i < kept; i++) insert(k, cells[k][i], i);
+        }
+    }
+
+    public void clear() {
+        for (int k = 0; k < KINDS; k++) {
+            if (count[k] > 0) version[k]++;
+            count[k] = 0;
+        }
+        emptyTable();
+    }
+
+    /** Bumped whenever an entity of the kind (EXIT or HOSPITAL) is added or removed. */
+    public int getVersion(int kind) {
+        return version[index(kind)];
+    }
+
+    /** EXIT / HOSPITAL bits of cell (x,y); 0 off the board. */
+    public int mask(int x, int y) {
+        if (used == 0 || x < 0 || y < 0 || x >= n || y >= n) return 0;
+        int s = find((y << 16) | x);
+        return (keys[s] == EMPTY) ? 0 : bits[s];
+    }
+
+    /** Puts an entity of the kind into (x,y); false if one is already there. */
+    public boolean add(int kind, int x, int y) {
+        int k = index(kind);
+        if (n == 0) throw new IllegalStateException("board size is not set");
+        if (x < 0 || y < 0 || x >= n || y >= n) throw new IndexOutOfBoundsException("cell " + x + "," + y);
+        if ((mask(x, y) & kind) != 0) return false;
+        if (count[k] == cells[k].length) cells[k] = Arrays.copyOf(cells[k], Math.max(16, count[k] * 2));
+        insert(k, (y << 16) | x, count[k]);
+        cells[k][count[k]++] = (y << 16) | x;
+        version[k]++;
+        return true;
+    }
+
+    /**
+     * Takes the entity of the kind out of (x,y); false if there is none. O(1): the last one of the list
+     * takes the freed place, so the list order is not the placement order.
+     */
+    public boolean remove(int kind, int x, int y) {
+        int k = index(kind);
+        if ((mask(x, y) & kind) == 0) return false;
+        int s = find((y << 16) | x);
+        int i = index[k][s];
+        int last = cells[k][--count[k]];
+        if (i != count[k]) {
+            cells[k][i] = last;
+            index[k][find(last)] = i;
+        }
+        bits[s] &= (byte) ~kind;
+        if (bits[s] == 0) delete(s);
+        version[k]++;
+        return true;
+    }
+
+    public int count(int kind) {
+        return count[index(kind)];
+    }
+
+    /** X of the i-th placed entity of the kind (0 <= i < count(kind)). */
+    public int x(int kind, int i) {
+        return entry(kind, i) & 0xFFFF;
+    }
+
+    public int y(int kind, int i) {
+        return entry(kind, i) >>> 16;
+    }
+
+    /**
+     * The entity of the kind nearest to (x,y) by Manhattan distance, ties to the lower cell (row, then
+     * column), so the answer does not depend on the list order; -1 if none. O(entities of the kind).
+     */
+    public int nearest(int kind, int x, int y) {
+        int k = index(kind);
+        int best = -1;
+        long bestKey = Long.MAX_VALUE;
+        for (int i = 0; i < count[k]; i++) {
+            int c = cells[k][i];
+            long d = Math.abs((c & 0xFFFF) - x) + Math.abs((c >>> 16) - y);
+            long key = (d << 32) | (c & 0xFFFFFFFFL);
+            if (key < bestKey) {
+                bestKey = key;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private int entry(int kind, int i) {
+        int k = index(kind);
+        if (i < 0 || i >= count[k]) throw new IndexOutOfBoundsException("entity " + i);
+        return cells[k][i];
+    }
+
+    /** Records that the cell with key c holds the i-th entity of kind index k. */
+    private void insert(int k, int c, int i) {
+        int s = find(c);
+        if (keys[s] == EMPTY) {
+            if (2 * (used + 1) > keys.length) {
+                grow();
+                s = find(c);
+            }
+            keys[s] = c;
+            bits[s] = 0;
+            used++;
+        }
+        bits[s] |= (byte) bit(k);
+        index[k][s] = i;
+    }
+
+    /** Empty table of the smallest size. */
+    private void emptyTable() {
+        keys = new int[MIN_CAPACITY];
+        Arrays.fill(keys, EMPTY);
+        bits = new byte[MIN_CAPACITY];
+        for (int k = 0; k < KINDS; k++) index[k] = new int[MIN_CAPACITY];
+        shift = 32 - Integer.numberOfTrailingZeros(MIN_CAPACITY);
+        used = 0;
+    }
+
+    /** Twice the slots, so the load factor stays <= 1/2. */
+    private void grow() {
+        int[] oldKeys = keys;
+        byte[] oldBits = bits;
+        int[][] oldIndex = {index[0], index[1]};
+        int capacity = oldKeys.length * 2;
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        bits = new byte[capacity];
+        for (int k = 0; k < KINDS; k++) index[k] = new int[capacity];
+        shift--;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == EMPTY) continue;
+            int s = find(oldKeys[j]);
+            keys[s] = oldKeys[j];
+            bits[s] = oldBits[j];
+            for (int k = 0; k < KINDS; k++) index[k][s] = oldIndex[k][j];
+        }
+    }
+
+    private int slot(int key) {
+        return (key * 0x9E3779B9) >>> shift;
+    }
+
+    /** Slot holding key, or the free slot where it would go. */
+    private int find(int key) {
+        int s = slot(key);
+        while (keys[s] != EMPTY && keys[s] != key) s = (s + 1) & (keys.length - 1);
+        return s;
+    }
+
+    /** Frees slot s, moving later entries of its probe run back so lookups still find them. */
+    private void delete(int s) {
+        int mask = keys.length - 1;
+        for (int j = (s + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - s) & mask)) {
+                keys[s] = keys[j];
+                bits[s] = bits[j];
+                for (int k = 0; k < KINDS; k++) index[k][s] = index[k][j];
+                s = j;
+            }
+        }
+        keys[s] = EMPTY;
+        used--;
+    }
+
+    private static int index(int kind) {
+        if (kind == EXIT) return 0;
+        if (kind == HOSPITAL) return 1;
+        throw new IllegalArgumentException("not a static entity: " + kind);
+    }
+
+    private static int bit(int k) {
+        return (k == 0) ? EXIT : HOSPITAL;
+    }
+}
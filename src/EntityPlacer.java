@@ -0,0 +1,160 @@
+/**
+ * Editor placement with no Swing in it: puts the entity, player or portal of a PlacementTool into a cell
+ * when PlacementRules allow it (one GameState.cellMask lookup), and erases cells. BoardPanel places a
+ * cell per click; scripts and bulk edits fill a map with {@link #placeAll}, thousands of exits or
+ * portals at O(1) each.
+ *
+ * While a step of the EditHistory is open the changes are recorded in it. Cells whose picture changed,
+ * the old cell of a moved player or portal included, go to the DirtyRegionListener.
+ */
+public final class EntityPlacer {
+
+    private GameState state;
+    private EditHistory history; // null = not recording
+    private DirtyRegionListener dirty = (x0, y0, x1, y1) -> {};
+
+    public EntityPlacer() {
+    }
+
+    public EntityPlacer(GameState state) {
+        this.state = state;
+    }
+
+    public void setState(GameState state) {
+        this.state = state;
+    }
+
+    /** Undo history to record into while one of its steps is open; null = none. */
+    public void setHistory(EditHistory history) {
+        this.history = history;
+    }
+
+    /** Cells whose picture changed; null detaches. */
+    public void setDirtyRegionListener(DirtyRegionListener listener) {
+        this.dirty = (listener != null) ? listener : (x0, y0, x1, y1) -> {};
+    }
+
+    /**
+     * Places tool at (x,y): players move there, a key, minotaur, exit or hospital is added (there may
+     * be any number; one already in the cell stays as it is), a portal takes the slot under the state's
+     * portal cursor, which then moves on.
+     *
+     * @return null if placed, else why not (the message of the PlacementRules rule it breaks)
+     */
+    public String place(PlacementTool tool, int x, int y) {
+        String refused = PlacementRules.check(tool, state.cellMask(x, y));
+        if (refused != null) return refused;
+        put(tool, x, y);
+        state.distances.invalidate();
+        return null;
+    }
+
+    /**
+     * {@link #place} on each of cells[0..count) (cell = y * n + x), skipping the cells the rules do not
+     * allow; O(1) per cell. Meant for keys, exits, hospitals, minotaurs and portals: a player just ends
+     * up in the last allowed cell.
+     *
+     * @return number of cells placed
+     */
+    public int placeAll(PlacementTool tool, int[] cells, int count) {
+        int n = state.getBoard().getSize();
+        int forbidden = PlacementRules.forbidden(tool);
+        int placed = 0;
+        for (int i = 0; i < count; i++) {
+            int c = cells[i];
+            if (c < 0 || c >= n * n) throw new IndexOutOfBoundsException("cell " + c);
+            int x = c % n, y = c / n;
+            if ((state.cellMask(x, y) & forbidden) != 0) continue;
+            put(tool, x, y);
+            placed++;
+        }
+        if (placed > 0) state.distances.invalidate();
+        return placed;
+    }
+
+    /** Removes everything from (x,y): portal, keys, exit, hospital, minotaurs and players (with the keys they carry). */
+    public void erase(int x, int y) {
+        PortalNetwork.Ref portal = state.portals.portalAt(x, y);
+        if (portal != null) {
+            state.portals.removeAt(x, y);
+            if (recording()) history.portalMoved(portal.type, portal.group, portal.index, x, y, -1, -1);
+        }
+        int m = state.cellMask(x, y);
+        for (int k = state.keyAt(x, y); k >= 0; k = state.keyAt(x, y)) state.removeKey(k);
+        if ((m & EntityGrid.EXIT) != 0) removeEntity(EntityGrid.EXIT, x, y);
+        if ((m & EntityGrid.HOSPITAL) != 0) removeEntity(EntityGrid.HOSPITAL, x, y);
+        for (int k = state.minotaurAt(x, y); k >= 0; k = state.minotaurAt(x, y)) state.removeMinotaur(k);
+        for (GameState.PlayerState p = state.playerAt(x, y); p != null; p = state.playerAt(x, y)) {
+            p.setPosition(-1, -1);
+            if (p.hasKey()) state.removeKey(p.carriedKey());
+        }
+        state.distances.invalidate();
+        changed(x, y);
+    }
+
+    private void put(PlacementTool tool, int x, int y) {
+        switch (tool) {
+            case KEY: if (state.keyAt(x, y) < 0) state.addKey(x, y); break;
+            case EXIT: addEntity(EntityGrid.EXIT, x, y); break;
+            case HOSPITAL: addEntity(EntityGrid.HOSPITAL, x, y); break;
+            case MINOTAUR: if (state.minotaurAt(x, y) < 0) state.addMinotaur(x, y); break;
+            case PLAYER: movePlayer(state.player(state.getPlacementPlayer()), x, y); break;
+            case PORTAL_PAIR: placePortal(PortalNetwork.Type.PAIR, x, y); break;
+            case PORTAL_CYCLE: placePortal(PortalNetwork.Type.CYCLE, x, y); break;
+        }
+        changed(x, y);
+    }
+
+    private void movePlayer(GameState.PlayerState p, int x, int y) {
+        changed(p.x(), p.y());
+        p.setPosition(x, y);
+        p.setAlive(true);
+    }
+
+    private void addEntity(int kind, int x, int y) {
+        if (state.entities.add(kind, x, y) && recording()) history.entityChanged(kind, x, y, true);
+    }
+
+    private void removeEntity(int kind, int x, int y) {
+        if (state.entities.remove(kind, x, y) && recording()) history.entityChanged(kind, x, y, false);
+    }
+
+    /** The slot under the portal cursor of the type goes to (x,y) (a free cell), then the cursor moves on. */
+    private void placePortal(PortalNetwork.Type type, int x, int y) {
+        PortalNetwork portals = state.portals;
+        boolean pair = (type == PortalNetwork.Type.PAIR);
+        int g = pair ? state.pairCursorGroup : state.cycleCursorGroup;
+        int i = pair ? state.pairCursorIndex : state.cycleCursorIndex;
+        while (portals.groupCount(type) <= g) {
+            int size = pair ? 2 : state.cycleLength;
+            portals.addGroup(type, size);
+            if (recording()) history.groupAdded(type, size);
+        }
+
+        int fromX = portals.portalX(type, g, i);
+        int fromY = portals.portalY(type, g, i);
+        portals.place(type, g, i, x, y);
+        if (recording()) history.portalMoved(type, g, i, fromX, fromY, x, y);
+        changed(fromX, fromY);
+
+        if (++i >= portals.groupSize(type, g)) {
+            i = 0;
+            g++;
+        }
+        if (pair) {
+            state.pairCursorGroup = g;
+            state.pairCursorIndex = i;
+        } else {
+            state.cycleCursorGroup = g;
+            state.cycleCursorIndex = i;
+        }
+    }
+
+    private boolean recording() {
+        return history != null && history.isOpen();
+    }
+
+    private void changed(int x, int y) {
+        if (x >= 0 && y >= 0) dirty.cellsChanged(x, y, x, y);
+    }
+}
@@ -1,28 +1,53 @@
-import java.util.function.Consumer;
+import java.util.Arrays;
 
 /**
  * Pure game rules / state mutations for PLAY mode.
- * No Swing, no rendering.
+ * No Swing, no rendering: what happened is reported as GameEventListener events.
  */
 public final class GameEngine {
 
     private GameState state;
-    private Consumer<String> status = s -> {};
+    private GameEventListener listener = GameEventListener.NONE;
+    private GameStats stats;
+    private GameEventListener events = GameEventListener.NONE; // stats + listener
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private DirtyRegionListener dirty = (x0, y0, x1, y1) -> {};
+    private ActionJournal journal; // null = not recording
+
+    private GameState.PlayerState[] victims = new GameState.PlayerState[2]; // minotaurTurn scratch
 
     public GameEngine() {
     }
 
-    public GameEngine(GameState state, Consumer<String> status) {
+    public GameEngine(GameState state) {
         this.state = state;
-        if (status != null) this.status = status;
     }
 
     public void setState(GameState state) {
         this.state = state;
     }
 
-    public void setStatusConsumer(Consumer<String> consumer) {
-        this.status = (consumer != null) ? consumer : (s -> {});
+    /** Receives game events; null = no events (nothing is reported or allocated). */
+    public void setEventListener(GameEventListener listener) {
+        this.listener = (listener != null) ? listener : GameEventListener.NONE;
+        events = GameEventListener.both((stats != null) ? stats : GameEventListener.NONE, this.listener);
+    }
+
+    /** Counters to update while playing (kills, portal uses, turns); null detaches them. */
+    public void setStats(GameStats stats) {
+        this.stats = stats;
+        events = GameEventListener.both((stats != null) ? stats : GameEventListener.NONE, listener);
+    }
+
+    /** Cells whose picture changed (moves, kills, shot rays, turn change); null detaches. */
+    public void setDirtyRegionListener(DirtyRegionListener listener) {
+        this.dirty = (listener != null) ? listener : (x0, y0, x1, y1) -> {};
+    }
+
+    /** Every action call (accepted or not) is appended to journal; null stops recording. */
+    public void setJournal(ActionJournal journal) {
+        this.journal = journal;
     }
 
     public boolean isReady() {
@@ -32,180 +57,331 @@ public final class GameEngine {
     /** Move consumes turn only if actual move happened (same as your current logic). */
     public void performMove(GameState.PlayerState p, int idx, Direction dir) {
         if (!isReady()) return;
-        if (state.gameOver) {
-            status.accept(state.gameOverMessage);
+        if (journal != null) journal.recordMove(idx, dir);
+        if (state.isGameOver()) {
+            events.rejected(idx, GameEventListener.Rejection.GAME_OVER);
             return;
         }
 
-        int[] next = state.getBoard().move(p.x, p.y, dir);
-        if (next[0] == p.x && next[1] == p.y) {
-            status.accept("Blocked by wall/border. Player " + idx);
+        Board board = state.getBoard();
+        int from = board.cellOf(p.x(), p.y());
+        int to = board.moveCell(from, dir);
+        if (to == from) {
+            events.blocked(idx, dir);
             return; // move not done, do not spend the turn
         }
 
-        p.x = next[0];
-        p.y = next[1];
+        dirtyCell(p.x(), p.y());
+        p.setPosition(board.cellX(to), board.cellY(to));
+        dirtyCell(p.x(), p.y());
+        events.moved(idx, board.cellX(from), board.cellY(from), p.x(), p.y());
 
         // portals: instant teleport on landing (at most once per active turn)
-        resolvePortalIfNeeded(p, idx, "landing");
-
-        // key
-        if (p.x == state.keyX && p.y == state.keyY) {
-            p.hasKey = true;
-            state.keyX = -1;
-            state.keyY = -1;
-            status.accept("Player " + idx + " picked up KEY");
+        resolvePortalIfNeeded(p, idx, false);
+
+        // key: a player carries one at most, the others in the cell stay there
+        if (!p.hasKey()) {
+            int key = state.keyAt(p.x(), p.y());
+            if (key >= 0) {
+                state.setKey(key, -1, -1);
+                p.setCarriedKey(key);
+                events.keyPicked(idx, p.x(), p.y());
+            }
         }
 
-        // minotaur
-        if (p.x == state.minotaurX && p.y == state.minotaurY) {
-            killPlayer(p, state.minotaurX, state.minotaurY, "Player " + idx + " died (MINOTAUR)");
+        // minotaur (any of them)
+        if (state.minotaurAt(p.x(), p.y()) >= 0) {
+            killPlayer(p, idx, GameEventListener.Cause.MINOTAUR, 0, p.x(), p.y());
         }
 
-        // exit
-        if (p.x == state.exitX && p.y == state.exitY) {
-            if (p.hasKey) {
-                state.gameOver = true;
-                state.gameOverMessage = "Player " + idx + " WIN (exit + key)";
-                status.accept(state.gameOverMessage);
+        // exit (any of them)
+        if ((state.entities.mask(p.x(), p.y()) & EntityGrid.EXIT) != 0) {
+            if (p.hasKey()) {
+                state.setGameOver(idx);
+                events.gameOver(idx);
                 return;
             } else {
-                status.accept("Need KEY to exit!");
+                events.exitLocked(idx);
             }
         }
 
-        endTurn();
+        nextTurn();
     }
 
     public void performShoot(GameState.PlayerState shooter, int shooterIndex, Direction dir) {
         if (!isReady()) return;
-        if (state.gameOver) {
-            status.accept(state.gameOverMessage);
+        if (journal != null) journal.recordShoot(shooterIndex, dir);
+        if (state.isGameOver()) {
+            events.rejected(shooterIndex, GameEventListener.Rejection.GAME_OVER);
             return;
         }
 
-        if (shooter.shotsLeft <= 0) {
-            status.accept("Player " + shooterIndex + ": no shots left");
+        if (shooter.shotsLeft() <= 0) {
+            events.rejected(shooterIndex, GameEventListener.Rejection.NO_SHOTS);
             return;
         }
 
-        shooter.shotsLeft--;
+        shooter.setShotsLeft(shooter.shotsLeft() - 1);
 
-        int x = shooter.x;
-        int y = shooter.y;
-
-        // ray until first wall/border
-        while (state.getBoard().canMove(x, y, dir)) {
-            int[] next = state.getBoard().move(x, y, dir);
-            x = next[0];
-            y = next[1];
+        // ray until first wall/border: its length comes from the corridor table,
+        // so only the few occupants on that segment have to be checked
+        int range = state.getBoard().corridors().distance(shooter.x(), shooter.y(), dir);
+        if (range > 0) {
+            dirty.cellsChanged(shooter.x() + dir.dx, shooter.y() + dir.dy,
+                    shooter.x() + dir.dx * range, shooter.y() + dir.dy * range);
+        }
 
-            // minotaur
-            if (x == state.minotaurX && y == state.minotaurY) {
-                killMinotaur("Player " + shooterIndex + " shot MINOTAUR at (" + x + "," + y + ")");
-                return;
-            }
+        int minotaur = firstMinotaurOnRay(shooter, dir, range);
+        int minotaurDist = (minotaur >= 0)
+                ? rayDistance(shooter, dir, state.minotaurX(minotaur), state.minotaurY(minotaur), range) : -1;
 
-            // other player (first on line)
-            GameState.PlayerState other = getOtherPlayerAt(x, y, shooter);
-            if (other != null) {
-                killPlayer(other, x, y, "Player " + shooterIndex + " shot player at (" + x + "," + y + ")");
-                return;
-            }
+        // other player (first on line); a minotaur is hit first when both stand in the same cell
+        GameState.PlayerState other = firstPlayerOnRay(shooter, dir, (minotaurDist > 0) ? minotaurDist - 1 : range);
+        boolean hitMinotaur = minotaurDist > 0 && other == null;
+        events.shot(shooterIndex, dir, hitMinotaur || other != null, shooter.shotsLeft());
+        if (hitMinotaur) {
+            killMinotaur(minotaur, GameEventListener.Cause.SHOT, shooterIndex);
+            return;
+        }
+        if (other != null) {
+            killPlayer(other, other.index(), GameEventListener.Cause.SHOT, shooterIndex, other.x(), other.y());
         }
-
-        status.accept("Player " + shooterIndex + " shot: MISS (shots left " + shooter.shotsLeft + ")");
     }
 
-    public void performKnife(GameState.PlayerState attacker, int attackerIndex, int targetX, int targetY, String label) {
+    public void performKnife(GameState.PlayerState attacker, int attackerIndex, int targetX, int targetY) {
         if (!isReady()) return;
-        if (state.gameOver) {
-            status.accept(state.gameOverMessage);
+        if (journal != null) journal.recordKnife(attackerIndex, targetX - attacker.x(), targetY - attacker.y());
+        if (state.isGameOver()) {
+            events.rejected(attackerIndex, GameEventListener.Rejection.GAME_OVER);
             return;
         }
 
-        // minotaur
-        if (targetX == state.minotaurX && targetY == state.minotaurY) {
-            killMinotaur("Player " + attackerIndex + " knifed MINOTAUR " + label + " at (" + targetX + "," + targetY + ")");
+        // minotaur (one of them, if several share the cell)
+        int minotaur = state.minotaurAt(targetX, targetY);
+        if (minotaur >= 0) {
+            killMinotaur(minotaur, GameEventListener.Cause.KNIFE, attackerIndex);
             return;
         }
 
         // other player (can be on same cell)
         GameState.PlayerState other = getOtherPlayerAt(targetX, targetY, attacker);
         if (other != null) {
-            killPlayer(other, targetX, targetY,
-                    "Player " + attackerIndex + " knifed player " + label + " at (" + targetX + "," + targetY + ")");
+            killPlayer(other, other.index(), GameEventListener.Cause.KNIFE, attackerIndex, targetX, targetY);
             return;
         }
 
-        status.accept("Player " + attackerIndex + " knife: no target " + label);
+        events.knifeMissed(attackerIndex, targetX, targetY);
     }
 
     public void endTurn() {
         if (!isReady()) return;
+        if (journal != null) journal.recordEndTurn();
+        nextTurn();
+    }
+
+    /** End of turn, also after a successful move (recorded as part of that move). */
+    private void nextTurn() {
 
         // portals: teleport on end-turn (at most once per turn)
-        resolvePortalIfNeeded(state.currentPlayer(), state.currentPlayerIndex, "end-turn");
+        resolvePortalIfNeeded(state.currentPlayer(), state.currentPlayerIndex(), true);
 
-        state.nextTurn();
-        if (!state.currentPlayer().alive) state.nextTurn(); // skip dead
+        if (state.minotaurChases) minotaurTurn();
 
-        state.teleportedThisTurn = false;
+        // current-player highlight moves from one player to the other
+        dirtyCell(state.currentPlayer().x(), state.currentPlayer().y());
+        state.nextTurn(); // skips the dead
+        dirtyCell(state.currentPlayer().x(), state.currentPlayer().y());
 
-        status.accept("Turn: Player " + state.currentPlayerIndex +
-                " (shots " + state.currentPlayer().shotsLeft + ")");
+        state.setTeleportedThisTurn(false);
+        events.turnEnded(state.currentPlayerIndex());
     }
 
-    private void resolvePortalIfNeeded(GameState.PlayerState p, int idx, String why) {
+    private void resolvePortalIfNeeded(GameState.PlayerState p, int idx, boolean atTurnEnd) {
         if (p == null) return;
         if (state == null) return;
-        if (state.teleportedThisTurn) return;
-        if (p.x < 0 || p.y < 0) return;
+        if (state.teleportedThisTurn()) return;
+        if (p.x() < 0 || p.y() < 0) return;
+
+        Board board = state.getBoard();
+        int dest = state.portals.destinationFrom(board.cellOf(p.x(), p.y()));
+        if (dest < 0) return;
+
+        state.setTeleportedThisTurn(true);
+        int fromX = p.x(), fromY = p.y();
+        dirtyCell(p.x(), p.y());
+        p.setPosition(board.cellX(dest), board.cellY(dest));
+        dirtyCell(p.x(), p.y());
+        events.teleported(idx, fromX, fromY, p.x(), p.y(), atTurnEnd);
+    }
+
+    /** Every living minotaur makes a step, in slot order, all from one chase table. */
+    private void minotaurTurn() {
+        if (state.minotaurCount() == 0 || state.isGameOver()) return;
+        state.chase.update();
+        for (int m = 0; m < state.minotaurCount(); m++) {
+            if (state.minotaurX(m) >= 0) minotaurStep(m);
+        }
+    }
 
-        int[] dest = state.portals.destinationFrom(p.x, p.y);
-        if (dest == null) return;
+    /** One step of a chasing minotaur; walking into a player kills like a player walking into it. */
+    private void minotaurStep(int m) {
+        Board board = state.getBoard();
+        int from = board.cellOf(state.minotaurX(m), state.minotaurY(m));
 
-        state.teleportedThisTurn = true;
-        p.x = dest[0];
-        p.y = dest[1];
-        status.accept("Player " + idx + " portal (" + why + ") -> (" + p.x + "," + p.y + ")");
+        int step = state.chase.stepFrom(from);
+        int to;
+        if (step == MinotaurChase.STEP_NONE) return;
+        if (step == MinotaurChase.STEP_SKIP) {
+            to = state.chase.portalDestination(from);
+        } else {
+            Direction dir = DIRECTIONS[step];
+            to = state.chase.landing(board.moveCell(from, dir));
+        }
+        if (to < 0 || to == from) return;
+
+        int x = board.cellX(to), y = board.cellY(to);
+        dirtyCell(board.cellX(from), board.cellY(from));
+        state.setMinotaur(m, x, y);
+        dirtyCell(x, y);
+        events.minotaurMoved(board.cellX(from), board.cellY(from), x, y);
+
+        // everyone in the cell, listed first: a victim respawned there (hospital under the minotaur) dies once
+        int count = 0;
+        for (GameState.PlayerState p = state.playerAt(x, y); p != null;
+             p = state.nextPlayerInCell(p)) {
+            if (count == victims.length) victims = Arrays.copyOf(victims, count * 2);
+            victims[count++] = p;
+        }
+        for (int i = 0; i < count; i++) {
+            GameState.PlayerState p = victims[i];
+            victims[i] = null;
+            killPlayer(p, p.index(), GameEventListener.Cause.MINOTAUR, 0, p.x(), p.y());
+        }
     }
 
-    private void killPlayer(GameState.PlayerState p, int deathX, int deathY, String reason) {
+    /** @param killer player index, 0 for the minotaur */
+    private void killPlayer(GameState.PlayerState p, int victim, GameEventListener.Cause cause, int killer,
+                            int deathX, int deathY) {
+        dirtyCell(deathX, deathY);
+        events.killed(victim, cause, killer, deathX, deathY);
+
         // 1) drop key to death cell
-        if (p.hasKey) {
-            p.hasKey = false;
-            state.keyX = deathX;
-            state.keyY = deathY;
+        int key = p.carriedKey();
+        if (key >= 0) {
+            p.setCarriedKey(-1);
+            state.setKey(key, deathX, deathY);
         }
 
         // if current player died, block extra teleport logic this turn
         if (p == state.currentPlayer()) {
-            state.teleportedThisTurn = true;
+            state.setTeleportedThisTurn(true);
         }
 
-        // 2) respawn to hospital if exists
-        if (state.hospitalX >= 0 && state.hospitalY >= 0) {
-            p.x = state.hospitalX;
-            p.y = state.hospitalY;
-            p.alive = true;
-            status.accept(reason + " -> respawn to HOSPITAL (" + p.x + "," + p.y + ")");
+        // 2) respawn to the hospital nearest to the death cell, if there is one
+        EntityGrid entities = state.entities;
+        int h = entities.nearest(EntityGrid.HOSPITAL, deathX, deathY);
+        if (h >= 0) {
+            p.setPosition(entities.x(EntityGrid.HOSPITAL, h), entities.y(EntityGrid.HOSPITAL, h));
+            p.setAlive(true);
+            dirtyCell(p.x(), p.y());
+            events.respawned(victim, p.x(), p.y());
         } else {
-            p.alive = false;
-            status.accept(reason + " -> NO HOSPITAL (player removed)");
+            p.setAlive(false);
+            events.eliminated(victim);
         }
     }
 
-    private void killMinotaur(String reason) {
+    private void killMinotaur(int slot, GameEventListener.Cause cause, int killer) {
         // if key lies on minotaur cell - it stays there
-        state.minotaurX = -1;
-        state.minotaurY = -1;
-        status.accept(reason);
+        int x = state.minotaurX(slot), y = state.minotaurY(slot);
+        dirtyCell(x, y);
+        state.setMinotaur(slot, -1, -1);
+        events.killed(GameEventListener.MINOTAUR, cause, killer, x, y);
+    }
+
+    private void dirtyCell(int x, int y) {
+        if (x >= 0 && y >= 0) dirty.cellsChanged(x, y, x, y);
     }
 
+    /** Lowest-numbered living player at (x,y) other than me: one occupancy lookup, at most one link. */
     private GameState.PlayerState getOtherPlayerAt(int x, int y, GameState.PlayerState me) {
-        if (state.p1 != me && state.p1.alive && state.p1.x == x && state.p1.y == y) return state.p1;
-        if (state.p2 != me && state.p2.alive && state.p2.x == x && state.p2.y == y) return state.p2;
-        return null;
+        GameState.PlayerState p = state.playerAt(x, y);
+        return (p == me) ? state.nextPlayerInCell(p) : p;
+    }
+
+    /**
+     * Nearest living player on the ray within limit steps (lowest-numbered if several share the cell).
+     * Looks the ray's cells up in the occupancy index, or checks every player if there are fewer players
+     * than cells to look at; either way the cost is min(ray length, players).
+     */
+    private GameState.PlayerState firstPlayerOnRay(GameState.PlayerState shooter, Direction dir, int limit) {
+        if (limit <= 0) return null;
+        if (limit <= state.playerCount()) {
+            int x = shooter.x(), y = shooter.y();
+            for (int d = 1; d <= limit; d++) {
+                x += dir.dx;
+                y += dir.dy;
+                GameState.PlayerState p = state.playerAt(x, y);
+                if (p != null) return p;
+            }
+            return null;
+        }
+        GameState.PlayerState best = null;
+        int bestDist = limit + 1;
+        for (int i = 1; i <= state.playerCount(); i++) {
+            GameState.PlayerState p = state.player(i);
+            int d = playerRayDistance(shooter, p, dir, limit);
+            if (d > 0 && d < bestDist) {
+                best = p;
+                bestDist = d;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Slot of the nearest living minotaur on the ray within limit steps (lowest slot if several share the cell),
+     * or -1; like {@link #firstPlayerOnRay} it costs min(ray length, minotaurs).
+     */
+    private int firstMinotaurOnRay(GameState.PlayerState shooter, Direction dir, int limit) {
+        if (limit <= 0) return -1;
+        if (limit <= state.minotaurCount()) {
+            int x = shooter.x(), y = shooter.y();
+            for (int d = 1; d <= limit; d++) {
+                x += dir.dx;
+                y += dir.dy;
+                int m = state.minotaurAt(x, y);
+                if (m >= 0) return m;
+            }
+            return -1;
+        }
+        int best = -1, bestDist = limit + 1;
+        for (int m = 0; m < state.minotaurCount(); m++) {
+            if (state.minotaurX(m) < 0) continue;
+            int d = rayDistance(shooter, dir, state.minotaurX(m), state.minotaurY(m), limit);
+            if (d > 0 && d < bestDist) {
+                best = m;
+                bestDist = d;
+            }
+        }
+        return best;
+    }
+
+    private static int playerRayDistance(GameState.PlayerState shooter, GameState.PlayerState p, Direction dir, int range) {
+        if (p == shooter || !p.isAlive() || p.x() < 0 || p.y() < 0) return -1;
+        return rayDistance(shooter, dir, p.x(), p.y(), range);
+    }
+
+    /** Steps from shooter to (tx,ty) along dir, or -1 if the target is not on the ray within range. */
+    private static int rayDistance(GameState.PlayerState from, Direction dir, int tx, int ty, int range) {
+        int d;
+        if (dir.dx != 0) {
+            if (ty != from.y()) return -1;
+            d = (tx - from.x()) * dir.dx;
+        } else {
+            if (tx != from.x()) return -1;
+            d = (ty - from.y()) * dir.dy;
+        }
+        return (d > 0 && d <= range) ? d : -1;
     }
 }
@@ -0,0 +1,123 @@
+/**
+ * What happened in GameEngine, as typed calls with primitive arguments (nothing is allocated to
+ * report an event). Methods have empty defaults, so listeners override only what they need and
+ * {@link #NONE} switches reporting off.
+ *
+ * Player indices are 1-based as everywhere in the engine. Events of one action arrive in the order
+ * they happen, e.g. moved, teleported, keyPicked, turnEnded.
+ */
+public interface GameEventListener {
+
+    GameEventListener NONE = new GameEventListener() {};
+
+    /** Victim index used in {@link #killed} for the minotaur. */
+    int MINOTAUR = 0;
+
+    enum Cause { MINOTAUR, SHOT, KNIFE }
+
+    /** Why an action was refused (the turn is not spent). */
+    enum Rejection { GAME_OVER, NO_SHOTS }
+
+    default void moved(int player, int fromX, int fromY, int toX, int toY) {}
+
+    /** Move into a wall or the border. */
+    default void blocked(int player, Direction dir) {}
+
+    default void rejected(int player, Rejection reason) {}
+
+    /** @param atTurnEnd false: on landing after a move, true: at the end of the turn */
+    default void teleported(int player, int fromX, int fromY, int toX, int toY, boolean atTurnEnd) {}
+
+    default void keyPicked(int player, int x, int y) {}
+
+    /** Reached the exit without the key. */
+    default void exitLocked(int player) {}
+
+    /** A shot was fired (hits are reported by {@link #killed} right after). */
+    default void shot(int player, Direction dir, boolean hit, int shotsLeft) {}
+
+    default void knifeMissed(int player, int x, int y) {}
+
+    /**
+     * @param victim player index or {@link #MINOTAUR}
+     * @param killer player index, or 0 when the minotaur killed
+     */
+    default void killed(int victim, Cause cause, int killer, int x, int y) {}
+
+    /** Chasing minotaur's step (after teleport, if it landed on a portal). */
+    default void minotaurMoved(int fromX, int fromY, int toX, int toY) {}
+
+    default void respawned(int player, int x, int y) {}
+
+    /** Killed with no hospital on the board: the player is out of the game. */
+    default void eliminated(int player) {}
+
+    /** @param nextPlayer whose turn it is now */
+    default void turnEnded(int nextPlayer) {}
+
+    default void gameOver(int winner) {}
+
+    /** Calls a, then b. */
+    static GameEventListener both(GameEventListener a, GameEventListener b) {
+        if (a == NONE) return b;
+        if (b == NONE) return a;
+        return new GameEventListener() {
+            @Override public void moved(int player, int fromX, int fromY, int toX, int toY) {
+                a.moved(player, fromX, fromY, toX, toY);
+                b.moved(player, fromX, fromY, toX, toY);
+            }
+            @Override public void blocked(int player, Direction dir) {
+                a.blocked(player, dir);
+                b.blocked(player, dir);
+            }
+            @Override public void rejected(int player, Rejection reason) {
+                a.rejected(player, reason);
+                b.rejected(player, reason);
+            }
+            @Override public void teleported(int player, int fromX, int fromY, int toX, int toY, boolean atTurnEnd) {
+                a.teleported(player, fromX, fromY, toX, toY, atTurnEnd);
+                b.teleported(player, fromX, fromY, toX, toY, atTurnEnd);
+            }
+            @Override public void keyPicked(int player, int x, int y) {
+                a.keyPicked(player, x, y);
+                b.keyPicked(player, x, y);
+            }
+            @Override public void exitLocked(int player) {
+                a.exitLocked(player);
+                b.exitLocked(player);
+            }
+            @Override public void shot(int player, Direction dir, boolean hit, int shotsLeft) {
+                a.shot(player, dir, hit, shotsLeft);
+                b.shot(player, dir, hit, shotsLeft);
+            }
+            @Override public void knifeMissed(int player, int x, int y) {
+                a.knifeMissed(player, x, y);
+                b.knifeMissed(player, x, y);
+            }
+            @Override public void killed(int victim, Cause cause, int killer, int x, int y) {
+                a.killed(victim, cause, killer, x, y);
+                b.killed(victim, cause, killer, x, y);
+            }
+            @Override public void minotaurMoved(int fromX, int fromY, int toX, int toY) {
+                a.minotaurMoved(fromX, fromY, toX, toY);
+                b.minotaurMoved(fromX, fromY, toX, toY);
+            }
+            @Override public void respawned(int player, int x, int y) {
+                a.respawned(player, x, y);
+                b.respawned(player, x, y);
+            }
+            @Override public void eliminated(int player) {
+                a.eliminated(player);
+                b.eliminated(player);
+            }
+            @Override public void turnEnded(int nextPlayer) {
+                a.turnEnded(nextPlayer);
+                b.turnEnded(nextPlayer);
+            }
+            @Override public void gameOver(int winner) {
+                a.gameOver(winner);
+                b.gameOver(winner);
+            }
+        };
+    }
+}
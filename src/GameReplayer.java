@@ -0,0 +1,62 @@
+/**
+ * Rebuilds a game from the state it started from and its ActionJournal by running the same
+ * GameEngine calls again, headless: no event listener (except stats), no dirty regions, no journal.
+ * The engine is deterministic, so the result is exactly the recorded game.
+ */
+public final class GameReplayer {
+
+    private GameReplayer() {
+    }
+
+    /** Applies all recorded actions to state (mutates it). Returns the number of actions applied. */
+    public static int replay(GameState state, ActionJournal journal) {
+        return replay(state, journal, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Applies the first actionCount actions to state: e.g. the action a bug report points at
+     * can be stepped to and inspected.
+     *
+     * @param stats counters to fill while replaying (kills, portal uses, turns), or null
+     */
+    public static int replay(GameState state, ActionJournal journal, int actionCount, GameStats stats) {
+        GameEngine engine = new GameEngine(state);
+        engine.setStats(stats);
+        return journal.forEach(new EngineVisitor(engine, state), actionCount);
+    }
+
+    private static final class EngineVisitor implements ActionJournal.Visitor {
+        private final GameEngine engine;
+        private final GameState state;
+
+        EngineVisitor(GameEngine engine, GameState state) {
+            this.engine = engine;
+            this.state = state;
+        }
+
+        @Override
+        public void move(int player, Direction dir) {
+            engine.performMove(player(player), player, dir);
+        }
+
+        @Override
+        public void shoot(int player, Direction dir) {
+            engine.performShoot(player(player), player, dir);
+        }
+
+        @Override
+        public void knife(int player, int dx, int dy) {
+            GameState.PlayerState p = player(player);
+            engine.performKnife(p, player, p.x() + dx, p.y() + dy);
+        }
+
+        @Override
+        public void endTurn() {
+            engine.endTurn();
+        }
+
+        private GameState.PlayerState player(int index) {
+            return state.player(index);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Headless Monte Carlo runner: plays many games from one GameState setup on a fork/join pool.
+ * No Swing; every worker owns its GameState copy and GameEngine, board and portals are shared read-only.
+ *
+ * Results are deterministic for a given seed: games are split into fixed-size chunks and
+ * every chunk seeds its own random generator from the chunk start.
+ */
+public final class GameSimulator {
+
+    /** Games per fork/join leaf. Fixed (not derived from core count) to keep results reproducible. */
+    private static final int CHUNK = 256;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** Plays one turn for the current player of state (must end the turn or finish the game). */
+    public interface Policy {
+        void playTurn(GameEngine engine, GameState state, SplittableRandom rnd);
+    }
+
+    /** Random player: mostly walks through open sides, sometimes shoots, knifes or skips. */
+    public static final Policy RANDOM = (engine, state, rnd) -> {
+        GameState.PlayerState p = state.currentPlayer();
+        int idx = state.currentPlayerIndex();
+        Board board = state.getBoard();
+
+        int roll = rnd.nextInt(100);
+        if (roll < 5 && p.shotsLeft() > 0) {
+            engine.performShoot(p, idx, DIRECTIONS[rnd.nextInt(DIRECTIONS.length)]);
+            engine.endTurn();
+            return;
+        }
+        if (roll < 10) {
+            // own cell or a neighbour through an open side, all equally likely
+            int mask = board.moveMask(p.x(), p.y());
+            int pick = rnd.nextInt(Integer.bitCount(mask) + 1);
+            int tx = p.x(), ty = p.y();
+            for (Direction d : DIRECTIONS) {
+                if ((mask & d.mask) != 0 && pick-- == 0) {
+                    tx += d.dx;
+                    ty += d.dy;
+                    break;
+                }
+            }
+            engine.performKnife(p, idx, tx, ty);
+            engine.endTurn();
+            return;
+        }
+
+        Direction dir = randomOpenDirection(board, p, rnd);
+        if (roll < 15 || dir == null) {
+            engine.endTurn();
+            return;
+        }
+        engine.performMove(p, idx, dir);
+    };
+
+    public static final class Report {
+        public long games;
+        public final long[] wins;      // by player index
+        public long unfinished;        // hit maxTurns or everyone died
+        public final GameStats stats;
+
+        Report(int players) {
+            wins = new long[players + 1];
+            stats = new GameStats(players);
+        }
+
+        void add(Report o) {
+            games += o.games;
+            for (int i = 0; i < wins.length; i++) wins[i] += o.wins[i];
+            unfinished += o.unfinished;
+            stats.add(o.stats);
+        }
+
+        public double winRate(int playerIndex) {
+            return games == 0 ? 0 : (double) wins[playerIndex] / games;
+        }
+
+        public double averageTurns() {
+            return games == 0 ? 0 : (double) stats.turns / games;
+        }
+
+        @Override
+        public String toString() {
+            int players = wins.length - 1;
+            StringBuilder b = new StringBuilder();
+            b.append("games=").append(games);
+            for (int i = 1; i <= players; i++) {
+                b.append(String.format(Locale.ROOT, " P%d win=%.4f", i, winRate(i)));
+            }
+            b.append(" unfinished=").append(unfinished);
+            b.append(String.format(Locale.ROOT, " avgTurns=%.2f", averageTurns()));
+            appendPerPlayer(b, " minotaurDeaths=", stats.minotaurDeaths, players);
+            appendPerPlayer(b, " shotDeaths=", stats.shotDeaths, players);
+            appendPerPlayer(b, " knifeDeaths=", stats.knifeDeaths, players);
+            appendPerPlayer(b, " portalUses=", stats.portalUses, players);
+            return b.append(" minotaurKills=").append(stats.minotaurKills).toString();
+        }
+
+        private static void appendPerPlayer(StringBuilder b, String name, long[] counts, int players) {
+            b.append(name).append('[');
+            for (int i = 1; i <= players; i++) {
+                if (i > 1) b.append(',');
+                b.append(counts[i]);
+            }
+            b.append(']');
+        }
+    }
+
+    private final GameState setup;
+    private final Policy policy1;
+    private final Policy policy2;
+    private final int maxTurns;
+
+    public GameSimulator(GameState setup, Policy policy, int maxTurns) {
+        this(setup, policy, policy, maxTurns);
+    }
+
+    /**
+     * @param setup board, entities and portals to start every game from (not modified)
+     * @param policy2 plays for player 2 and, in games with more players, for all the others
+     */
+    public GameSimulator(GameState setup, Policy policy1, Policy policy2, int maxTurns) {
+        if (setup.getBoard() == null) throw new IllegalArgumentException("setup has no board");
+        this.setup = setup;
+        this.policy1 = policy1;
+        this.policy2 = policy2;
+        this.maxTurns = maxTurns;
+    }
+
+    public Report run(long games, long seed) {
+        return run(games, seed, ForkJoinPool.commonPool());
+    }
+
+    public Report run(long games, long seed, ForkJoinPool pool) {
+        return pool.invoke(new Chunk(0, games, seed));
+    }
+
+    private final class Chunk extends RecursiveTask<Report> {
+        private final long from;
+        private final long to;
+        private final long seed;
+
+        Chunk(long from, long to, long seed) {
+            this.from = from;
+            this.to = to;
+            this.seed = seed;
+        }
+
+        @Override
+        protected Report compute() {
+            if (to - from > CHUNK) {
+                // split on a chunk boundary so leaves do not depend on how the range was divided
+                long chunks = (to - from + CHUNK - 1) / CHUNK;
+                long mid = from + (chunks / 2) * CHUNK;
+                Chunk left = new Chunk(from, mid, seed);
+                left.fork();
+                Report right = new Chunk(mid, to, seed).compute();
+                Report r = left.join();
+                r.add(right);
+                return r;
+            }
+            return playChunk();
+        }
+
+        private Report playChunk() {
+            Report r = new Report(setup.playerCount());
+            SplittableRandom rnd = new SplittableRandom(seed ^ (from * 0x9E3779B97F4A7C15L));
+            GameState game = setup.copyForSimulation();
+            GameEngine engine = new GameEngine(game);
+            engine.setStats(r.stats);
+
+            for (long g = from; g < to; g++) {
+                game.copyRunStateFrom(setup);
+                game.resetRunStateForPlay();
+                game.setMode(Mode.PLAY);
+                playGame(engine, game, rnd, r);
+            }
+            return r;
+        }
+
+        private void playGame(GameEngine engine, GameState game, SplittableRandom rnd, Report r) {
+            r.games++;
+            long turnsAtStart = r.stats.turns;
+            while (!game.isGameOver() && r.stats.turns - turnsAtStart < maxTurns) {
+                if (game.aliveCount() == 0) break;
+                GameState.PlayerState p = game.currentPlayer();
+                if (p.x() < 0 || p.y() < 0) {
+                    engine.endTurn();
+                    continue;
+                }
+                Policy policy = (game.currentPlayerIndex() == 1) ? policy1 : policy2;
+                policy.playTurn(engine, game, rnd);
+            }
+            if (game.isGameOver()) r.wins[game.winnerIndex()]++;
+            else r.unfinished++;
+        }
+    }
+
+    private static Direction randomOpenDirection(Board board, GameState.PlayerState p, SplittableRandom rnd) {
+        int mask = board.moveMask(p.x(), p.y());
+        if (mask == 0) return null;
+        int pick = rnd.nextInt(Integer.bitCount(mask));
+        for (Direction d : DIRECTIONS) {
+            if ((mask & d.mask) != 0 && pick-- == 0) return d;
+        }
+        return null;
+    }
+}
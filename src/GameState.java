@@ -1,43 +1,194 @@
+import java.util.Arrays;
+
 public class GameState {
 
-    public static class PlayerState {
-        public int x = -1;
-        public int y = -1;
-        public boolean hasKey = false;
-        public boolean alive = true;
+    // ===== run state: everything play changes, packed into one int[] (see the layout below) =====
+    // Copying a game is then one arraycopy (copyRunStateFrom, snapshot, restore), and GameEngine,
+    // search and rollouts read and write this array directly through the accessors.
+    // The array also holds the Zobrist hash of the position, updated by every setter (see hash()).
+    //
+    // Layout: the header fields below, then PLAYER_STRIDE ints per player (player 1 first), then (x, y) of
+    // every key slot, then (x, y) of every minotaur slot. The array may be longer than that (room for
+    // more keys); snapshotSize() is the part in use.
+
+    private static final int KEY_COUNT = 0, MINOTAUR_COUNT = 1; // KEY_COUNT + piece kind
+    private static final int KEYS_ON_BOARD = 2;
+    private static final int KEY_SIG_LO = 3, KEY_SIG_HI = 4; // see keySignature()
+    private static final int CURRENT_PLAYER = 5;
+    private static final int FLAGS = 6;          // F_* bits
+    private static final int WINNER = 7;         // 0 — нет победителя
+    private static final int HASH_LO = 8, HASH_HI = 9;
+    private static final int PLAYER_COUNT = 10;
+    private static final int ALIVE_COUNT = 11;
+    private static final int PLAYERS = 12;
+
+    // per player, from its base
+    private static final int P_X = 0, P_Y = 1, P_SHOTS = 2, P_FLAGS = 3;
+    private static final int P_KEY = 4;                          // carried key slot + 1, 0 = none
+    private static final int P_NEXT_ALIVE = 5, P_PREV_ALIVE = 6; // ring of living players in seat order, see nextTurn()
+    private static final int PLAYER_STRIDE = 7;
+
+    private static final int F_TELEPORTED = 1, F_GAME_OVER = 2;
+    private static final int P_ALIVE = 1;
+
+    // piece kinds: keys and minotaurs are numbered slots, -1 = not on the board
+    // (a key carried by the player whose P_KEY names it, a minotaur killed)
+    private static final int KEYS = 0, MINOTAURS = 1;
+
+    public static final int MIN_PLAYERS = 2;
+    public static final int MAX_PLAYERS = 1024;
+
+    private int[] run = newRun(MIN_PLAYERS);
+
+    /** One player's slice of the run state (a view: reads and writes go to the owning GameState's array). */
+    public static final class PlayerState {
+        private final GameState owner;
+        private int[] run; // owner.run, rebound when that array is reallocated (see bindPlayers)
+        private final int at;
+        private final int index;
+
+        private PlayerState(GameState owner, int index) {
+            this.owner = owner;
+            this.run = owner.run;
+            this.at = PLAYERS + (index - 1) * PLAYER_STRIDE;
+            this.index = index;
+        }
+
+        /** 1..playerCount(). */
+        public int index() { return index; }
+
+        public int x() { return run[at + P_X]; }
+        public int y() { return run[at + P_Y]; }
+
+        public void setPosition(int x, int y) {
+            int f = Zobrist.player(index, Zobrist.AT);
+            xorHash(run, Zobrist.square(f, run[at + P_X], run[at + P_Y]) ^ Zobrist.square(f, x, y));
+            if (owner.indexed && isAlive()) {
+                owner.occupancy.remove(run[at + P_X], run[at + P_Y], index);
+                owner.occupancy.add(x, y, index);
+            }
+            run[at + P_X] = x;
+            run[at + P_Y] = y;
+        }
+
+        public int shotsLeft() { return run[at + P_SHOTS]; }
+
+        public void setShotsLeft(int shots) {
+            int f = Zobrist.player(index, Zobrist.SHOTS);
+            xorHash(run, Zobrist.value(f, run[at + P_SHOTS]) ^ Zobrist.value(f, shots));
+            run[at + P_SHOTS] = shots;
+        }
+
+        public boolean hasKey() { return run[at + P_KEY] != 0; }
+
+        /** Slot of the key the player carries, -1 if none. */
+        public int carriedKey() { return run[at + P_KEY] - 1; }
+
+        /** Carries key slot (which the caller takes off the board), -1 = none. */
+        public void setCarriedKey(int slot) {
+            int f = Zobrist.player(index, Zobrist.HAS_KEY);
+            xorHash(run, Zobrist.optional(f, run[at + P_KEY]) ^ Zobrist.optional(f, slot + 1));
+            run[at + P_KEY] = slot + 1;
+        }
 
-        public int shotsLeft = 2; // NEW
+        public boolean isAlive() { return (run[at + P_FLAGS] & P_ALIVE) != 0; }
+
+        /** Dying is O(1); coming back to life (editor, loading) relinks the turn ring in O(players). */
+        public void setAlive(boolean on) {
+            if (on == isAlive()) return;
+            xorHash(run, Zobrist.flag(Zobrist.player(index, Zobrist.ALIVE), true));
+            setFlag(run, at + P_FLAGS, P_ALIVE, on);
+            if (on) {
+                if (owner.indexed) owner.occupancy.add(x(), y(), index);
+                owner.relinkAlive();
+            } else {
+                if (owner.indexed) owner.occupancy.remove(x(), y(), index);
+                owner.unlinkAlive(this);
+            }
+        }
+
+        long hashTerms() {
+            return Zobrist.square(Zobrist.player(index, Zobrist.AT), x(), y())
+                    ^ Zobrist.value(Zobrist.player(index, Zobrist.SHOTS), shotsLeft())
+                    ^ Zobrist.optional(Zobrist.player(index, Zobrist.HAS_KEY), run[at + P_KEY])
+                    ^ Zobrist.flag(Zobrist.player(index, Zobrist.ALIVE), isAlive());
+        }
+
+        /** Not placed, alive, no key, 2 shots (hash, turn ring and occupancy are fixed up by the caller). */
+        void clear() {
+            run[at + P_X] = -1;
+            run[at + P_Y] = -1;
+            resetForPlay();
+        }
+
+        void resetForPlay() {
+            run[at + P_SHOTS] = 2;
+            run[at + P_FLAGS] = P_ALIVE;
+            run[at + P_KEY] = 0;
+        }
     }
 
+    // players[i - 1] is player i; may be longer than playerCount() after the count went down
+    private PlayerState[] players = {new PlayerState(this, 1), new PlayerState(this, 2)};
+
+    // living players, keys and minotaurs by cell, derived from the run state. Only lists longer than
+    // SCAN_PIECES use them (shorter ones are just checked one by one), and they are built on the first
+    // lookup after restore, so snapshot/restore loops that never ask pay nothing for them
+    private static final int SCAN_PIECES = 8;
+    private final CellOccupancy occupancy = new CellOccupancy();
+    private final CellOccupancy[] pieceCells = {new CellOccupancy(), new CellOccupancy()}; // by slot + 1
+    private boolean indexed; // the indexes match the run state and are kept up to date
+
     private Board board;
     private Mode mode = Mode.BUILD_MAZE;
     private PlacementTool placementTool = PlacementTool.KEY;
+    private int placementPlayer = 1; // кого ставит PLAYER
 
-    // сущности (по одной каждой)
-    public int keyX = -1, keyY = -1;
-    public int exitX = -1, exitY = -1;
-    public int hospitalX = -1, hospitalY = -1;
-    public int minotaurX = -1, minotaurY = -1;
-
-    public final PlayerState p1 = new PlayerState();
-    public final PlayerState p2 = new PlayerState();
+    // players 1 and 2, always there
+    public final PlayerState p1 = players[0];
+    public final PlayerState p2 = players[1];
 
     // portals (dynamic groups)
-    public final PortalNetwork portals = new PortalNetwork();
+    public final PortalNetwork portals;
+
+    // exits and hospitals, any number of each (not part of the run state: play never moves them)
+    public final EntityGrid entities;
+
+    // cached distance maps to key/exit/hospital (hints, AI)
+    public final DistanceFields distances = new DistanceFields(this);
 
-    // placement cursors for portals
+    // portal-aware distances between entities and problem portals (editor overlay)
+    public final PortalAnalysis portalAnalysis = new PortalAnalysis(this);
+
+    // placement cursors for portals (editor state, not part of the run state)
     public int pairCursorGroup = 0;
     public int pairCursorIndex = 0;  // 0..1
     public int cycleCursorGroup = 0;
-    public int cycleCursorIndex = 0; // 0..2
+    public int cycleCursorIndex = 0; // 0..size-1
+    public int cycleLength = 3;      // size of the cycle groups the editor creates
+
+    // minotaur chases the nearest player, one step after every player turn (see GameEngine)
+    public boolean minotaurChases = false;
+    public final MinotaurChase chase = new MinotaurChase(this);
 
-    // per-turn guard: teleport at most once per active player's turn
-    public boolean teleportedThisTurn = false;
+    public GameState() {
+        this(new PortalNetwork(), new EntityGrid());
+    }
 
-    public int currentPlayerIndex = 1; // 1 или 2
+    private GameState(PortalNetwork portals, EntityGrid entities) {
+        this.portals = portals;
+        this.entities = entities;
+        clearRunState();
+    }
 
     public Board getBoard() { return board; }
-    public void setBoard(Board board) { this.board = board; }
+    public void setBoard(Board board) {
+        this.board = board;
+        if (board != null) {
+            portals.setBoardSize(board.getSize());
+            entities.setBoardSize(board.getSize());
+        }
+    }
 
     public Mode getMode() { return mode; }
     public void setMode(Mode mode) { this.mode = mode; }
@@ -45,48 +196,503 @@ public class GameState {
     public PlacementTool getPlacementTool() { return placementTool; }
     public void setPlacementTool(PlacementTool tool) { this.placementTool = tool; }
 
+    /** Player (1..playerCount) the PLAYER tool places. */
+    public int getPlacementPlayer() { return placementPlayer; }
+
+    public void setPlacementPlayer(int index) {
+        if (index < 1 || index > run[PLAYER_COUNT]) throw new IndexOutOfBoundsException("player " + index);
+        this.placementPlayer = index;
+    }
+
+    /** Tool name for messages: PLAYER_3 for the PLAYER tool, else the tool itself. */
+    public String placementToolName() {
+        return (placementTool == PlacementTool.PLAYER) ? "PLAYER_" + placementPlayer : placementTool.name();
+    }
+
+    // ===== ключи и минотавры: сколько угодно, по слотам; -1 = не на доске (выходы и больницы — в entities) =====
+
+    public int keyCount() { return run[KEY_COUNT]; }
+
+    /** Keys lying on the board (not carried). */
+    public int keysOnBoard() { return run[KEYS_ON_BOARD]; }
+
+    /** X of key slot (0 <= slot < keyCount()), -1 if it is carried. */
+    public int keyX(int slot) { return run[piece(KEYS, slot)]; }
+    public int keyY(int slot) { return run[piece(KEYS, slot) + 1]; }
+
+    /** Moves key slot to (x,y); -1 takes it off the board (picked up). */
+    public void setKey(int slot, int x, int y) { movePiece(KEYS, slot, x, y); }
+
+    /** Adds a key at (x,y) (-1 = off the board) and returns its slot. */
+    public int addKey(int x, int y) { return addPiece(KEYS, x, y); }
+
+    /**
+     * Removes key slot: the last key takes its slot number (and so does the player carrying it),
+     * a player carrying the removed key carries none. O(keys after it + minotaurs + players).
+     */
+    public void removeKey(int slot) {
+        int last = run[KEY_COUNT] - 1;
+        piece(KEYS, slot); // bounds check
+        for (int i = 0; i < run[PLAYER_COUNT]; i++) {
+            PlayerState p = players[i];
+            if (p.carriedKey() == slot) p.setCarriedKey(-1);
+            else if (p.carriedKey() == last) p.setCarriedKey(slot);
+        }
+        removePiece(KEYS, slot);
+    }
+
+    /** Lowest key slot lying at (x,y), -1 if none; O(1) whatever the number of keys. */
+    public int keyAt(int x, int y) { return pieceAt(KEYS, x, y); }
+
+    /**
+     * Changes whenever a key is put on or taken off the board or moves; 0 if none lies there. DistanceFields
+     * and the bot compare it to tell that their key fields are still good.
+     */
+    public long keySignature() {
+        return ((long) run[KEY_SIG_HI] << 32) | (run[KEY_SIG_LO] & 0xFFFFFFFFL);
+    }
+
+    public int minotaurCount() { return run[MINOTAUR_COUNT]; }
+
+    /** X of minotaur slot (0 <= slot < minotaurCount()), -1 if it is dead. */
+    public int minotaurX(int slot) { return run[piece(MINOTAURS, slot)]; }
+    public int minotaurY(int slot) { return run[piece(MINOTAURS, slot) + 1]; }
+
+    /** Moves minotaur slot to (x,y); -1 takes it off the board (killed). */
+    public void setMinotaur(int slot, int x, int y) { movePiece(MINOTAURS, slot, x, y); }
+
+    /** Adds a minotaur at (x,y) and returns its slot. */
+    public int addMinotaur(int x, int y) { return addPiece(MINOTAURS, x, y); }
+
+    /** Removes minotaur slot; the last minotaur takes its slot number. O(1). */
+    public void removeMinotaur(int slot) { removePiece(MINOTAURS, slot); }
+
+    /** Lowest minotaur slot at (x,y), -1 if none; O(1) whatever the number of minotaurs. */
+    public int minotaurAt(int x, int y) { return pieceAt(MINOTAURS, x, y); }
+
+    /** Index in run of (x, y) of the slot of a piece kind. */
+    private int piece(int kind, int slot) {
+        if (slot < 0 || slot >= run[KEY_COUNT + kind]) {
+            throw new IndexOutOfBoundsException(((kind == KEYS) ? "key " : "minotaur ") + slot);
+        }
+        return pieceBase(kind) + 2 * slot;
+    }
+
+    private int pieceBase(int kind) {
+        int b = PLAYERS + run[PLAYER_COUNT] * PLAYER_STRIDE;
+        return (kind == KEYS) ? b : b + 2 * run[KEY_COUNT];
+    }
+
+    private static int pieceFeature(int kind, int slot) {
+        return (kind == KEYS) ? Zobrist.key(slot) : Zobrist.minotaur(slot);
+    }
+
+    private void movePiece(int kind, int slot, int x, int y) {
+        int at = piece(kind, slot);
+        int ox = run[at], oy = run[at + 1];
+        int f = pieceFeature(kind, slot);
+        long k = Zobrist.square(f, ox, oy) ^ Zobrist.square(f, x, y);
+        xorHash(run, k);
+        if (kind == KEYS) {
+            run[KEY_SIG_LO] ^= (int) k;
+            run[KEY_SIG_HI] ^= (int) (k >>> 32);
+            run[KEYS_ON_BOARD] += ((x >= 0 && y >= 0) ? 1 : 0) - ((ox >= 0 && oy >= 0) ? 1 : 0);
+        }
+        if (indexed) {
+            pieceCells[kind].remove(ox, oy, slot + 1);
+            pieceCells[kind].add(x, y, slot + 1);
+        }
+        run[at] = x;
+        run[at + 1] = y;
+    }
+
+    private int addPiece(int kind, int x, int y) {
+        int slot = run[KEY_COUNT + kind];
+        int size = snapshotSize();
+        if (run.length < size + 2) {
+            run = Arrays.copyOf(run, Math.max(size + 2, run.length + run.length / 2));
+            bindPlayers();
+        }
+        int at = pieceBase(kind) + 2 * slot;
+        System.arraycopy(run, at, run, at + 2, size - at); // minotaurs move up past a new key
+        run[at] = -1;
+        run[at + 1] = -1;
+        run[KEY_COUNT + kind]++;
+        if (indexed) pieceCells[kind].ensureCapacity(slot + 1);
+        movePiece(kind, slot, x, y);
+        return slot;
+    }
+
+    /** The last slot of the kind moves into slot, then the list is one shorter. */
+    private void removePiece(int kind, int slot) {
+        int last = run[KEY_COUNT + kind] - 1;
+        int at = piece(kind, last);
+        int x = run[at], y = run[at + 1];
+        movePiece(kind, slot, -1, -1);
+        if (slot != last) {
+            movePiece(kind, last, -1, -1);
+            movePiece(kind, slot, x, y);
+        }
+        int size = snapshotSize();
+        System.arraycopy(run, at + 2, run, at, size - at - 2);
+        run[KEY_COUNT + kind]--;
+    }
+
+    private int pieceAt(int kind, int x, int y) {
+        if (x < 0 || y < 0) return -1;
+        int count = run[KEY_COUNT + kind];
+        if (count <= SCAN_PIECES) {
+            int b = pieceBase(kind);
+            for (int i = 0; i < count; i++) {
+                if (run[b + 2 * i] == x && run[b + 2 * i + 1] == y) return i;
+            }
+            return -1;
+        }
+        if (!indexed) reindex();
+        return pieceCells[kind].first(x, y) - 1;
+    }
+
+    /**
+     * Everything in cell (x,y) as EntityGrid bits: exits and hospitals from the grid, keys, minotaurs,
+     * living players and portals from their own indexes. O(1) whatever the number of entities; the
+     * editor's placement rules (PlacementRules) and the generator test a cell with it.
+     */
+    public int cellMask(int x, int y) {
+        if (x < 0 || y < 0) return 0;
+        int m = entities.mask(x, y);
+        if (keyAt(x, y) >= 0) m |= EntityGrid.KEY;
+        if (minotaurAt(x, y) >= 0) m |= EntityGrid.MINOTAUR;
+        if (playerAt(x, y) != null) m |= EntityGrid.PLAYER;
+        if (portals.hasPortalAt(x, y)) m |= EntityGrid.PORTAL;
+        return m;
+    }
+
+    // ===== players =====
+
+    public int playerCount() { return run[PLAYER_COUNT]; }
+
+    /**
+     * Sets the number of players (MIN_PLAYERS..MAX_PLAYERS). New players are not placed, alive, without
+     * a key and with 2 shots; players past count are dropped (p1 and p2 always stay), and so are the keys
+     * they carry.
+     */
+    public void setPlayerCount(int count) {
+        if (count < MIN_PLAYERS || count > MAX_PLAYERS) throw new IllegalArgumentException("players: " + count);
+        int old = run[PLAYER_COUNT];
+        if (count == old) return;
+        int pieces = 2 * (run[KEY_COUNT] + run[MINOTAUR_COUNT]);
+        int[] r = new int[snapshotSize(count, run[KEY_COUNT], run[MINOTAUR_COUNT])];
+        System.arraycopy(run, 0, r, 0, snapshotSize(Math.min(old, count), 0, 0));
+        System.arraycopy(run, snapshotSize(old, 0, 0), r, snapshotSize(count, 0, 0), pieces);
+        run = r;
+        run[PLAYER_COUNT] = count;
+        ensurePlayers(count);
+        bindPlayers();
+        for (int i = old + 1; i <= count; i++) players[i - 1].clear();
+        if (run[CURRENT_PLAYER] > count) run[CURRENT_PLAYER] = 1;
+        if (run[WINNER] > count) run[WINNER] = 0;
+        if (placementPlayer > count) placementPlayer = count;
+        playersChanged();
+    }
+
+    /** Player 1..playerCount(). */
+    public PlayerState player(int index) {
+        if (index < 1 || index > run[PLAYER_COUNT]) throw new IndexOutOfBoundsException("player " + index);
+        return players[index - 1];
+    }
+
+    /** Living players. */
+    public int aliveCount() { return run[ALIVE_COUNT]; }
+
+    /** Lowest-numbered living player at (x,y), or null; O(1) whatever the number of players. */
+    public PlayerState playerAt(int x, int y) {
+        if (x < 0 || y < 0) return null;
+        if (run[PLAYER_COUNT] <= SCAN_PIECES) return scanCell(x, y, 1);
+        if (!indexed) reindex();
+        int i = occupancy.first(x, y);
+        return (i != 0) ? players[i - 1] : null;
+    }
+
+    /** Next living player in the cell of p (a living, placed player) by number, or null. */
+    public PlayerState nextPlayerInCell(PlayerState p) {
+        if (run[PLAYER_COUNT] <= SCAN_PIECES) return scanCell(p.x(), p.y(), p.index + 1);
+        if (!indexed) reindex();
+        int i = occupancy.next(p.index);
+        return (i != 0) ? players[i - 1] : null;
+    }
+
+    private PlayerState scanCell(int x, int y, int from) {
+        for (int i = from; i <= run[PLAYER_COUNT]; i++) {
+            int b = base(i);
+            if (run[b + P_X] == x && run[b + P_Y] == y && (run[b + P_FLAGS] & P_ALIVE) != 0) return players[i - 1];
+        }
+        return null;
+    }
+
+    private void ensurePlayers(int count) {
+        if (players.length >= count) return;
+        int old = players.length;
+        players = Arrays.copyOf(players, count);
+        for (int i = old; i < count; i++) players[i] = new PlayerState(this, i + 1);
+    }
+
+    /**
+     * Living players form a ring in seat order: P_NEXT_ALIVE / P_PREV_ALIVE of each living player point
+     * at the living neighbours. A dead player's next link points past it (to a player that was alive when
+     * it died or the ring was last rebuilt), so the turn can still move on from a player who just died.
+     */
+    private void relinkAlive() {
+        int count = run[PLAYER_COUNT];
+        int alive = 0, firstAlive = 0, lastAlive = 0;
+        for (int i = 1; i <= count; i++) {
+            if ((run[base(i) + P_FLAGS] & P_ALIVE) == 0) continue;
+            alive++;
+            if (firstAlive == 0) firstAlive = i;
+            lastAlive = i;
+        }
+        run[ALIVE_COUNT] = alive;
+        int next = (alive > 0) ? firstAlive : 1;
+        for (int i = count; i >= 1; i--) {
+            run[base(i) + P_NEXT_ALIVE] = next;
+            if ((run[base(i) + P_FLAGS] & P_ALIVE) != 0) next = i;
+        }
+        int prev = (alive > 0) ? lastAlive : count;
+        for (int i = 1; i <= count; i++) {
+            run[base(i) + P_PREV_ALIVE] = prev;
+            if ((run[base(i) + P_FLAGS] & P_ALIVE) != 0) prev = i;
+        }
+    }
+
+    private void unlinkAlive(PlayerState p) {
+        int prev = run[p.at + P_PREV_ALIVE], next = run[p.at + P_NEXT_ALIVE];
+        run[base(prev) + P_NEXT_ALIVE] = next;
+        run[base(next) + P_PREV_ALIVE] = prev;
+        run[ALIVE_COUNT]--;
+    }
+
+    /** Rebuilds what is derived from the players: turn ring and hash; occupancy on the next lookup. */
+    private void playersChanged() {
+        relinkAlive();
+        rehash();
+        indexed = false;
+    }
+
+    private void reindex() {
+        indexed = true;
+        int count = run[PLAYER_COUNT];
+        occupancy.reset(count);
+        for (int i = 1; i <= count; i++) {
+            int b = base(i);
+            if ((run[b + P_FLAGS] & P_ALIVE) != 0) occupancy.add(run[b + P_X], run[b + P_Y], i);
+        }
+        for (int kind = KEYS; kind <= MINOTAURS; kind++) {
+            int pieces = run[KEY_COUNT + kind], b = pieceBase(kind);
+            pieceCells[kind].reset(pieces);
+            for (int i = 0; i < pieces; i++) pieceCells[kind].add(run[b + 2 * i], run[b + 2 * i + 1], i + 1);
+        }
+    }
+
+    /** Points every player view at the current run array. */
+    private void bindPlayers() {
+        for (PlayerState p : players) p.run = run;
+    }
+
+    private static int base(int index) {
+        return PLAYERS + (index - 1) * PLAYER_STRIDE;
+    }
+
+    // ===== turn and result =====
+
+    /** 1..playerCount(). */
+    public int currentPlayerIndex() { return run[CURRENT_PLAYER]; }
+    public void setCurrentPlayerIndex(int index) {
+        xorHash(run, Zobrist.value(Zobrist.TURN, run[CURRENT_PLAYER]) ^ Zobrist.value(Zobrist.TURN, index));
+        run[CURRENT_PLAYER] = index;
+    }
+
     public PlayerState currentPlayer() {
-        return (currentPlayerIndex == 1) ? p1 : p2;
+        return players[run[CURRENT_PLAYER] - 1];
     }
 
+    /**
+     * Passes the turn to the next living player in seat order, or leaves it if nobody is alive.
+     * One link from a living player; a player who died this turn follows the links of those who died
+     * after it, never the whole table.
+     */
     public void nextTurn() {
-        currentPlayerIndex = (currentPlayerIndex == 1) ? 2 : 1;
+        if (run[ALIVE_COUNT] == 0) return;
+        int next = run[base(run[CURRENT_PLAYER]) + P_NEXT_ALIVE];
+        while ((run[base(next) + P_FLAGS] & P_ALIVE) == 0) next = run[base(next) + P_NEXT_ALIVE];
+        setCurrentPlayerIndex(next);
     }
 
-    public void clearEntitiesAndPlayers() {
-        keyX = keyY = -1;
-        exitX = exitY = -1;
-        hospitalX = hospitalY = -1;
-        minotaurX = minotaurY = -1;
+    /** Per-turn guard: teleport at most once per active player's turn. */
+    public boolean teleportedThisTurn() { return (run[FLAGS] & F_TELEPORTED) != 0; }
+    public void setTeleportedThisTurn(boolean on) {
+        if (on != teleportedThisTurn()) xorHash(run, Zobrist.flag(Zobrist.TELEPORTED, true));
+        setFlag(run, FLAGS, F_TELEPORTED, on);
+    }
 
-        p1.x = p1.y = -1; p1.hasKey = false; p1.alive = true;
-        p2.x = p2.y = -1; p2.hasKey = false; p2.alive = true;
+    public boolean isGameOver() { return (run[FLAGS] & F_GAME_OVER) != 0; }
 
-        currentPlayerIndex = 1;
+    /** 0 — нет победителя. */
+    public int winnerIndex() { return run[WINNER]; }
 
-        p1.shotsLeft = 2;
-        p2.shotsLeft = 2;
+    /** Ends the game; winner 0 = nobody. */
+    public void setGameOver(int winner) {
+        setFlag(run, FLAGS, F_GAME_OVER, true);
+        run[WINNER] = winner;
+    }
+
+    /** Text for the status bar and the board ("" while the game goes on); built on demand, never by the engine. */
+    public String gameOverMessage() {
+        if (!isGameOver()) return "";
+        int w = run[WINNER];
+        return (w != 0) ? "Player " + w + " WIN (exit + key)" : "GAME OVER";
+    }
+
+    private static void setFlag(int[] run, int i, int bit, boolean on) {
+        run[i] = on ? (run[i] | bit) : (run[i] & ~bit);
+    }
+
+    // ===== hash =====
+
+    /**
+     * 64-bit Zobrist hash of the position: every player (square, carried key, alive, shots), the square of
+     * every key and minotaur slot, the current player and the teleport flag. Board, portals, exits and
+     * hospitals are not in it (they do not change in play), nor is the game-over flag (it follows from
+     * the position).
+     * Kept up to date by the setters, so GameEngine pays a few XORs per change; copies and snapshots
+     * carry it along.
+     */
+    public long hash() {
+        return ((long) run[HASH_HI] << 32) | (run[HASH_LO] & 0xFFFFFFFFL);
+    }
+
+    /** The hash computed from scratch (what {@link #hash()} must equal). */
+    long computeHash() {
+        long h = Zobrist.value(Zobrist.TURN, run[CURRENT_PLAYER])
+                ^ Zobrist.flag(Zobrist.TELEPORTED, teleportedThisTurn());
+        for (int i = 0; i < run[PLAYER_COUNT]; i++) h ^= players[i].hashTerms();
+        for (int kind = KEYS; kind <= MINOTAURS; kind++) {
+            int b = pieceBase(kind);
+            for (int i = 0; i < run[KEY_COUNT + kind]; i++) {
+                h ^= Zobrist.square(pieceFeature(kind, i), run[b + 2 * i], run[b + 2 * i + 1]);
+            }
+        }
+        return h;
+    }
+
+    private void rehash() {
+        long h = computeHash();
+        run[HASH_LO] = (int) h;
+        run[HASH_HI] = (int) (h >>> 32);
+    }
+
+    private static void xorHash(int[] run, long k) {
+        run[HASH_LO] ^= (int) k;
+        run[HASH_HI] ^= (int) (k >>> 32);
+    }
+
+    // ===== reset / copy =====
+
+    public void clearEntitiesAndPlayers() {
+        clearRunState();
 
         portals.clear();
+        entities.clear();
+        distances.invalidate();
+        chase.reset();
         pairCursorGroup = 0;
         pairCursorIndex = 0;
         cycleCursorGroup = 0;
         cycleCursorIndex = 0;
-        teleportedThisTurn = false;
     }
 
-    public boolean gameOver = false;
-    public String gameOverMessage = "";
+    /** Clears entities and players; the number of players stays. */
+    private void clearRunState() {
+        run[KEY_COUNT] = run[MINOTAUR_COUNT] = run[KEYS_ON_BOARD] = 0;
+        run[KEY_SIG_LO] = run[KEY_SIG_HI] = 0;
+        for (int i = 0; i < run[PLAYER_COUNT]; i++) players[i].clear();
+        run[CURRENT_PLAYER] = 1;
+        run[FLAGS] = 0;
+        run[WINNER] = 0;
+        playersChanged();
+    }
 
     public void resetRunStateForPlay() {
-        gameOver = false;
-        gameOverMessage = "";
-        currentPlayerIndex = 1;
+        run[FLAGS] = 0;
+        run[WINNER] = 0;
+        run[CURRENT_PLAYER] = 1;
 
-        p1.shotsLeft = 2; p1.hasKey = false; p1.alive = true;
-        p2.shotsLeft = 2; p2.hasKey = false; p2.alive = true;
+        for (int i = 0; i < run[PLAYER_COUNT]; i++) players[i].resetForPlay();
+        playersChanged();
+
+        chase.reset();
+    }
+
+    /**
+     * Copy for headless runs: board, portals, exits and hospitals are shared with this state
+     * (play never mutates them), the run state is copied.
+     */
+    public GameState copyForSimulation() {
+        GameState c = new GameState(portals, entities);
+        c.board = board;
+        c.mode = mode;
+        c.placementTool = placementTool;
+        c.placementPlayer = placementPlayer;
+        c.minotaurChases = minotaurChases;
+        c.copyRunStateFrom(this);
+        return c;
+    }
+
+    /** Copies keys, minotaurs, players and run fields from other (board, portals, exits, hospitals and editor cursors are left as is). */
+    public void copyRunStateFrom(GameState other) {
+        restore(other.run);
+    }
+
+    /** Length of {@link #snapshot()} arrays: grows with the number of players, keys and minotaurs. */
+    public int snapshotSize() {
+        return snapshotSize(run[PLAYER_COUNT], run[KEY_COUNT], run[MINOTAUR_COUNT]);
+    }
+
+    public static int snapshotSize(int players, int keys, int minotaurs) {
+        return PLAYERS + players * PLAYER_STRIDE + 2 * (keys + minotaurs);
+    }
+
+    private static int[] newRun(int players) {
+        int[] r = new int[snapshotSize(players, 0, 0)];
+        r[PLAYER_COUNT] = players;
+        return r;
+    }
+
+    /**
+     * The run state as a flat array of {@link #snapshotSize()} ints, for search trees, replay checkpoints
+     * and the like; {@link #restore} puts it back, with the numbers of players, keys and minotaurs it had.
+     * Board, portals, exits and hospitals are not part of it (they are shared), nor are caches: the occupancy
+     * indexes are rebuilt from the run state when next asked, DistanceFields follow the entities by themselves, and the chasing
+     * minotaur's table is rebuilt after {@code chase.reset()} if the restored position is from another game.
+     */
+    public int[] snapshot() {
+        return Arrays.copyOf(run, snapshotSize());
+    }
+
+    /** Writes the run state into out (length at least {@link #snapshotSize()}) without allocating. */
+    public void snapshot(int[] out) {
+        System.arraycopy(run, 0, out, 0, snapshotSize());
+    }
 
-        teleportedThisTurn = false;
+    /** Puts back a snapshot; its length may exceed its {@link #snapshotSize()} (callers may append fields). */
+    public void restore(int[] snapshot) {
+        int count = snapshot[PLAYER_COUNT];
+        int size = snapshotSize(count, snapshot[KEY_COUNT], snapshot[MINOTAUR_COUNT]);
+        if (run.length < size) {
+            run = new int[size];
+            bindPlayers();
+        }
+        ensurePlayers(count);
+        System.arraycopy(snapshot, 0, run, 0, size);
+        indexed = false;
     }
 
     public PlacementTool nextPlacementTool() {
@@ -96,8 +702,15 @@ public class GameState {
         return v[i]; // на последнем остаёмся (можно сделать циклом, если захочешь)
     }
 
+    /** Next tool; PLAYER first goes through all the players, from player 1. */
     public PlacementTool advancePlacementTool() {
-        placementTool = nextPlacementTool();
+        if (placementTool == PlacementTool.PLAYER && placementPlayer < run[PLAYER_COUNT]) {
+            placementPlayer++;
+            return placementTool;
+        }
+        PlacementTool next = nextPlacementTool();
+        if (next == PlacementTool.PLAYER && placementTool != next) placementPlayer = 1;
+        placementTool = next;
         return placementTool;
     }
 }
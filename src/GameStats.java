@@ -0,0 +1,68 @@
+/**
+ * Counters filled from GameEngine events while it plays (see GameEngine.setStats).
+ * Arrays are indexed by player index (1..players); slot 0 is unused.
+ */
+public final class GameStats implements GameEventListener {
+    public long turns;
+    public final long[] minotaurDeaths;
+    public final long[] shotDeaths;
+    public final long[] knifeDeaths;
+    public final long[] portalUses;
+    public long minotaurKills;
+
+    public GameStats() {
+        this(GameState.MIN_PLAYERS);
+    }
+
+    public GameStats(int players) {
+        minotaurDeaths = new long[players + 1];
+        shotDeaths = new long[players + 1];
+        knifeDeaths = new long[players + 1];
+        portalUses = new long[players + 1];
+    }
+
+    @Override
+    public void killed(int victim, Cause cause, int killer, int x, int y) {
+        if (victim == MINOTAUR) {
+            minotaurKills++;
+            return;
+        }
+        switch (cause) {
+            case MINOTAUR: minotaurDeaths[victim]++; break;
+            case SHOT: shotDeaths[victim]++; break;
+            case KNIFE: knifeDeaths[victim]++; break;
+        }
+    }
+
+    @Override
+    public void teleported(int player, int fromX, int fromY, int toX, int toY, boolean atTurnEnd) {
+        portalUses[player]++;
+    }
+
+    @Override
+    public void turnEnded(int nextPlayer) {
+        turns++;
+    }
+
+    public void clear() {
+        turns = 0;
+        minotaurKills = 0;
+        for (int i = 0; i < minotaurDeaths.length; i++) {
+            minotaurDeaths[i] = 0;
+            shotDeaths[i] = 0;
+            knifeDeaths[i] = 0;
+            portalUses[i] = 0;
+        }
+    }
+
+    public void add(GameStats o) {
+        turns += o.turns;
+        minotaurKills += o.minotaurKills;
+        for (int i = 0; i < Math.min(minotaurDeaths.length, o.minotaurDeaths.length); i++) {
+            minotaurDeaths[i] += o.minotaurDeaths[i];
+            shotDeaths[i] += o.shotDeaths[i];
+            knifeDeaths[i] += o.knifeDeaths[i];
+            portalUses[i] += o.portalUses[i];
+        }
+    }
+}
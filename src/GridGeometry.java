@@ -3,6 +3,9 @@ public final class GridGeometry {
     public static final int DEFAULT_PADDING = 20;
     public static final int DEFAULT_HIT_MARGIN_PX = 8;
 
+    public static final int MIN_CELL = 1;
+    public static final int MAX_CELL = 256;
+
     private final int padding;
     private final int hitMarginPx;
 
@@ -16,6 +19,15 @@ public final class GridGeometry {
     }
 
     public GridMetrics compute(int panelWidth, int panelHeight, int boardSize) {
+        return compute(panelWidth, panelHeight, boardSize, 1.0, 0, 0);
+    }
+
+    /**
+     * @param zoom 1.0 = board fitted into the panel (cell is at least MIN_CELL px, so very large
+     *             boards do not fit and have to be panned)
+     * @param panX shift of the grid from its centered position, px
+     */
+    public GridMetrics compute(int panelWidth, int panelHeight, int boardSize, double zoom, int panX, int panY) {
         if (boardSize <= 0) return null;
 
         int w = panelWidth - 2 * padding;
@@ -23,14 +35,32 @@ public final class GridGeometry {
         int side = Math.min(w, h);
         if (side <= 0) return null;
 
-        int cell = side / boardSize;
-        if (cell <= 0) return null;
+        int fitCell = side / boardSize;
+        int maxCell = Math.max(MAX_CELL, fitCell);
+        int cell = (int) Math.max(MIN_CELL, Math.min(maxCell, Math.floor((double) side / boardSize * zoom)));
 
         int gridSize = cell * boardSize;
-        int startX = (panelWidth - gridSize) / 2;
-        int startY = (panelHeight - gridSize) / 2;
+        int startX = (panelWidth - gridSize) / 2 + panX;
+        int startY = (panelHeight - gridSize) / 2 + panY;
+
+        // only cells intersecting the panel are visited when drawing
+        int firstCol = Math.max(0, Math.floorDiv(-startX, cell));
+        int lastCol = Math.min(boardSize - 1, Math.floorDiv(panelWidth - 1 - startX, cell));
+        int firstRow = Math.max(0, Math.floorDiv(-startY, cell));
+        int lastRow = Math.min(boardSize - 1, Math.floorDiv(panelHeight - 1 - startY, cell));
+
+        return new GridMetrics(boardSize, cell, gridSize, startX, startY,
+                firstCol, lastCol, firstRow, lastRow, panelWidth, panelHeight);
+    }
 
-        return new GridMetrics(boardSize, cell, gridSize, startX, startY);
+    /** Limits zoom so that the cell size stays within [MIN_CELL, MAX_CELL] (or the fitted size, if larger). */
+    public double clampZoom(int panelWidth, int panelHeight, int boardSize, double zoom) {
+        int side = Math.min(panelWidth - 2 * padding, panelHeight - 2 * padding);
+        if (boardSize <= 0 || side <= 0) return zoom;
+        double fit = (double) side / boardSize;
+        double min = MIN_CELL / fit;
+        double max = Math.max(1.0, Math.max(MAX_CELL, side / boardSize) / fit);
+        return Math.max(min, Math.min(max, zoom));
     }
 
     public int[] pickCellAt(int mx, int my, GridMetrics gm) {
@@ -43,6 +73,17 @@ public final class GridGeometry {
         return new int[]{x, y};
     }
 
+    /** Same as {@link #pickCellAt} but returns packed cell (y * n + x), or -1 outside the grid. */
+    public int pickCellIndexAt(int mx, int my, GridMetrics gm) {
+        if (gm == null) return -1;
+        if (mx < gm.startX || my < gm.startY || mx >= gm.startX + gm.gridSize || my >= gm.startY + gm.gridSize) {
+            return -1;
+        }
+        int x = (mx - gm.startX) / gm.cell;
+        int y = (my - gm.startY) / gm.cell;
+        return y * gm.n + x;
+    }
+
     public Edge pickEdgeAt(int mx, int my, GridMetrics gm) {
         if (gm == null) return null;
         if (mx < gm.startX || my < gm.startY || mx >= gm.startX + gm.gridSize || my >= gm.startY + gm.gridSize) {
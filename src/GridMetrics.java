@@ -5,11 +5,62 @@ public final class GridMetrics {
     public final int startX;
     public final int startY;
 
+    // видимая часть поля (клетки, включительно); пусто, если first > last
+    public final int firstCol;
+    public final int lastCol;
+    public final int firstRow;
+    public final int lastRow;
+
+    // размер области отрисовки (панели), px
+    public final int viewWidth;
+    public final int viewHeight;
+
+    /** Metrics with the whole board visible, centered in a view with startX/startY margins. */
     public GridMetrics(int n, int cell, int gridSize, int startX, int startY) {
+        this(n, cell, gridSize, startX, startY, 0, n - 1, 0, n - 1,
+                2 * startX + gridSize, 2 * startY + gridSize);
+    }
+
+    public GridMetrics(int n, int cell, int gridSize, int startX, int startY,
+                       int firstCol, int lastCol, int firstRow, int lastRow,
+                       int viewWidth, int viewHeight) {
         this.n = n;
         this.cell = cell;
         this.gridSize = gridSize;
         this.startX = startX;
         this.startY = startY;
+        this.firstCol = firstCol;
+        this.lastCol = lastCol;
+        this.firstRow = firstRow;
+        this.lastRow = lastRow;
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+    }
+
+    public boolean isCellVisible(int x, int y) {
+        return x >= firstCol && x <= lastCol && y >= firstRow && y <= lastRow;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GridMetrics)) return false;
+        GridMetrics m = (GridMetrics) o;
+        return n == m.n && cell == m.cell && gridSize == m.gridSize
+                && startX == m.startX && startY == m.startY
+                && firstCol == m.firstCol && lastCol == m.lastCol
+                && firstRow == m.firstRow && lastRow == m.lastRow
+                && viewWidth == m.viewWidth && viewHeight == m.viewHeight;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = n;
+        h = 31 * h + cell;
+        h = 31 * h + startX;
+        h = 31 * h + startY;
+        h = 31 * h + viewWidth;
+        h = 31 * h + viewHeight;
+        return h;
     }
 }
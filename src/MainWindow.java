@@ -1,5 +1,8 @@
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
 
 public class MainWindow extends JFrame {
 
@@ -7,6 +10,13 @@ public class MainWindow extends JFrame {
     private final BoardPanel boardPanel = new BoardPanel();
     private final JLabel status = new JLabel("Ready");
 
+    // результат последней проверки проходимости (validateReadyForPlay)
+    private SolvabilityChecker.PlayerReport[] solvability;
+
+    // расстановка на момент старта партии: вместе с журналом действий восстанавливает всю партию.
+    // Делит поле, порталы и выходы с state, поэтому любая правка, генерация или загрузка её сбрасывает
+    private GameState playStart;
+
     public MainWindow() {
         super("Labyrinth Editor / Game");
 
@@ -19,6 +29,7 @@ public class MainWindow extends JFrame {
 
         boardPanel.setGameState(state);
         boardPanel.setStatusConsumer(status::setText);
+        boardPanel.setEditListener(() -> playStart = null);
 
         add(boardPanel, BorderLayout.CENTER);
 
@@ -47,6 +58,19 @@ public class MainWindow extends JFrame {
         JButton clearBtn = new JButton("Очистить сущности");
         row1.add(clearBtn);
 
+        JComboBox<MazeGenerator.Algorithm> generatorCombo = new JComboBox<>(MazeGenerator.Algorithm.values());
+        generatorCombo.setSelectedItem(MazeGenerator.Algorithm.BACKTRACKER);
+        row1.add(generatorCombo);
+
+        JButton generateBtn = new JButton("Сгенерировать");
+        row1.add(generateBtn);
+
+        JButton saveBtn = new JButton("Сохранить");
+        row1.add(saveBtn);
+
+        JButton openBtn = new JButton("Открыть");
+        row1.add(openBtn);
+
         // ===== Row 2: modes + placement tool =====
         JToggleButton buildWalls = new JToggleButton("Стены");
         JToggleButton placeEntities = new JToggleButton("Объекты");
@@ -67,59 +91,252 @@ public class MainWindow extends JFrame {
         toolCombo.setSelectedItem(PlacementTool.KEY);
         row2.add(toolCombo);
 
+        // кого ставит PLAYER (1..число игроков); после постановки переходит к следующему
+        SpinnerNumberModel placementPlayerModel = new SpinnerNumberModel(1, 1, state.playerCount(), 1);
+        JSpinner placementPlayer = new JSpinner(placementPlayerModel);
+        placementPlayer.setToolTipText("Номер игрока для PLAYER");
+        row2.add(placementPlayer);
+
+        // длина нового цикла порталов (PORTAL_CYCLE); уже поставленные группы не меняются
+        row2.add(new JLabel("Цикл:"));
+        JSpinner cycleLength = new JSpinner(new SpinnerNumberModel(state.cycleLength, 2, 16, 1));
+        row2.add(cycleLength);
+
+        row2.add(new JLabel("Игроков:"));
+        JSpinner playerCount = new JSpinner(new SpinnerNumberModel(state.playerCount(), GameState.MIN_PLAYERS,
+                GameState.MAX_PLAYERS, 1));
+        row2.add(playerCount);
+
+        JCheckBox hint = new JCheckBox("Подсказка");
+        row2.add(hint);
+
+        // рамки у проблемных порталов и расстояния между объектами в строке статуса (редактор)
+        JCheckBox analysis = new JCheckBox("Разбор порталов");
+        row2.add(analysis);
+
+        JCheckBox chase = new JCheckBox("Минотавр ходит");
+        row2.add(chase);
+
+        JButton saveGameBtn = new JButton("Сохранить партию");
+        row2.add(saveGameBtn);
+
+        // бот играет за выбранного игрока; время на ход — в миллисекундах. Только вдвоём (MctsBot.supports)
+        row2.add(new JLabel("Бот:"));
+        JComboBox<String> botCombo = new JComboBox<>(new String[]{"нет", "P1", "P2"});
+        botCombo.setToolTipText("Бот играет только партии двух игроков");
+        row2.add(botCombo);
+        JSpinner botTime = new JSpinner(new SpinnerNumberModel(MctsBot.DEFAULT_TIME_MILLIS, 100, 60000, 100));
+        row2.add(botTime);
+        row2.add(new JLabel("мс/ход"));
+
         // ===== handlers (как у тебя было) =====
         createBtn.addActionListener(e -> {
+            boardPanel.cancelBot();
+            playStart = null;
             int n = (Integer) sizeCombo.getSelectedItem();
             state.setBoard(new Board(n));
             state.clearEntitiesAndPlayers();
-            boardPanel.repaint();
+            boardPanel.clearHistory();
+            boardPanel.resetView();
             status.setText("Board created: " + n + " x " + n);
             boardPanel.requestFocusInWindow();
         });
 
         clearBtn.addActionListener(e -> {
+            boardPanel.cancelBot();
+            playStart = null;
             state.clearEntitiesAndPlayers();
+            boardPanel.clearHistory();
             boardPanel.repaint();
             status.setText("Entities cleared");
             boardPanel.requestFocusInWindow();
         });
 
+        generateBtn.addActionListener(e -> {
+            boardPanel.cancelBot();
+            playStart = null;
+            int n = (Integer) sizeCombo.getSelectedItem();
+            MazeGenerator.Algorithm algorithm = (MazeGenerator.Algorithm) generatorCombo.getSelectedItem();
+            long seed = System.nanoTime();
+            state.setBoard(MazeGenerator.generate(n, algorithm, seed));
+            // по одной группе порталов каждого вида; курсоры редактора — после них
+            boolean winnable = MazeGenerator.populate(state, 1, 1, seed);
+            boardPanel.clearHistory();
+            boardPanel.resetView();
+            status.setText("Generated " + algorithm + " " + n + " x " + n + " (seed " + seed + ")"
+                    + (winnable ? "" : " — не удалось расставить проходимо, поправь вручную"));
+            boardPanel.requestFocusInWindow();
+        });
+
+        saveBtn.addActionListener(e -> {
+            if (state.getBoard() == null) {
+                status.setText("Сначала создай поле.");
+                return;
+            }
+            Path path = chooseFile(true);
+            if (path == null) return;
+            if (!path.getFileName().toString().endsWith("." + MazeFile.EXTENSION)) {
+                path = path.resolveSibling(path.getFileName() + "." + MazeFile.EXTENSION);
+            }
+            try {
+                MazeFile.save(state, path);
+                status.setText("Saved: " + path.getFileName());
+            } catch (IOException ex) {
+                status.setText("Не удалось сохранить: " + ex.getMessage());
+            }
+            boardPanel.requestFocusInWindow();
+        });
+
+        openBtn.addActionListener(e -> {
+            Path path = chooseFile(false);
+            if (path == null) return;
+            boardPanel.cancelBot();
+            try {
+                MazeFile.load(path, state);
+            } catch (IOException ex) {
+                status.setText("Не удалось открыть: " + ex.getMessage());
+                return;
+            }
+            playStart = null;
+            boardPanel.clearHistory();
+            chase.setSelected(state.minotaurChases);
+            playerCount.setValue(state.playerCount());
+            syncPlacementPlayer(placementPlayerModel);
+            updateBotCombo(botCombo);
+            // загруженное поле открываем в редакторе, как только что созданное
+            buildWalls.setSelected(true);
+            boardPanel.setMode(Mode.BUILD_MAZE);
+            boardPanel.resetView();
+            int n = state.getBoard().getSize();
+            status.setText("Loaded " + path.getFileName() + ": " + n + " x " + n);
+            boardPanel.requestFocusInWindow();
+        });
+
         buildWalls.addActionListener(e -> {
-            state.setMode(Mode.BUILD_MAZE);
+            boardPanel.cancelBot();
+            boardPanel.setMode(Mode.BUILD_MAZE);
             status.setText("Mode: BUILD_MAZE (клик по стенкам)");
             boardPanel.repaint();
             boardPanel.requestFocusInWindow();
         });
 
         placeEntities.addActionListener(e -> {
-            state.setMode(Mode.PLACE_ENTITIES);
+            boardPanel.cancelBot();
+            boardPanel.setMode(Mode.PLACE_ENTITIES);
             status.setText("Mode: PLACE_ENTITIES (клик по клеткам)");
             boardPanel.repaint();
             boardPanel.requestFocusInWindow();
         });
 
         play.addActionListener(e -> {
+            boardPanel.cancelBot();
             String err = validateReadyForPlay();
             if (err != null) {
                 status.setText(err);
                 buildWalls.setSelected(true);
-                state.setMode(Mode.BUILD_MAZE);
+                boardPanel.setMode(Mode.BUILD_MAZE);
                 boardPanel.repaint();
                 boardPanel.requestFocusInWindow();
                 return;
             }
 
             state.resetRunStateForPlay();
-            state.setMode(Mode.PLAY);
-            status.setText("Mode: PLAY (стрелки/WASD, Space/Enter — пропуск хода)");
+            boardPanel.setMode(Mode.PLAY);
+            playStart = state.copyForSimulation();
+            boardPanel.getJournal().clear();
+            StringBuilder turns = new StringBuilder();
+            for (SolvabilityChecker.PlayerReport r : solvability) {
+                if (turns.length() > 0) turns.append(", ");
+                turns.append('P').append(r.playerIndex).append(' ').append(r.turnsToWin);
+            }
+            status.setText("Mode: PLAY (стрелки/WASD, Space/Enter — пропуск хода). Кратчайшая победа: "
+                    + turns + " ходов");
+            boardPanel.repaint();
+            boardPanel.requestFocusInWindow();
+            boardPanel.startBotIfItsTurn();
+        });
+
+        saveGameBtn.addActionListener(e -> {
+            if (playStart == null) {
+                status.setText("Партия ещё не начиналась.");
+                return;
+            }
+            Path path = chooseFile(true);
+            if (path == null) return;
+            // name.maze — стартовая расстановка, name.journal — действия
+            String name = path.getFileName().toString();
+            if (name.endsWith("." + MazeFile.EXTENSION)) name = name.substring(0, name.length() - MazeFile.EXTENSION.length() - 1);
+            try {
+                MazeFile.save(playStart, path.resolveSibling(name + "." + MazeFile.EXTENSION));
+                boardPanel.getJournal().save(path.resolveSibling(name + ".journal"));
+                status.setText("Saved game: " + name + " (" + boardPanel.getJournal().size() + " actions)");
+            } catch (IOException ex) {
+                status.setText("Не удалось сохранить: " + ex.getMessage());
+            }
+            boardPanel.requestFocusInWindow();
+        });
+
+        botCombo.addActionListener(e -> {
+            boardPanel.setBotPlayer(botCombo.getSelectedIndex());
+            boardPanel.requestFocusInWindow();
+        });
+
+        cycleLength.addChangeListener(e -> state.cycleLength = (Integer) cycleLength.getValue());
+        playerCount.addChangeListener(e -> {
+            if (state.getMode() == Mode.PLAY) {
+                playerCount.setValue(state.playerCount());
+                return;
+            }
+            boardPanel.clearHistory();
+            state.setPlayerCount((Integer) playerCount.getValue());
+            syncPlacementPlayer(placementPlayerModel);
+            updateBotCombo(botCombo);
             boardPanel.repaint();
+        });
+        botTime.addChangeListener(e -> boardPanel.setBotTimeBudget((Integer) botTime.getValue()));
+
+        chase.addActionListener(e -> {
+            // в партии не меняется: журнал его не записывает, и сохранённая партия пошла бы иначе
+            if (state.getMode() == Mode.PLAY) {
+                chase.setSelected(state.minotaurChases);
+                boardPanel.requestFocusInWindow();
+                return;
+            }
+            state.minotaurChases = chase.isSelected();
             boardPanel.requestFocusInWindow();
         });
 
+        hint.addActionListener(e -> {
+            boardPanel.setHintOverlay(hint.isSelected());
+            boardPanel.requestFocusInWindow();
+        });
+
+        analysis.addActionListener(e -> {
+            boardPanel.setPortalAnalysisOverlay(analysis.isSelected());
+            if (analysis.isSelected() && state.getBoard() != null && state.getMode() != Mode.PLAY) {
+                status.setText(state.portalAnalysis.summary());
+            }
+            boardPanel.requestFocusInWindow();
+        });
+
+        placementPlayer.addChangeListener(e -> {
+            int index = (Integer) placementPlayer.getValue();
+            if (index == state.getPlacementPlayer()) return;
+            state.setPlacementPlayer(index);
+            status.setText("Placement tool: " + state.placementToolName());
+            boardPanel.requestFocusInWindow();
+        });
+
+        // инструмент двигается сам после каждой постановки (PLAYER — по игрокам): показываем его
+        boardPanel.setPlacementToolConsumer(tool -> {
+            if (toolCombo.getSelectedItem() != tool) toolCombo.setSelectedItem(tool);
+            placementPlayerModel.setValue(state.getPlacementPlayer());
+        });
+
         toolCombo.addActionListener(e -> {
             PlacementTool tool = (PlacementTool) toolCombo.getSelectedItem();
             state.setPlacementTool(tool);
-            status.setText("Placement tool: " + tool);
+            status.setText("Placement tool: " + state.placementToolName());
             boardPanel.requestFocusInWindow();
         });
 
@@ -131,16 +348,46 @@ public class MainWindow extends JFrame {
     }
 
 
+    /** Bot only for two players: otherwise the combo is off and the bot is dropped. */
+    private void updateBotCombo(JComboBox<String> botCombo) {
+        boolean supported = MctsBot.supports(state);
+        if (!supported && botCombo.getSelectedIndex() != 0) botCombo.setSelectedIndex(0); // listener drops the bot
+        botCombo.setEnabled(supported);
+    }
+
+    /** Selector range follows the player count; the state may have moved its value down. */
+    private void syncPlacementPlayer(SpinnerNumberModel model) {
+        model.setMaximum(state.playerCount());
+        model.setValue(state.getPlacementPlayer());
+    }
+
+    /** File dialog for .maze files; null if cancelled. */
+    private Path chooseFile(boolean save) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("Лабиринт (*." + MazeFile.EXTENSION + ")", MazeFile.EXTENSION));
+        int result = save ? chooser.showSaveDialog(this) : chooser.showOpenDialog(this);
+        if (result != JFileChooser.APPROVE_OPTION) return null;
+        return chooser.getSelectedFile().toPath();
+    }
+
     private String validateReadyForPlay() {
         if (state.getBoard() == null) return "Сначала создай поле.";
 
         // Требуем всё, как ты описал: выход, ключ, больница, минотавр, игроки
-        if (state.exitX < 0) return "Не поставлен EXIT.";
-        if (state.keyX < 0) return "Не поставлен KEY.";
-        if (state.hospitalX < 0) return "Не поставлен HOSPITAL.";
-        if (state.minotaurX < 0) return "Не поставлен MINOTAUR.";
-        if (state.p1.x < 0 || state.p1.y < 0) return "Не поставлен PLAYER_1.";
-        if (state.p2.x < 0 || state.p2.y < 0) return "Не поставлен PLAYER_2.";
+        if (state.entities.count(EntityGrid.EXIT) == 0) return "Не поставлен EXIT.";
+        if (state.keysOnBoard() == 0) return "Не поставлен KEY.";
+        if (state.entities.count(EntityGrid.HOSPITAL) == 0) return "Не поставлен HOSPITAL.";
+        if (state.minotaurCount() == 0) return "Не поставлен MINOTAUR.";
+        for (int i = 1; i <= state.playerCount(); i++) {
+            if (state.player(i).x() < 0) return "Не поставлен PLAYER_" + i + ".";
+        }
+
+        // проходимость с учётом стен и порталов (минотавр считается непроходимым)
+        solvability = SolvabilityChecker.check(state);
+        for (SolvabilityChecker.PlayerReport r : solvability) {
+            if (!r.keyReachable) return "PLAYER_" + r.playerIndex + " не может дойти до KEY.";
+            if (!r.exitReachableWithKey) return "PLAYER_" + r.playerIndex + " не может дойти с ключом до EXIT.";
+        }
 
         return null;
     }
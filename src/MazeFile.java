@@ -0,0 +1,325 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary maze/game file, little-endian.
+ *
+ * <pre>
+ *   header, 64 bytes:
+ *     int  magic "LBRM", int version, int board size n, int reserved (0)
+ *     long vertical wall plane offset, long horizontal wall plane offset (both 8-aligned)
+ *     long state section offset, int state section length, zero padding
+ *   vertical walls:   ceil(n(n-1)/64) longs, bit layout as in Board
+ *   horizontal walls: ceil(n(n-1)/64) longs
+ *   state section:    keys, minotaurs, players, run fields, portal groups, exits, hospitals (see writeState)
+ * </pre>
+ *
+ * Loading maps the file with FileChannel.map and reads only the header and the small state section;
+ * the wall planes are used in place by Board, so opening costs the same for a 4x4 and a 40000x40000 maze.
+ * The planes are mapped PRIVATE (copy-on-write): editing a loaded maze never touches the file.
+ */
+public final class MazeFile {
+
+    public static final String EXTENSION = "maze";
+
+    private static final int MAGIC = 0x4C42524D; // "LBRM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int COPY_BUFFER = 1 << 16;
+
+    private MazeFile() {
+    }
+
+    /**
+     * Writes board, entities, players, run fields and portals. The file is written next to the target
+     * and then moved over it, so a board still mapped from the old file stays valid.
+     */
+    public static void save(GameState state, Path path) throws IOException {
+        Board board = state.getBoard();
+        if (board == null) throw new IOException("no board to save");
+
+        byte[] stateSection = writeState(state);
+        long vOff = HEADER_SIZE;
+        long hOff = vOff + 8L * board.verticalWallWordCount();
+        long sOff = hOff + 8L * board.horizontalWallWordCount();
+
+        Path dir = path.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, ".maze", ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(board.getSize()).putInt(0);
+                header.putLong(vOff).putLong(hOff).putLong(sOff).putInt(stateSection.length);
+                header.clear();
+                writeFully(ch, header);
+
+                ByteBuffer buf = ByteBuffer.allocateDirect(COPY_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0, w = board.verticalWallWordCount(); i < w; i++) {
+                    if (!buf.hasRemaining()) flush(ch, buf);
+                    buf.putLong(board.verticalWallWord(i));
+                }
+                for (int i = 0, w = board.horizontalWallWordCount(); i < w; i++) {
+                    if (!buf.hasRemaining()) flush(ch, buf);
+                    buf.putLong(board.horizontalWallWord(i));
+                }
+                flush(ch, buf);
+
+                writeFully(ch, ByteBuffer.wrap(stateSection));
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Replaces board, entities, players, run fields and portals of into with the file contents.
+     * into is left untouched if the file is invalid.
+     */
+    public static void load(Path path, GameState into) throws IOException {
+        boolean writable = true;
+        FileChannel ch;
+        try {
+            // PRIVATE mappings need a channel opened for writing, even though nothing is written
+            ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (FileSystemException e) {
+            ch = FileChannel.open(path, StandardOpenOption.READ);
+            writable = false;
+        }
+
+        try (FileChannel c = ch) {
+            long fileSize = c.size();
+            if (fileSize < HEADER_SIZE) throw new IOException("not a maze file: " + path);
+
+            ByteBuffer header = c.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) throw new IOException("not a maze file: " + path);
+            int version = header.getInt();
+            if (version != VERSION) throw new IOException("unsupported maze file version " + version);
+            int n = header.getInt();
+            header.getInt(); // reserved
+            long vOff = header.getLong();
+            long hOff = header.getLong();
+            long sOff = header.getLong();
+            int sLen = header.getInt();
+
+            if (n < 2 || (long) n * n > Integer.MAX_VALUE) throw new IOException("bad board size " + n);
+            long planeBytes = 8L * (((long) n * (n - 1) + 63) >>> 6);
+            if (vOff < HEADER_SIZE || (vOff & 7) != 0 || (hOff & 7) != 0
+                    || hOff < vOff + planeBytes || sOff < hOff + planeBytes
+                    || sLen < 0 || sOff + sLen > fileSize) {
+                throw new IOException("corrupt maze file: " + path);
+            }
+
+            FileChannel.MapMode mode = writable ? FileChannel.MapMode.PRIVATE : FileChannel.MapMode.READ_ONLY;
+            LongBuffer vertical = c.map(mode, vOff, planeBytes).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            LongBuffer horizontal = c.map(mode, hOff, planeBytes).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            ByteBuffer section = c.map(FileChannel.MapMode.READ_ONLY, sOff, sLen).order(ByteOrder.LITTLE_ENDIAN);
+
+            // parse everything before touching into
+            GameState loaded = new GameState();
+            loaded.setBoard(new Board(n, vertical, horizontal));
+            try {
+                readState(section, loaded, n);
+            } catch (java.nio.BufferUnderflowException e) {
+                throw new IOException("corrupt maze file: " + path, e);
+            }
+
+            into.setBoard(loaded.getBoard());
+            into.clearEntitiesAndPlayers();
+            into.copyRunStateFrom(loaded);
+            into.pairCursorGroup = loaded.pairCursorGroup;
+            into.pairCursorIndex = loaded.pairCursorIndex;
+            into.cycleCursorGroup = loaded.cycleCursorGroup;
+            into.cycleCursorIndex = loaded.cycleCursorIndex;
+            into.minotaurChases = loaded.minotaurChases;
+            copyPortals(loaded.portals, into.portals);
+            copyEntities(loaded.entities, into.entities, EntityGrid.EXIT);
+            copyEntities(loaded.entities, into.entities, EntityGrid.HOSPITAL);
+        }
+    }
+
+    // ===== state section =====
+
+    private static byte[] writeState(GameState s) {
+        byte[] message = s.gameOverMessage().getBytes(StandardCharsets.UTF_8);
+        EntityGrid entities = s.entities;
+        int size = 2 * 4 + 8 * (s.keyCount() + s.minotaurCount()) // keys, minotaurs
+                + 4 + s.playerCount() * 5 * 4 // player count, players
+                + 8 * 4 + message.length      // run fields + cursors
+                + 2 * 4                       // group counts
+                + 2 * 4 + 8 * (entities.count(EntityGrid.EXIT) + entities.count(EntityGrid.HOSPITAL));
+        for (PortalNetwork.Type type : PortalNetwork.Type.values()) {
+            for (int g = 0; g < s.portals.groupCount(type); g++) size += 4 + s.portals.groupSize(type, g) * 8;
+        }
+
+        ByteBuffer b = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(s.keyCount());
+        for (int i = 0; i < s.keyCount(); i++) b.putInt(s.keyX(i)).putInt(s.keyY(i));
+        b.putInt(s.minotaurCount());
+        for (int i = 0; i < s.minotaurCount(); i++) b.putInt(s.minotaurX(i)).putInt(s.minotaurY(i));
+        b.putInt(s.playerCount());
+        for (int i = 1; i <= s.playerCount(); i++) writePlayer(b, s.player(i));
+
+        b.putInt(s.currentPlayerIndex());
+        b.putInt((s.teleportedThisTurn() ? 1 : 0) | (s.isGameOver() ? 2 : 0) | (s.minotaurChases ? 4 : 0));
+        b.putInt(s.winnerIndex());
+        b.putInt(s.pairCursorGroup).putInt(s.pairCursorIndex);
+        b.putInt(s.cycleCursorGroup).putInt(s.cycleCursorIndex);
+        b.putInt(message.length).put(message);
+
+        writeGroups(b, s.portals, PortalNetwork.Type.PAIR);
+        writeGroups(b, s.portals, PortalNetwork.Type.CYCLE);
+        writeEntities(b, entities, EntityGrid.EXIT);
+        writeEntities(b, entities, EntityGrid.HOSPITAL);
+        return b.array();
+    }
+
+    private static void writePlayer(ByteBuffer b, GameState.PlayerState p) {
+        b.putInt(p.x()).putInt(p.y()).putInt(p.shotsLeft());
+        b.putInt(p.isAlive() ? 1 : 0);
+        b.putInt(p.carriedKey());
+    }
+
+    private static void writeGroups(ByteBuffer b, PortalNetwork portals, PortalNetwork.Type type) {
+        b.putInt(portals.groupCount(type));
+        for (int g = 0; g < portals.groupCount(type); g++) {
+            int size = portals.groupSize(type, g);
+            b.putInt(size);
+            for (int i = 0; i < size; i++) b.putInt(portals.portalX(type, g, i)).putInt(portals.portalY(type, g, i));
+        }
+    }
+
+    private static void writeEntities(ByteBuffer b, EntityGrid entities, int kind) {
+        b.putInt(entities.count(kind));
+        for (int i = 0; i < entities.count(kind); i++) b.putInt(entities.x(kind, i)).putInt(entities.y(kind, i));
+    }
+
+    private static void readState(ByteBuffer b, GameState s, int n) throws IOException {
+        int keys = pieceCount(b);
+        for (int i = 0; i < keys; i++) s.addKey(coord(b, n), coord(b, n));
+        int minotaurs = pieceCount(b);
+        for (int i = 0; i < minotaurs; i++) s.addMinotaur(coord(b, n), coord(b, n));
+        int players = b.getInt();
+        if (players < GameState.MIN_PLAYERS || players > GameState.MAX_PLAYERS) {
+            throw new IOException("bad player count " + players);
+        }
+        s.setPlayerCount(players);
+        for (int i = 1; i <= players; i++) readPlayer(b, s, s.player(i), n);
+
+        int current = b.getInt();
+        if (current < 1 || current > players) throw new IOException("bad current player");
+        s.setCurrentPlayerIndex(current);
+        int flags = b.getInt();
+        s.setTeleportedThisTurn((flags & 1) != 0);
+        s.minotaurChases = (flags & 4) != 0;
+        int winner = b.getInt();
+        if ((flags & 2) != 0) s.setGameOver(winner);
+        s.pairCursorGroup = b.getInt();
+        s.pairCursorIndex = b.getInt();
+        s.cycleCursorGroup = b.getInt();
+        s.cycleCursorIndex = b.getInt();
+        int len = b.getInt();
+        if (len < 0 || len > b.remaining()) throw new IOException("bad game-over message");
+        b.position(b.position() + len); // game-over message: derived from winner, kept for the format
+
+        readGroups(b, s.portals, PortalNetwork.Type.PAIR, n);
+        readGroups(b, s.portals, PortalNetwork.Type.CYCLE, n);
+        readEntities(b, s.entities, EntityGrid.EXIT, n);
+        readEntities(b, s.entities, EntityGrid.HOSPITAL, n);
+    }
+
+    private static void readPlayer(ByteBuffer b, GameState s, GameState.PlayerState p, int n) throws IOException {
+        p.setPosition(coord(b, n), coord(b, n));
+        p.setShotsLeft(b.getInt());
+        p.setAlive((b.getInt() & 1) != 0);
+        int key = b.getInt(); // carried key slot, -1 = none
+        if (key < -1 || key >= s.keyCount() || (key >= 0 && s.keyX(key) >= 0)) {
+            throw new IOException("bad carried key " + key);
+        }
+        p.setCarriedKey(key);
+    }
+
+    /** Number of keys or minotaurs that follow, 8 bytes each. */
+    private static int pieceCount(ByteBuffer b) throws IOException {
+        int count = b.getInt();
+        if (count < 0 || count > b.remaining() / 8) throw new IOException("bad piece count " + count);
+        return count;
+    }
+
+    private static void readGroups(ByteBuffer b, PortalNetwork portals, PortalNetwork.Type type, int n)
+            throws IOException {
+        int count = b.getInt();
+        if (count < 0) throw new IOException("bad portal group count");
+        for (int g = 0; g < count; g++) {
+            int size = b.getInt();
+            boolean ok = (type == PortalNetwork.Type.PAIR) ? size == 2 : size >= 2 && size <= b.remaining() / 8;
+            if (!ok) throw new IOException("bad portal group size " + size);
+            int group = portals.addGroup(type, size);
+            for (int i = 0; i < size; i++) {
+                int x = coord(b, n), y = coord(b, n);
+                if (x < 0 || y < 0) continue;
+                if (!portals.place(type, group, i, x, y)) throw new IOException("two portals in one cell");
+            }
+        }
+    }
+
+    private static void readEntities(ByteBuffer b, EntityGrid entities, int kind, int n) throws IOException {
+        int count = b.getInt();
+        if (count < 0 || count > b.remaining() / 8) throw new IOException("bad entity count " + count);
+        for (int i = 0; i < count; i++) readEntity(b, entities, kind, n);
+    }
+
+    /** One (x,y), -1 = not placed; two of a kind in one cell are a corrupt file. */
+    private static void readEntity(ByteBuffer b, EntityGrid entities, int kind, int n) throws IOException {
+        int x = coord(b, n), y = coord(b, n);
+        if (x < 0 || y < 0) return;
+        if (!entities.add(kind, x, y)) throw new IOException("two entities of a kind in one cell");
+    }
+
+    /** Coordinate in [0, n) or -1 (not placed). */
+    private static int coord(ByteBuffer b, int n) throws IOException {
+        int v = b.getInt();
+        if (v < -1 || v >= n) throw new IOException("coordinate out of board: " + v);
+        return v;
+    }
+
+    private static void copyPortals(PortalNetwork from, PortalNetwork to) {
+        to.clear();
+        copyGroups(from, to, PortalNetwork.Type.PAIR);
+        copyGroups(from, to, PortalNetwork.Type.CYCLE);
+    }
+
+    private static void copyGroups(PortalNetwork from, PortalNetwork to, PortalNetwork.Type type) {
+        for (int g = 0; g < from.groupCount(type); g++) {
+            int size = from.groupSize(type, g);
+            int group = to.addGroup(type, size);
+            for (int i = 0; i < size; i++) {
+                int x = from.portalX(type, g, i), y = from.portalY(type, g, i);
+                if (x >= 0 && y >= 0) to.place(type, group, i, x, y);
+            }
+        }
+    }
+
+    private static void copyEntities(EntityGrid from, EntityGrid to, int kind) {
+        for (int i = 0; i < from.count(kind); i++) to.add(kind, from.x(kind, i), from.y(kind, i));
+    }
+
+    private static void flush(FileChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        writeFully(ch, buf);
+        buf.clear();
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) ch.write(buf);
+    }
+}
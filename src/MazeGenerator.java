@@ -0,0 +1,364 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Procedural perfect mazes (every cell reachable, exactly one path between two cells).
+ * Generators carve passages straight in Board's packed wall planes and hand them over to a new Board,
+ * so no per-wall toggles, move-mask updates or listeners run while generating.
+ *
+ * Output is deterministic for a given (size, algorithm, seed).
+ */
+public final class MazeGenerator {
+
+    public enum Algorithm {
+        /** Randomized depth-first search: long winding corridors, few dead ends. Stack up to n*n cells. */
+        BACKTRACKER,
+        /** Random spanning tree by shuffled edges and union-find: many short dead ends. Needs an int per edge. */
+        KRUSKAL,
+        /** Loop-erased random walks: uniform spanning tree. Slow start on large boards. */
+        WILSON,
+        /** Row by row, two int[n] of working memory: the one to use for very large boards. */
+        ELLER
+    }
+
+    /** Attempts to place entities so that both players can win before populate gives up. */
+    private static final int POPULATE_ATTEMPTS = 16;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private MazeGenerator() {
+    }
+
+    public static Board generate(int size, Algorithm algorithm, long seed) {
+        return generate(size, algorithm, seed, true);
+    }
+
+    /** @param cacheMoveMasks see {@link Board#Board(int, boolean)}; off saves a byte per cell on huge boards */
+    public static Board generate(int size, Algorithm algorithm, long seed, boolean cacheMoveMasks) {
+        if (size < 2) throw new IllegalArgumentException("size must be >= 2");
+        if ((long) size * size > Integer.MAX_VALUE) throw new IllegalArgumentException("size too large: " + size);
+
+        Planes p = new Planes(size);
+        SplittableRandom rnd = new SplittableRandom(seed);
+        switch (algorithm) {
+            case BACKTRACKER: backtracker(p, rnd); break;
+            case KRUSKAL: kruskal(p, rnd); break;
+            case WILSON: wilson(p, rnd); break;
+            case ELLER: eller(p, rnd); break;
+            default: throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        }
+        return new Board(size, p.vertical, p.horizontal, cacheMoveMasks);
+    }
+
+    /**
+     * Clears state and puts key, exit, hospital, minotaur, its players (playerCount()) and the given number of
+     * complete portal groups on its board, each in its own cell (that satisfies every placement rule
+     * of the editor). The minotaur goes to a dead end when one is found, so in a perfect maze it does
+     * not cut any path. Placement is repeated until SolvabilityChecker says every player can win.
+     *
+     * @return false if no winnable placement was found (state keeps the last attempt)
+     */
+    public static boolean populate(GameState state, int pairGroups, int cycleGroups, long seed) {
+        Board board = state.getBoard();
+        if (board == null) throw new IllegalStateException("no board");
+        int n = board.getSize();
+        if (4L + state.playerCount() + 2L * pairGroups + 3L * cycleGroups > (long) n * n) {
+            throw new IllegalArgumentException("board " + n + "x" + n + " is too small for " + state.playerCount()
+                    + " players, " + pairGroups + " pair and " + cycleGroups + " cycle portal groups");
+        }
+
+        SplittableRandom rnd = new SplittableRandom(seed);
+        for (int attempt = 0; attempt < POPULATE_ATTEMPTS; attempt++) {
+            state.clearEntitiesAndPlayers();
+
+            int c = freeCell(state, rnd);
+            state.addKey(board.cellX(c), board.cellY(c));
+            c = freeCell(state, rnd);
+            state.entities.add(EntityGrid.EXIT, board.cellX(c), board.cellY(c));
+            c = freeCell(state, rnd);
+            state.entities.add(EntityGrid.HOSPITAL, board.cellX(c), board.cellY(c));
+            for (int i = 1; i <= state.playerCount(); i++) {
+                c = freeCell(state, rnd);
+                state.player(i).setPosition(board.cellX(c), board.cellY(c));
+            }
+            c = freeDeadEnd(state, rnd);
+            state.addMinotaur(board.cellX(c), board.cellY(c));
+
+            for (int g = 0; g < pairGroups; g++) {
+                int group = state.portals.addPairGroup();
+                for (int i = 0; i < 2; i++) {
+                    c = freeCell(state, rnd);
+                    state.portals.place(PortalNetwork.Type.PAIR, group, i, board.cellX(c), board.cellY(c));
+                }
+            }
+            for (int g = 0; g < cycleGroups; g++) {
+                int group = state.portals.addCycleGroup(3);
+                for (int i = 0; i < 3; i++) {
+                    c = freeCell(state, rnd);
+                    state.portals.place(PortalNetwork.Type.CYCLE, group, i, board.cellX(c), board.cellY(c));
+                }
+            }
+            // editor cursors continue after the generated groups
+            state.pairCursorGroup = pairGroups;
+            state.cycleCursorGroup = cycleGroups;
+
+            boolean winnable = true;
+            for (SolvabilityChecker.PlayerReport r : SolvabilityChecker.check(state)) {
+                if (!r.canWin()) winnable = false;
+            }
+            if (winnable) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Generates count ready-to-play levels in parallel (common fork/join pool). Level i depends only
+     * on (seed, i), so the result does not depend on thread count or scheduling.
+     */
+    public static GameState[] generateLevels(int count, int size, Algorithm algorithm,
+                                             int pairGroups, int cycleGroups, long seed) {
+        GameState[] levels = new GameState[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            long levelSeed = seed ^ (i * 0x9E3779B97F4A7C15L);
+            for (int attempt = 0; attempt < POPULATE_ATTEMPTS; attempt++, levelSeed += 0x632BE59BD9B4E019L) {
+                GameState s = new GameState();
+                s.setBoard(generate(size, algorithm, levelSeed));
+                if (populate(s, pairGroups, cycleGroups, levelSeed)) {
+                    levels[i] = s;
+                    return;
+                }
+            }
+            throw new IllegalStateException("no winnable level " + i + " for " + size + "x" + size);
+        });
+        return levels;
+    }
+
+    // ===== algorithms =====
+
+    private static void backtracker(Planes p, SplittableRandom rnd) {
+        int n = p.n;
+        long[] visited = new long[(int) (((long) n * n + 63) >>> 6)];
+        int[] stack = new int[Math.min(1024, n * n)];
+        int[] options = new int[4];
+
+        int start = rnd.nextInt(n * n);
+        stack[0] = start;
+        int top = 1;
+        visited[start >>> 6] |= 1L << start;
+
+        while (top > 0) {
+            int cell = stack[top - 1];
+            int x = cell % n, y = cell / n;
+            int count = 0;
+            for (Direction d : DIRECTIONS) {
+                int nx = x + d.dx, ny = y + d.dy;
+                if (nx < 0 || ny < 0 || nx >= n || ny >= n) continue;
+                int next = ny * n + nx;
+                if ((visited[next >>> 6] & (1L << next)) == 0) options[count++] = d.ordinal();
+            }
+            if (count == 0) {
+                top--;
+                continue;
+            }
+            Direction d = DIRECTIONS[options[rnd.nextInt(count)]];
+            p.open(x, y, d);
+            int next = cell + d.dy * n + d.dx;
+            visited[next >>> 6] |= 1L << next;
+            if (top == stack.length) stack = Arrays.copyOf(stack, (int) Math.min((long) n * n, 2L * top));
+            stack[top++] = next;
+        }
+    }
+
+    private static void kruskal(Planes p, SplittableRandom rnd) {
+        int n = p.n;
+        long verticalEdges = (long) (n - 1) * n;
+        long total = 2 * verticalEdges;
+        if (total > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("board too large for KRUSKAL: " + n);
+
+        int[] edges = new int[(int) total];
+        for (int i = 0; i < edges.length; i++) edges[i] = i;
+        for (int i = edges.length - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int t = edges[i]; edges[i] = edges[j]; edges[j] = t;
+        }
+
+        int[] parent = new int[n * n];
+        for (int i = 0; i < parent.length; i++) parent[i] = i;
+
+        int joins = n * n - 1;
+        for (int i = 0; i < edges.length && joins > 0; i++) {
+            int e = edges[i];
+            int x, y, a, b;
+            boolean vertical = e < verticalEdges;
+            if (vertical) {
+                y = e / (n - 1);
+                x = e % (n - 1);
+                a = y * n + x;
+                b = a + 1;
+            } else {
+                e -= (int) verticalEdges;
+                y = e / n;
+                x = e % n;
+                a = y * n + x;
+                b = a + n;
+            }
+            int ra = find(parent, a), rb = find(parent, b);
+            if (ra == rb) continue;
+            parent[ra] = rb;
+            if (vertical) p.openRight(x, y);
+            else p.openDown(x, y);
+            joins--;
+        }
+    }
+
+    /** Root with path halving. */
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void wilson(Planes p, SplittableRandom rnd) {
+        int n = p.n;
+        int cells = n * n;
+        long[] inTree = new long[(int) (((long) cells + 63) >>> 6)];
+        byte[] walk = new byte[cells]; // last direction taken out of the cell (ordinal)
+
+        int root = rnd.nextInt(cells);
+        inTree[root >>> 6] |= 1L << root;
+
+        for (int start = 0; start < cells; start++) {
+            if ((inTree[start >>> 6] & (1L << start)) != 0) continue;
+
+            // random walk until the tree; re-entering a cell overwrites its exit, which erases the loop
+            int cell = start;
+            while ((inTree[cell >>> 6] & (1L << cell)) == 0) {
+                int x = cell % n, y = cell / n;
+                Direction d;
+                do {
+                    d = DIRECTIONS[rnd.nextInt(4)];
+                } while (x + d.dx < 0 || y + d.dy < 0 || x + d.dx >= n || y + d.dy >= n);
+                walk[cell] = (byte) d.ordinal();
+                cell += d.dy * n + d.dx;
+            }
+
+            cell = start;
+            while ((inTree[cell >>> 6] & (1L << cell)) == 0) {
+                inTree[cell >>> 6] |= 1L << cell;
+                Direction d = DIRECTIONS[walk[cell]];
+                p.open(cell % n, cell / n, d);
+                cell += d.dy * n + d.dx;
+            }
+        }
+    }
+
+    /**
+     * Eller's algorithm. The sets of the current row are circular lists of columns in left-to-right
+     * order (left/right links): x and x+1 are in one set iff right[x] == x+1, joining and leaving
+     * a set are O(1), so a row costs O(n) and the whole working memory is two int[n].
+     */
+    private static void eller(Planes p, SplittableRandom rnd) {
+        int n = p.n;
+        int[] left = new int[n];
+        int[] right = new int[n];
+        for (int x = 0; x < n; x++) {
+            left[x] = x;
+            right[x] = x;
+        }
+
+        for (int y = 0; y < n; y++) {
+            boolean lastRow = (y == n - 1);
+
+            for (int x = 0; x < n - 1; x++) {
+                if (right[x] == x + 1) continue; // same set: a passage would make a loop
+                if (!lastRow && rnd.nextBoolean()) continue;
+                // splice the set of x+1 in after x
+                right[left[x + 1]] = right[x];
+                left[right[x]] = left[x + 1];
+                right[x] = x + 1;
+                left[x + 1] = x;
+                p.openRight(x, y);
+            }
+            if (lastRow) break;
+
+            for (int x = 0; x < n; x++) {
+                if (left[x] != x && rnd.nextBoolean()) {
+                    // no passage down: x leaves its set (the set keeps at least one other cell going down)
+                    right[left[x]] = right[x];
+                    left[right[x]] = left[x];
+                    left[x] = x;
+                    right[x] = x;
+                } else {
+                    p.openDown(x, y);
+                }
+            }
+        }
+    }
+
+    // ===== entity placement =====
+
+    private static int freeCell(GameState state, SplittableRandom rnd) {
+        Board board = state.getBoard();
+        int cells = board.getSize() * board.getSize();
+        while (true) {
+            int c = rnd.nextInt(cells);
+            if (isFree(state, board.cellX(c), board.cellY(c))) return c;
+        }
+    }
+
+    /** Free cell with one open side if a few samples find one, else any free cell. */
+    private static int freeDeadEnd(GameState state, SplittableRandom rnd) {
+        Board board = state.getBoard();
+        for (int i = 0; i < 64; i++) {
+            int c = freeCell(state, rnd);
+            if (Integer.bitCount(board.moveMask(c)) == 1) return c;
+        }
+        return freeCell(state, rnd);
+    }
+
+    private static boolean isFree(GameState s, int x, int y) {
+        return s.cellMask(x, y) == 0;
+    }
+
+    /** Wall planes in Board's bit layout, starting with every inner wall present. */
+    private static final class Planes {
+        final int n;
+        final long[] vertical;
+        final long[] horizontal;
+
+        Planes(int n) {
+            this.n = n;
+            this.vertical = allSet((long) (n - 1) * n);
+            this.horizontal = allSet((long) n * (n - 1));
+        }
+
+        void openRight(int x, int y) {
+            long bit = (long) y * (n - 1) + x;
+            vertical[(int) (bit >>> 6)] &= ~(1L << bit);
+        }
+
+        void openDown(int x, int y) {
+            long bit = (long) y * n + x;
+            horizontal[(int) (bit >>> 6)] &= ~(1L << bit);
+        }
+
+        /** Removes the wall between (x,y) and its neighbour in dir. */
+        void open(int x, int y, Direction dir) {
+            if (dir.dx > 0) openRight(x, y);
+            else if (dir.dx < 0) openRight(x - 1, y);
+            else if (dir.dy > 0) openDown(x, y);
+            else openDown(x, y - 1);
+        }
+
+        private static long[] allSet(long bits) {
+            long[] words = new long[(int) ((bits + 63) >>> 6)];
+            Arrays.fill(words, -1L);
+            int tail = (int) (bits & 63);
+            if (tail != 0) words[words.length - 1] = (1L << tail) - 1;
+            return words;
+        }
+    }
+}
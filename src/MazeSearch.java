@@ -0,0 +1,526 @@
+import java.util.Arrays;
+
+/**
+ * Breadth-first search over the board in "turns", with the engine's portal rules:
+ *  - a move onto a portal immediately teleports to its destination (landing);
+ *  - standing on a portal (arrived there by teleport) you can skip the turn to teleport again (end-turn).
+ * A turn is therefore one edge: a step (resolved through a portal) or an end-turn teleport.
+ *
+ * Arrays are sized n*n once and reused between searches, so one instance is not thread-safe.
+ */
+public final class MazeSearch {
+
+    public static final int UNREACHABLE = -1;
+
+    // repair() gives up and searches again once this fraction (1/REPAIR_LIMIT) of the cells lost its way
+    private static final int REPAIR_LIMIT = 8;
+
+    private final Board board;
+    private final PortalNetwork portals;
+    private final int n;
+    private final int[] deltas = new int[4]; // cell offset by Direction.ordinal()
+
+    // bitset of cells holding a portal: lets the search skip the portal lookup for ordinary cells
+    private final long[] portalCells;
+
+    private final int[] dist;
+    private final int[] queue;
+    private final long[] visited;
+
+    // repair() scratch, stamp allocated on first use: stampGen = queued, stampGen + 1 = invalidated
+    private int[] stamp;
+    private int stampGen;
+    private int[] seeds = new int[16];
+    private long[] order = new long[16]; // (distance << 32) | cell
+    private int[] affected = new int[16];
+    private final int[] adj = new int[9];
+    private final int[] adj2 = new int[9];
+    private final int[] oneRoot = new int[1];
+
+    // cells that cannot be entered (minotaurs) during one search, allocated on first use and cleared after
+    private long[] blockedCells;
+
+    public MazeSearch(Board board, PortalNetwork portals) {
+        this.board = board;
+        this.portals = portals;
+        this.n = board.getSize();
+        int cells = n * n;
+        this.portalCells = new long[(cells + 63) >>> 6];
+        this.dist = new int[cells];
+        this.queue = new int[cells];
+        this.visited = new long[(cells + 63) >>> 6];
+        for (Direction d : Direction.values()) deltas[d.ordinal()] = board.cellDelta(d);
+        indexPortals(PortalNetwork.Type.PAIR);
+        indexPortals(PortalNetwork.Type.CYCLE);
+    }
+
+    public Board board() {
+        return board;
+    }
+
+    /** Re-reads the portal at cell after it was placed or removed (the search keeps its own portal bitset). */
+    public void portalChanged(int cell) {
+        long bit = 1L << cell;
+        if (portals.hasPortalAt(board.cellX(cell), board.cellY(cell))) portalCells[cell >>> 6] |= bit;
+        else portalCells[cell >>> 6] &= ~bit;
+    }
+
+    /** Destination cell of the portal at cell, or -1 (no portal / destination not placed). */
+    public int portalDestination(int cell) {
+        if ((portalCells[cell >>> 6] & (1L << cell)) == 0) return -1;
+        return portals.destinationFrom(cell);
+    }
+
+    /** Cell where a player ends up after stepping onto cell (teleport on landing). */
+    public int landing(int cell) {
+        int dest = portalDestination(cell);
+        return (dest >= 0) ? dest : cell;
+    }
+
+    /**
+     * BFS from source. Distances (in turns) are valid for every cell until the next search;
+     * {@link #UNREACHABLE} otherwise.
+     *
+     * @param blocked cells [0..blockedCount) that cannot be entered (e.g. minotaurs)
+     * @param target  stop as soon as this cell is reached, or -1 to explore everything
+     * @return distances by cell (internal array, overwritten by the next search)
+     */
+    public int[] distancesFrom(int source, int[] blocked, int blockedCount, int target) {
+        block(blocked, blockedCount, true);
+        distancesFrom(source, blockedCount > 0, target, dist);
+        block(blocked, blockedCount, false);
+        return dist;
+    }
+
+    /** Forward BFS from source into out: out[c] = turns from source to c ({@link #UNREACHABLE} if impossible). */
+    public void distancesFrom(int source, int[] out) {
+        distancesFrom(source, false, -1, out);
+    }
+
+    /** Forward BFS from several sources at once: out[c] = turns from the nearest of sources[0..count) to c. */
+    public void distancesFrom(int[] sources, int count, int[] out) {
+        Arrays.fill(out, UNREACHABLE);
+        int tail = seed(sources, count, out);
+        int head = 0;
+        while (head < tail) {
+            int c = queue[head++];
+            int next = out[c] + 1;
+            int k = successors(c, adj);
+            for (int j = 0; j < k; j++) {
+                int to = adj[j];
+                if (out[to] != UNREACHABLE) continue;
+                out[to] = next;
+                queue[tail++] = to;
+            }
+        }
+    }
+
+    private void distancesFrom(int source, boolean blocking, int target, int[] dist) {
+        Arrays.fill(dist, UNREACHABLE);
+        int head = 0, tail = 0;
+        dist[source] = 0;
+        queue[tail++] = source;
+
+        while (head < tail) {
+            int c = queue[head++];
+            if (c == target) break;
+            int next = dist[c] + 1;
+
+            int mask = board.moveMask(c);
+            for (int d = 0; d < 4; d++) {
+                if ((mask & (1 << d)) == 0) continue;
+                int step = c + deltas[d];
+                if (blocking && isBlocked(step)) continue;
+                int to = ((portalCells[step >>> 6] & (1L << step)) == 0) ? step : landing(step);
+                if (dist[to] != UNREACHABLE || (blocking && isBlocked(to))) continue;
+                dist[to] = next;
+                queue[tail++] = to;
+            }
+
+            // skip turn on a portal: end-turn teleport
+            int dest = portalDestination(c);
+            if (dest >= 0 && dist[dest] == UNREACHABLE && !(blocking && isBlocked(dest))) {
+                dist[dest] = next;
+                queue[tail++] = dest;
+            }
+        }
+    }
+
+    private void block(int[] cells, int count, boolean on) {
+        if (count == 0) return;
+        if (blockedCells == null) blockedCells = new long[visited.length];
+        for (int i = 0; i < count; i++) {
+            int c = cells[i];
+            if (on) blockedCells[c >>> 6] |= 1L << c;
+            else blockedCells[c >>> 6] &= ~(1L << c);
+        }
+    }
+
+    private boolean isBlocked(int cell) {
+        return (blockedCells[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Reverse BFS: out[c] = turns needed to get from c to target ({@link #UNREACHABLE} if impossible).
+     * Predecessors of v: plain neighbours stepping onto v (when v does not teleport away),
+     * neighbours stepping onto the portal whose destination is v, and that portal itself (end-turn).
+     */
+    public void distancesTo(int target, int[] out) {
+        Arrays.fill(out, UNREACHABLE);
+        out[target] = 0;
+        queue[0] = target;
+        reverseSearch(out, 1);
+    }
+
+    /** Reverse BFS to several targets at once: out[c] = turns from c to the nearest of targets[0..count). */
+    public void distancesTo(int[] targets, int count, int[] out) {
+        Arrays.fill(out, UNREACHABLE);
+        reverseSearch(out, seed(targets, count, out));
+    }
+
+    /**
+     * Reverse BFS to targets[0..count) that are already starts[i] turns away (starts sorted ascending,
+     * null = all 0), avoiding blocked[0..blockedCount): out[c] = min over i of starts[i] + turns from c to
+     * targets[i]. With starts = turns from each key to an exit this is the shortest win from every cell.
+     * A target joins the search when the queue reaches its start, so the cost stays one BFS.
+     */
+    public void distancesTo(int[] targets, int[] starts, int count, int[] blocked, int blockedCount, int[] out) {
+        Arrays.fill(out, UNREACHABLE);
+        block(blocked, blockedCount, true);
+        boolean blocking = blockedCount > 0;
+        int head = 0, tail = 0, next = 0;
+        while (true) {
+            int v;
+            int start = (next < count) ? ((starts != null) ? starts[next] : 0) : -1;
+            if (start >= 0 && (head == tail || start <= out[queue[head]])) {
+                v = targets[next++];
+                if (out[v] != UNREACHABLE || (blocking && isBlocked(v))) continue;
+                out[v] = start;
+            } else if (head < tail) {
+                v = queue[head++];
+            } else {
+                break;
+            }
+            int d = out[v] + 1;
+            if (portalDestination(v) < 0) tail = relaxNeighbours(v, d, out, tail, blocking);
+            int src = portalSource(v);
+            if (src >= 0 && !(blocking && isBlocked(src))) {
+                if (out[src] == UNREACHABLE) {
+                    out[src] = d;
+                    queue[tail++] = src;
+                }
+                tail = relaxNeighbours(src, d, out, tail, blocking);
+            }
+        }
+        block(blocked, blockedCount, false);
+    }
+
+    /** Puts the distinct cells of roots[0..count) at distance 0 into out and the queue; returns the queue tail. */
+    private int seed(int[] roots, int count, int[] out) {
+        int tail = 0;
+        for (int i = 0; i < count; i++) {
+            int r = roots[i];
+            if (out[r] == 0) continue;
+            out[r] = 0;
+            queue[tail++] = r;
+        }
+        return tail;
+    }
+
+    private void reverseSearch(int[] out, int tail) {
+        int head = 0;
+        while (head < tail) {
+            int v = queue[head++];
+            int next = out[v] + 1;
+
+            // stepping onto v and staying there
+            if (portalDestination(v) < 0) tail = relaxNeighbours(v, next, out, tail, false);
+
+            // stepping onto (or waiting on) the portal that leads to v
+            int src = portalSource(v);
+            if (src >= 0) {
+                if (out[src] == UNREACHABLE) {
+                    out[src] = next;
+                    queue[tail++] = src;
+                }
+                tail = relaxNeighbours(src, next, out, tail, false);
+            }
+        }
+    }
+
+    private int relaxNeighbours(int cell, int next, int[] out, int tail, boolean blocking) {
+        int mask = board.moveMask(cell);
+        for (int d = 0; d < 4; d++) {
+            if ((mask & (1 << d)) == 0) continue;
+            // sides are symmetric: if cell is open towards d, the neighbour is open back to cell
+            int u = cell + deltas[d];
+            if (out[u] != UNREACHABLE || (blocking && isBlocked(u))) continue;
+            out[u] = next;
+            queue[tail++] = u;
+        }
+        return tail;
+    }
+
+    /**
+     * Brings a field from {@link #distancesFrom(int, int[])} up to date after portals changed, without
+     * searching the whole board again. changes are triples (cell, old destination, new destination)
+     * of the changed portals, -1 = none; {@link #portalChanged} must have been called for them already.
+     *
+     * A changed portal at c only changes edges out of c and its neighbours, into c and its old or new
+     * destination. First, by increasing distance, every cell that no longer has a neighbour one turn closer
+     * is invalidated, and the cells it kept up are checked next. Then the invalidated cells take their best
+     * intact neighbour and shorter ways (through new edges too) spread outwards in distance order.
+     * The work is proportional to the cells whose distance changes, plus their neighbours; when the
+     * first pass finds that a large part of the board lost its way (a removed shortcut), the field is
+     * searched again from scratch instead, which is cheaper per cell.
+     *
+     * @return number of cells whose distance was set again (n*n after a new search)
+     */
+    public int repairFrom(int source, int[] field, int[] changes, int changeCount) {
+        oneRoot[0] = source;
+        return repair(field, oneRoot, 1, false, changes, changeCount);
+    }
+
+    /** {@link #repairFrom} for a field from {@link #distancesTo} (turns to target). */
+    public int repairTo(int target, int[] field, int[] changes, int changeCount) {
+        oneRoot[0] = target;
+        return repair(field, oneRoot, 1, true, changes, changeCount);
+    }
+
+    /** {@link #repairFrom} for a field from several sources ({@link #distancesFrom(int[], int, int[])}). */
+    public int repairFrom(int[] sources, int count, int[] field, int[] changes, int changeCount) {
+        return repair(field, sources, count, false, changes, changeCount);
+    }
+
+    /** {@link #repairFrom} for a field to several targets ({@link #distancesTo(int[], int, int[])}). */
+    public int repairTo(int[] targets, int count, int[] field, int[] changes, int changeCount) {
+        return repair(field, targets, count, true, changes, changeCount);
+    }
+
+    // roots keep distance 0 and are never invalidated; they are only needed to search again from scratch
+    private int repair(int[] field, int[] roots, int rootCount, boolean reverse, int[] changes, int changeCount) {
+        if (stamp == null) stamp = new int[n * n];
+        if (stampGen >= Integer.MAX_VALUE - 2) {
+            Arrays.fill(stamp, 0);
+            stampGen = 0;
+        }
+        stampGen += 2;
+        int queued = stampGen, invalid = stampGen + 1;
+
+        int seedCount = 0;
+        for (int i = 0; i < changeCount; i += 3) {
+            int c = changes[i];
+            seedCount = addSeed(c, seedCount);
+            seedCount = addSeed(changes[i + 1], seedCount);
+            seedCount = addSeed(changes[i + 2], seedCount);
+            int mask = board.moveMask(c);
+            for (int d = 0; d < 4; d++) {
+                if ((mask & (1 << d)) != 0) seedCount = addSeed(c + deltas[d], seedCount);
+            }
+        }
+
+        // 1) invalidate, by increasing distance (sorted seeds merged with a FIFO of the cells they kept up)
+        int orderCount = 0;
+        for (int i = 0; i < seedCount; i++) {
+            int c = seeds[i];
+            if (field[c] > 0) orderCount = addOrder(field[c], c, orderCount);
+        }
+        Arrays.sort(order, 0, orderCount);
+        int affectedCount = 0;
+        int o = 0, head = 0, tail = 0;
+        while (o < orderCount || head < tail) {
+            int w = (head == tail || (o < orderCount && (int) (order[o] >>> 32) <= field[queue[head]]))
+                    ? (int) order[o++] : queue[head++];
+            if (stamp[w] == invalid || supported(field, w, reverse, invalid)) continue;
+            if (affectedCount >= stamp.length / REPAIR_LIMIT) {
+                if (reverse) distancesTo(roots, rootCount, field);
+                else distancesFrom(roots, rootCount, field);
+                return stamp.length;
+            }
+            stamp[w] = invalid;
+            if (affectedCount == affected.length) affected = Arrays.copyOf(affected, affectedCount * 2);
+            affected[affectedCount++] = w;
+            int k = reverse ? predecessors(w, adj) : successors(w, adj);
+            for (int j = 0; j < k; j++) {
+                int x = adj[j];
+                if (field[x] == field[w] + 1 && stamp[x] != invalid && stamp[x] != queued) {
+                    stamp[x] = queued;
+                    queue[tail++] = x;
+                }
+            }
+        }
+
+        // 2) invalidated cells from their best intact neighbour, then shorter ways spread in distance order
+        for (int i = 0; i < affectedCount; i++) field[affected[i]] = UNREACHABLE;
+        orderCount = 0;
+        for (int i = 0; i < affectedCount; i++) {
+            int w = affected[i];
+            int best = UNREACHABLE;
+            int k = reverse ? successors(w, adj) : predecessors(w, adj);
+            for (int j = 0; j < k; j++) {
+                int d = field[adj[j]];
+                if (d >= 0 && (best < 0 || d + 1 < best)) best = d + 1;
+            }
+            if (best >= 0) {
+                field[w] = best;
+                orderCount = addOrder(best, w, orderCount);
+            }
+        }
+        for (int i = 0; i < seedCount; i++) {
+            int c = seeds[i];
+            if (field[c] >= 0) orderCount = addOrder(field[c], c, orderCount);
+        }
+        Arrays.sort(order, 0, orderCount);
+        o = 0;
+        head = 0;
+        tail = 0;
+        while (o < orderCount || head < tail) {
+            int v, d;
+            if (head == tail || (o < orderCount && (int) (order[o] >>> 32) <= field[queue[head]])) {
+                d = (int) (order[o] >>> 32);
+                v = (int) order[o++];
+                if (field[v] != d) continue; // improved since
+            } else {
+                v = queue[head++];
+                d = field[v];
+            }
+            int k = reverse ? predecessors(v, adj) : successors(v, adj);
+            for (int j = 0; j < k; j++) {
+                int x = adj[j];
+                if (field[x] < 0 || d + 1 < field[x]) {
+                    field[x] = d + 1;
+                    queue[tail++] = x;
+                }
+            }
+        }
+        return affectedCount + tail;
+    }
+
+    /** Has w a neighbour one turn closer (in the field's direction) that is not invalidated? */
+    private boolean supported(int[] field, int w, boolean reverse, int invalid) {
+        int k = reverse ? successors(w, adj2) : predecessors(w, adj2);
+        for (int j = 0; j < k; j++) {
+            int u = adj2[j];
+            if (field[u] == field[w] - 1 && stamp[u] != invalid) return true;
+        }
+        return false;
+    }
+
+    /** Cells one turn from cell: steps (resolved through portals) and the end-turn teleport. */
+    private int successors(int cell, int[] out) {
+        int k = 0;
+        int mask = board.moveMask(cell);
+        for (int d = 0; d < 4; d++) {
+            if ((mask & (1 << d)) != 0) out[k++] = landing(cell + deltas[d]);
+        }
+        int dest = portalDestination(cell);
+        if (dest >= 0) out[k++] = dest;
+        return k;
+    }
+
+    /** Cells one turn before cell (as in distancesTo); may repeat a cell. */
+    private int predecessors(int cell, int[] out) {
+        int k = 0;
+        if (portalDestination(cell) < 0) k = neighbours(cell, out, k);
+        int src = portalSource(cell);
+        if (src >= 0) {
+            out[k++] = src;
+            k = neighbours(src, out, k);
+        }
+        return k;
+    }
+
+    private int neighbours(int cell, int[] out, int k) {
+        int mask = board.moveMask(cell);
+        for (int d = 0; d < 4; d++) {
+            if ((mask & (1 << d)) != 0) out[k++] = cell + deltas[d];
+        }
+        return k;
+    }
+
+    private int addSeed(int cell, int count) {
+        if (cell < 0) return count;
+        if (count == seeds.length) seeds = Arrays.copyOf(seeds, count * 2);
+        seeds[count] = cell;
+        return count + 1;
+    }
+
+    private int addOrder(int distance, int cell, int count) {
+        if (count == order.length) order = Arrays.copyOf(order, count * 2);
+        order[count] = ((long) distance << 32) | cell;
+        return count + 1;
+    }
+
+    /** Portal cell whose destination is cell (cell must itself be a portal), or -1. */
+    public int portalSource(int cell) {
+        if ((portalCells[cell >>> 6] & (1L << cell)) == 0) return -1;
+        return portals.sourceOf(cell);
+    }
+
+    /**
+     * Shortest number of turns from source to target without entering blocked[0..blockedCount),
+     * or {@link #UNREACHABLE}. Layered BFS with a visited bitset instead of a distance array: the hot data
+     * (bitset + move masks) is ~9x smaller, which matters on boards with millions of cells.
+     */
+    public int turnsBetween(int source, int target, int[] blocked, int blockedCount) {
+        if (source == target) return 0;
+        block(blocked, blockedCount, true);
+        int turns = layeredSearch(source, target, blocked, blockedCount);
+        block(blocked, blockedCount, false);
+        return turns;
+    }
+
+    private int layeredSearch(int source, int target, int[] blocked, int blockedCount) {
+        long[] seen = visited;
+        Arrays.fill(seen, 0L);
+        seen[source >>> 6] |= 1L << source;
+        for (int i = 0; i < blockedCount; i++) seen[blocked[i] >>> 6] |= 1L << blocked[i];
+
+        int head = 0, tail = 0;
+        queue[tail++] = source;
+        int turns = 0;
+
+        while (head < tail) {
+            int layerEnd = tail;
+            turns++;
+            while (head < layerEnd) {
+                int c = queue[head++];
+
+                int mask = board.moveMask(c);
+                for (int d = 0; d < 4; d++) {
+                    if ((mask & (1 << d)) == 0) continue;
+                    int step = c + deltas[d];
+                    int to = step;
+                    if ((portalCells[step >>> 6] & (1L << step)) != 0) {
+                        if (blockedCount > 0 && isBlocked(step)) continue;
+                        to = landing(step);
+                    }
+                    long bit = 1L << to;
+                    if ((seen[to >>> 6] & bit) != 0) continue;
+                    if (to == target) return turns;
+                    seen[to >>> 6] |= bit;
+                    queue[tail++] = to;
+                }
+
+                int dest = portalDestination(c);
+                if (dest >= 0 && (seen[dest >>> 6] & (1L << dest)) == 0) {
+                    if (dest == target) return turns;
+                    seen[dest >>> 6] |= 1L << dest;
+                    queue[tail++] = dest;
+                }
+            }
+        }
+        return UNREACHABLE;
+    }
+
+    private void indexPortals(PortalNetwork.Type type) {
+        for (int g = 0; g < portals.groupCount(type); g++) {
+            for (int i = 0; i < portals.groupSize(type, g); i++) {
+                int x = portals.portalX(type, g, i);
+                if (x < 0) continue;
+                int cell = portals.portalY(type, g, i) * n + x;
+                portalCells[cell >>> 6] |= 1L << cell;
+            }
+        }
+    }
+}
@@ -0,0 +1,643 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computer player: Monte Carlo Tree Search over whole turns (move, shot, knife, skip), played with
+ * the same GameEngine rules as a human turn in PlayController.
+ *
+ * The search runs off the calling thread on its own fork/join pool, one tree per core (root
+ * parallelization: their root statistics are summed at the end), until the per-move time budget runs
+ * out. The trees meet in a shared TranspositionTable keyed by GameState.hash(): a new leaf whose
+ * position some tree (or an earlier move of the same game) has already played out enough is scored
+ * from the table instead of by another rollout, which matters with portals, where many move orders
+ * lead to the same position. Strength comes from playouts per second, so a playout does
+ * not allocate: trees are flat preallocated arrays, every worker replays the game on its own GameState
+ * copy (board, portals and distance fields are shared read-only), and rollouts walk the distance fields
+ * towards a key and the exit with some randomness instead of scanning the board.
+ *
+ * Rewards, rollouts and estimates are for a two-seat game (player 1 against player 2), so the bot only
+ * plays games of two players ({@link #supports}); with more seats a win by player 3 would count for player 2.
+ */
+public final class MctsBot {
+
+    public static final int DEFAULT_TIME_MILLIS = 1000;
+
+    // action codes: one turn of the current player
+    public static final int MOVE = 0;        // + Direction ordinal
+    public static final int SHOOT = 4;       // + Direction ordinal, then the turn ends
+    public static final int KNIFE_HERE = 8;  // own cell, then the turn ends
+    public static final int KNIFE = 9;       // + Direction ordinal (neighbour cell), then the turn ends
+    public static final int SKIP = 13;
+    static final int ACTIONS = 14;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private static final double EXPLORATION = 0.7;  // UCT constant for rewards in [0,1]
+    private static final int MIN_ROLLOUT_TURNS = 64; // then the position is estimated by distances
+    private static final int MAX_ROLLOUT_TURNS = 4096;
+    private static final int GREEDY_PERCENT = 90;   // rollout steps that follow the distance field
+    private static final double ESTIMATE_SCALE = 8; // turns of lead that make a 73% estimate
+    private static final int CARRIER_PENALTY = 8;   // extra turns to win back the key from its carrier
+    private static final double DECAY = 0.99;       // per turn: a sooner win is worth more than a later one
+    private static final int TREE_NODES = 1 << 17;  // per worker; when full, leaves are only rolled out
+    private static final int TABLE_ENTRIES = 1 << 18; // shared by the workers, 16 bytes each
+    private static final int TABLE_TRUST = 4;       // playouts behind a table entry before it replaces a rollout
+    private static final int FAR = Integer.MAX_VALUE;
+
+    /** Chosen action of one search. */
+    public static final class Result {
+        public final int action;
+        public final long playouts;
+        /** Average reward of the action for the bot's player (1 = sure win). */
+        public final double winRate;
+
+        Result(int action, long playouts, double winRate) {
+            this.action = action;
+            this.playouts = playouts;
+            this.winRate = winRate;
+        }
+    }
+
+    private final int threads;
+    private ForkJoinPool pool;
+    private volatile int timeMillis = DEFAULT_TIME_MILLIS;
+    private volatile Search current;
+    private final SplittableRandom seeds = new SplittableRandom();
+    private final TranspositionTable table = new TranspositionTable(TABLE_ENTRIES);
+    private long tableSetup; // setupKey of the positions in table
+
+    public MctsBot() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public MctsBot(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public void setTimeBudgetMillis(int millis) {
+        this.timeMillis = Math.max(1, millis);
+    }
+
+    public int getTimeBudgetMillis() {
+        return timeMillis;
+    }
+
+    /** Can the bot play this game? Only two-player games. */
+    public static boolean supports(GameState state) {
+        return state.playerCount() == 2;
+    }
+
+    /**
+     * Starts a search for the current player of state and returns at once. The state is copied
+     * here, on the calling thread; its board and portals must not be edited until the future completes
+     * (or {@link #cancel()} is called).
+     */
+    public CompletableFuture<Result> think(GameState state) {
+        checkSupported(state);
+        cancel();
+        Search s = new Search(state.copyForSimulation(), timeMillis, seeds.split(), table(state));
+        current = s;
+        return CompletableFuture.supplyAsync(s::run, pool());
+    }
+
+    /** Same search on the calling thread. */
+    public Result thinkNow(GameState state) {
+        checkSupported(state);
+        return new Search(state.copyForSimulation(), timeMillis, seeds.split(), table(state)).run();
+    }
+
+    /**
+     * The table, emptied if the root's setup differs from the one its entries were searched for:
+     * the hash covers only what play changes, so a result is valid while board, walls, exits,
+     * hospitals and portals stay the same (and the players who are not placed stay so).
+     */
+    private synchronized TranspositionTable table(GameState root) {
+        long key = setupKey(root);
+        if (key != tableSetup) {
+            table.clear();
+            tableSetup = key;
+        }
+        return table;
+    }
+
+    private static void checkSupported(GameState state) {
+        if (!supports(state)) {
+            throw new IllegalArgumentException("the bot plays two-player games, not " + state.playerCount());
+        }
+    }
+
+    /** Stops the running search early; its future still completes with the best action so far. */
+    public void cancel() {
+        Search s = current;
+        if (s != null) s.stopped = true;
+        current = null;
+    }
+
+    private static long setupKey(GameState s) {
+        Board b = s.getBoard();
+        long h = System.identityHashCode(b) * 31L + b.getWallVersion();
+        h = h * 31 + System.identityHashCode(s.entities);
+        h = h * 31 + s.entities.getVersion(EntityGrid.EXIT) * 65536L + s.entities.getVersion(EntityGrid.HOSPITAL);
+        h = h * 31 + groupsKey(s.portals, PortalNetwork.Type.PAIR);
+        return h * 31 + groupsKey(s.portals, PortalNetwork.Type.CYCLE);
+    }
+
+    private static long groupsKey(PortalNetwork portals, PortalNetwork.Type type) {
+        long h = portals.groupCount(type);
+        for (int g = 0; g < portals.groupCount(type); g++) {
+            for (int i = 0; i < portals.groupSize(type, g); i++) {
+                h = h * 31 + portals.portalX(type, g, i) * 65536L + portals.portalY(type, g, i);
+            }
+        }
+        return h;
+    }
+
+    private synchronized ForkJoinPool pool() {
+        if (pool == null) pool = new ForkJoinPool(threads);
+        return pool;
+    }
+
+    /** One bot move: the root state copy and what all workers share. */
+    private final class Search {
+        final GameState root;
+        final long deadline;
+        final SplittableRandom rnd;
+        final TranspositionTable table;
+        volatile boolean stopped;
+
+        Search(GameState root, int millis, SplittableRandom rnd, TranspositionTable table) {
+            this.root = root;
+            this.deadline = System.nanoTime() + millis * 1_000_000L;
+            this.rnd = rnd;
+            this.table = table;
+        }
+
+        Result run() {
+            int[] legal = new int[ACTIONS];
+            int count = legalActions(root, legal);
+            if (count == 1 || root.isGameOver()) return new Result(legal[0], 0, 0.5);
+
+            Shared shared = new Shared(root, table);
+            Tree[] trees = new Tree[threads];
+            for (int i = 0; i < threads; i++) trees[i] = new Tree(shared, rnd.split(), this);
+            ForkJoinTask.invokeAll(trees);
+
+            long[] visits = new long[ACTIONS];
+            double[] value = new double[ACTIONS];
+            long playouts = 0;
+            for (Tree t : trees) {
+                playouts += t.playouts;
+                t.addRootStats(visits, value);
+            }
+            int best = legal[0];
+            for (int i = 0; i < count; i++) {
+                int a = legal[i];
+                if (visits[a] > visits[best] || (visits[a] == visits[best] && value[a] > value[best])) best = a;
+            }
+            return new Result(best, playouts, visits[best] == 0 ? 0.5 : value[best] / visits[best]);
+        }
+
+        boolean timeLeft() {
+            return !stopped && System.nanoTime() < deadline;
+        }
+    }
+
+    /** Read-only data of one search, built once and used by all workers. */
+    static final class Shared {
+        final GameState root;
+        final Board board;
+        final MazeSearch search;
+        final TranspositionTable table;
+        final int[] exitField;  // null: no exit, nobody can win
+        final int[] winField;   // turns to win through the best key as the keys lie at the root, null if none does
+        final long keySignature; // of the root: winField holds while the game's keys are where they were
+        final int rolloutTurns; // both players, long enough for the one who needs most to get key and exit
+
+        Shared(GameState root, TranspositionTable table) {
+            this.root = root;
+            this.table = table;
+            this.board = root.getBoard();
+            board.corridors(); // built lazily: do it here, before workers read it concurrently
+            this.search = new MazeSearch(board, root.portals);
+            this.exitField = root.distances.field(DistanceFields.Target.EXIT);
+            this.winField = winField(root, board, search, exitField);
+            this.keySignature = root.keySignature();
+
+            int longest = 0;
+            if (winField != null) {
+                for (int i = 1; i <= root.playerCount(); i++) {
+                    GameState.PlayerState p = root.player(i);
+                    if (p.x() < 0) continue;
+                    int toWin = winField[board.cellOf(p.x(), p.y())];
+                    if (toWin >= 0) longest = Math.max(longest, toWin);
+                }
+            }
+            // 2 turns per own turn, plus slack for the random steps of the rollout policy
+            this.rolloutTurns = Math.max(MIN_ROLLOUT_TURNS, Math.min(MAX_ROLLOUT_TURNS, 3 * longest));
+        }
+
+        /** Turns from every cell to a key and on to the nearest exit (best key), null if no key leads out. */
+        private static int[] winField(GameState root, Board board, MazeSearch search, int[] exitField) {
+            if (exitField == null || root.keysOnBoard() == 0) return null;
+            long[] byExit = new long[root.keysOnBoard()];
+            int count = 0;
+            for (int i = 0; i < root.keyCount(); i++) {
+                if (root.keyX(i) < 0) continue;
+                int c = board.cellOf(root.keyX(i), root.keyY(i));
+                if (exitField[c] >= 0) byExit[count++] = ((long) exitField[c] << 32) | c;
+            }
+            if (count == 0) return null;
+            java.util.Arrays.sort(byExit, 0, count);
+            int[] keys = new int[count], starts = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = (int) byExit[i];
+                starts[i] = (int) (byExit[i] >>> 32);
+            }
+            int[] field = new int[board.getSize() * board.getSize()];
+            search.distancesTo(keys, starts, count, null, 0, field);
+            return field;
+        }
+    }
+
+    /**
+     * One worker's tree. Nodes are array slots, children of a node are contiguous; a node's value is
+     * the reward sum for the player who made its action, its hash that of the position after it.
+     */
+    static final class Tree extends RecursiveAction {
+        private final Shared shared;
+        private final Board board;
+        private final GameState game;
+        private final GameEngine engine;
+        private final SplittableRandom rnd;
+        private final Search owner;  // null when driven by hand (benchmarks)
+        private final int[] deltas = new int[4];
+        private final int[] legal = new int[ACTIONS];
+
+        private final int[] parent = new int[TREE_NODES];
+        private final int[] firstChild = new int[TREE_NODES];
+        private final byte[] childCount = new byte[TREE_NODES];
+        private final byte[] action = new byte[TREE_NODES];
+        private final byte[] actor = new byte[TREE_NODES];
+        private final int[] visits = new int[TREE_NODES];
+        private final double[] value = new double[TREE_NODES];
+        private final long[] hash = new long[TREE_NODES];
+        private int size = 1;
+
+        long playouts;
+        private int turns; // of the current playout
+
+        Tree(Shared shared, SplittableRandom rnd, Search owner) {
+            this.shared = shared;
+            this.board = shared.board;
+            this.game = shared.root.copyForSimulation();
+            this.engine = new GameEngine(game);
+            this.rnd = rnd;
+            this.owner = owner;
+            for (Direction d : DIRECTIONS) deltas[d.ordinal()] = board.cellDelta(d);
+            parent[0] = -1;
+            hash[0] = game.hash();
+        }
+
+        /** Tree over state for one thread without a time limit: call {@link #playout()} directly. */
+        Tree(GameState state, long seed) {
+            this(new Shared(state.copyForSimulation(), new TranspositionTable(TABLE_ENTRIES)), new SplittableRandom(seed), null);
+        }
+
+        @Override
+        protected void compute() {
+            while (owner.timeLeft()) playout();
+        }
+
+        /**
+         * Selection, expansion, rollout (or table lookup), backpropagation. Nodes get the reward discounted
+         * from the root; the table gets it discounted from each node's own position, so an entry means
+         * the same whichever way and at whatever depth a tree reaches the position.
+         */
+        void playout() {
+            game.copyRunStateFrom(shared.root);
+            turns = 0;
+            int node = 0;
+            while (!finished()) {
+                if (childCount[node] == 0) {
+                    if (node != 0 && visits[node] == 0) break; // new leaf: roll out from here first
+                    if (!expand(node)) break;
+                }
+                node = select(node);
+                apply(engine, game, action[node]);
+                turns++;
+                if (visits[node] == 0) hash[node] = game.hash();
+            }
+            int depth = turns;
+
+            double here; // reward of player 1 from the leaf's position
+            boolean known = false;
+            if (finished()) {
+                here = outcome();
+            } else {
+                long e = shared.table.probe(hash[node]);
+                known = TranspositionTable.visits(e) >= TABLE_TRUST;
+                here = known ? TranspositionTable.mean(e) : 0.5 + (rollout() - 0.5) * Math.pow(DECAY, turns - depth);
+            }
+            double reward1 = 0.5 + (here - 0.5) * Math.pow(DECAY, depth);
+
+            for (int v = node; v >= 0; v = parent[v]) {
+                visits[v]++;
+                value[v] += (actor[v] == 1) ? reward1 : 1 - reward1;
+                if (!known || v != node) shared.table.add(hash[v], here); // a table hit brings nothing new about the leaf
+                here = 0.5 + (here - 0.5) * DECAY;
+            }
+            playouts++;
+        }
+
+        void addRootStats(long[] v, double[] w) {
+            int first = firstChild[0];
+            for (int c = first; c < first + childCount[0]; c++) {
+                v[action[c]] += visits[c];
+                w[action[c]] += value[c];
+            }
+        }
+
+        private boolean expand(int node) {
+            int k = legalActions(game, legal);
+            if (size + k > TREE_NODES) return false;
+            firstChild[node] = size;
+            childCount[node] = (byte) k;
+            byte mover = (byte) game.currentPlayerIndex();
+            for (int i = 0; i < k; i++, size++) {
+                parent[size] = node;
+                action[size] = (byte) legal[i];
+                actor[size] = mover;
+                childCount[size] = 0;
+                visits[size] = 0;
+                value[size] = 0;
+            }
+            return true;
+        }
+
+        /** UCT; unvisited children first. */
+        private int select(int node) {
+            int first = firstChild[node];
+            int end = first + childCount[node];
+            double logN = Math.log(visits[node]);
+            int best = first;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int c = first; c < end; c++) {
+                int n = visits[c];
+                if (n == 0) return c;
+                double score = value[c] / n + EXPLORATION * Math.sqrt(logN / n);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = c;
+                }
+            }
+            return best;
+        }
+
+        private boolean finished() {
+            return game.isGameOver() || game.aliveCount() == 0;
+        }
+
+        /** Reward of player 1 in a finished game. */
+        private double outcome() {
+            if (!game.isGameOver()) return 0.5;
+            return (game.winnerIndex() == 1) ? 1 : 0;
+        }
+
+        private double rollout() {
+            for (int turn = 0; turn < shared.rolloutTurns; turn++, turns++) {
+                if (finished()) return outcome();
+                rolloutTurn();
+            }
+            return finished() ? outcome() : estimate();
+        }
+
+        /** Cheap policy: shoot what is in sight, knife what is next door, mostly walk the shortest way to the goal, otherwise wander. */
+        private void rolloutTurn() {
+            GameState.PlayerState p = game.currentPlayer();
+            int idx = game.currentPlayerIndex();
+            if (p.x() < 0 || p.y() < 0) {
+                engine.endTurn();
+                return;
+            }
+
+            if (p.shotsLeft() > 0 && rnd.nextInt(4) != 0) {
+                for (int d = 0; d < 4; d++) {
+                    if (shotHits(game, p, DIRECTIONS[d])) {
+                        engine.performShoot(p, idx, DIRECTIONS[d]);
+                        engine.endTurn();
+                        return;
+                    }
+                }
+            }
+
+            int cell = board.cellOf(p.x(), p.y());
+            int mask = board.moveMask(cell);
+            if (rnd.nextInt(4) != 0) {
+                // knife next door: the only way past a minotaur in a corridor the shot cannot see
+                for (int d = 0; d < 4; d++) {
+                    Direction dir = DIRECTIONS[d];
+                    if ((mask & dir.mask) != 0 && knifeTarget(game, p, p.x() + dir.dx, p.y() + dir.dy)) {
+                        engine.performKnife(p, idx, p.x() + dir.dx, p.y() + dir.dy);
+                        engine.endTurn();
+                        return;
+                    }
+                }
+            }
+
+            int step = -1;
+            if (rnd.nextInt(100) < GREEDY_PERCENT) step = greedyStep(p, cell, mask);
+            if (step == DistanceFields.STEP_SKIP || (step < 0 && mask == 0)) {
+                engine.endTurn();
+                return;
+            }
+            if (step < 0) {
+                int pick = rnd.nextInt(Integer.bitCount(mask));
+                for (int d = 0; d < 4; d++) {
+                    if ((mask & (1 << d)) != 0 && pick-- == 0) {
+                        step = d;
+                        break;
+                    }
+                }
+            }
+            engine.performMove(p, idx, DIRECTIONS[step]);
+        }
+
+        /**
+         * Step (or end-turn teleport) that gets closer to the player's goal and not onto a minotaur, or -1.
+         * Goal: the exit with a key, else the way to a key and on to the exit; with no key on the board, the
+         * other player's key is hunted by straight distance.
+         */
+        private int greedyStep(GameState.PlayerState p, int cell, int mask) {
+            GameState.PlayerState other = (p == game.p1) ? game.p2 : game.p1;
+            int[] f;
+            if (p.hasKey()) f = shared.exitField;
+            else if (game.keySignature() == shared.keySignature) f = shared.winField;
+            else if (game.keysOnBoard() == 0) return other.hasKey() ? huntStep(p, other, mask) : -1;
+            else f = null;
+            if (f == null) return -1;
+
+            int best = -1;
+            int bestDist = (f[cell] >= 0) ? f[cell] : FAR;
+            for (int d = 0; d < 4; d++) {
+                if ((mask & (1 << d)) == 0) continue;
+                int to = shared.search.landing(cell + deltas[d]);
+                int dist = f[to];
+                if (dist < 0 || dist >= bestDist || minotaurIn(to)) continue;
+                bestDist = dist;
+                best = d;
+            }
+            int dest = shared.search.portalDestination(cell);
+            if (dest >= 0 && f[dest] >= 0 && f[dest] < bestDist && !minotaurIn(dest)) best = DistanceFields.STEP_SKIP;
+            return best;
+        }
+
+        private boolean minotaurIn(int cell) {
+            return game.minotaurAt(board.cellX(cell), board.cellY(cell)) >= 0;
+        }
+
+        private int huntStep(GameState.PlayerState p, GameState.PlayerState target, int mask) {
+            int dx = Integer.signum(target.x() - p.x());
+            int dy = Integer.signum(target.y() - p.y());
+            for (int d = 0; d < 4; d++) {
+                Direction dir = DIRECTIONS[d];
+                if ((mask & dir.mask) != 0 && ((dir.dx != 0 && dir.dx == dx) || (dir.dy != 0 && dir.dy == dy))) return d;
+            }
+            return -1;
+        }
+
+        /**
+         * Reward of player 1 for an unfinished rollout: who is closer to winning. The leader's remaining
+         * turns are added to the playout length, so their progress still counts when the estimate saturates.
+         */
+        private double estimate() {
+            int r1 = turnsToWin(game.p1);
+            int r2 = turnsToWin(game.p2);
+            if (r1 == r2) return 0.5;
+            turns += 2 * Math.min(Math.min(r1, r2), MAX_ROLLOUT_TURNS);
+            if (r1 == FAR) return 0.1;
+            if (r2 == FAR) return 0.9;
+            return 1 / (1 + Math.exp((r1 - r2) / ESTIMATE_SCALE));
+        }
+
+        /** Rough turns to key and exit, {@link #FAR} if the player cannot win from here. */
+        private int turnsToWin(GameState.PlayerState p) {
+            int[] exit = shared.exitField;
+            if (exit == null || !p.isAlive() || p.x() < 0) return FAR;
+            int cell = board.cellOf(p.x(), p.y());
+            if (p.hasKey()) return (exit[cell] >= 0) ? exit[cell] : FAR;
+            if (game.keySignature() == shared.keySignature) {
+                int[] win = shared.winField;
+                return (win != null && win[cell] >= 0) ? win[cell] : FAR;
+            }
+            if (game.keysOnBoard() == 0) {
+                // the other player carries one: catch them, then their way to the exit
+                GameState.PlayerState carrier = (p == game.p1) ? game.p2 : game.p1;
+                if (!carrier.hasKey() || !carrier.isAlive() || carrier.x() < 0) return FAR;
+                int at = board.cellOf(carrier.x(), carrier.y());
+                if (exit[at] < 0) return FAR;
+                return Math.abs(p.x() - carrier.x()) + Math.abs(p.y() - carrier.y()) + CARRIER_PENALTY + exit[at];
+            }
+
+            // keys moved since the root (dropped by a dead player): straight distance to the best of them
+            int best = FAR;
+            for (int i = 0; i < game.keyCount(); i++) {
+                int x = game.keyX(i), y = game.keyY(i);
+                if (x < 0) continue;
+                int toExit = exit[board.cellOf(x, y)];
+                if (toExit >= 0) best = Math.min(best, Math.abs(p.x() - x) + Math.abs(p.y() - y) + toExit);
+            }
+            return best;
+        }
+    }
+
+    /** Legal actions of the current player (only shots and knife strikes that hit something); SKIP is always last. */
+    static int legalActions(GameState s, int[] out) {
+        GameState.PlayerState p = s.currentPlayer();
+        int k = 0;
+        if (p.x() >= 0 && p.y() >= 0 && !s.isGameOver()) {
+            Board board = s.getBoard();
+            int mask = board.moveMask(board.cellOf(p.x(), p.y()));
+            for (int d = 0; d < 4; d++) {
+                if ((mask & (1 << d)) != 0) out[k++] = MOVE + d;
+            }
+            if (p.shotsLeft() > 0) {
+                for (int d = 0; d < 4; d++) {
+                    if (shotHits(s, p, DIRECTIONS[d])) out[k++] = SHOOT + d;
+                }
+            }
+            if (knifeTarget(s, p, p.x(), p.y())) out[k++] = KNIFE_HERE;
+            for (int d = 0; d < 4; d++) {
+                Direction dir = DIRECTIONS[d];
+                if ((mask & dir.mask) != 0 && knifeTarget(s, p, p.x() + dir.dx, p.y() + dir.dy)) out[k++] = KNIFE + d;
+            }
+        }
+        out[k++] = SKIP;
+        return k;
+    }
+
+    /** Plays action as the current player's turn. */
+    static void apply(GameEngine engine, GameState s, int action) {
+        GameState.PlayerState p = s.currentPlayer();
+        int idx = s.currentPlayerIndex();
+        if (action < SHOOT) {
+            engine.performMove(p, idx, DIRECTIONS[action - MOVE]); // an open side: the turn is spent
+            return;
+        }
+        if (action < KNIFE_HERE) {
+            engine.performShoot(p, idx, DIRECTIONS[action - SHOOT]);
+        } else if (action == KNIFE_HERE) {
+            engine.performKnife(p, idx, p.x(), p.y());
+        } else if (action < SKIP) {
+            Direction d = DIRECTIONS[action - KNIFE];
+            engine.performKnife(p, idx, p.x() + d.dx, p.y() + d.dy);
+        }
+        engine.endTurn();
+    }
+
+    /** Text for the status bar, e.g. "MOVE RIGHT". */
+    public static String describe(int action) {
+        if (action < SHOOT) return "MOVE " + DIRECTIONS[action - MOVE];
+        if (action < KNIFE_HERE) return "SHOOT " + DIRECTIONS[action - SHOOT];
+        if (action == KNIFE_HERE) return "KNIFE";
+        if (action < SKIP) return "KNIFE " + DIRECTIONS[action - KNIFE];
+        return "SKIP";
+    }
+
+    /** Would a shot from p along dir hit a minotaur or the other player (same ray rule as GameEngine)? */
+    private static boolean shotHits(GameState s, GameState.PlayerState p, Direction dir) {
+        int range = s.getBoard().corridors().distance(p.x(), p.y(), dir);
+        if (range <= 0) return false;
+        if (range <= s.minotaurCount()) {
+            for (int d = 1; d <= range; d++) {
+                if (s.minotaurAt(p.x() + dir.dx * d, p.y() + dir.dy * d) >= 0) return true;
+            }
+        } else {
+            for (int m = 0; m < s.minotaurCount(); m++) {
+                if (s.minotaurX(m) >= 0 && onRay(p, dir, range, s.minotaurX(m), s.minotaurY(m))) return true;
+            }
+        }
+        GameState.PlayerState other = (p == s.p1) ? s.p2 : s.p1;
+        return other.isAlive() && other.x() >= 0 && onRay(p, dir, range, other.x(), other.y());
+    }
+
+    private static boolean onRay(GameState.PlayerState from, Direction dir, int range, int tx, int ty) {
+        int d;
+        if (dir.dx != 0) {
+            if (ty != from.y()) return false;
+            d = (tx - from.x()) * dir.dx;
+        } else {
+            if (tx != from.x()) return false;
+            d = (ty - from.y()) * dir.dy;
+        }
+        return d > 0 && d <= range;
+    }
+
+    private static boolean knifeTarget(GameState s, GameState.PlayerState p, int x, int y) {
+        if (s.minotaurAt(x, y) >= 0) return true;
+        GameState.PlayerState other = (p == s.p1) ? s.p2 : s.p1;
+        return other.isAlive() && other.x() == x && other.y() == y;
+    }
+}
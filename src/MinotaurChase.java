@@ -0,0 +1,281 @@
+import java.util.Arrays;
+
+/**
+ * Next-hop table for the chasing minotaurs: hop[cell] = first move of a way from cell to a living player
+ * (moves and portals as in MazeSearch), so each minotaur's step is one array read. The table does not
+ * depend on where the minotaurs are, so one table serves all of them: {@link #update} once per turn,
+ * then {@link #stepFrom} for every minotaur.
+ *
+ * The table is a forest of moves leading into the players' cells, built once by a multi-source reverse BFS
+ * from the players and then kept up as they move: a player who makes one turn from a to b leaves a behind
+ * with the move towards b and b becomes a root, so every way that led to a now ends one turn later in b.
+ * That is two writes per turn, and in a maze without loops the ways stay the shortest ones. With loops,
+ * several players or portals a way may grow longer than needed, so a new table is searched in the
+ * background, at most {@link #budget} cells (and 1/{@value #REFRESH_TURNS} of the board) per turn, and
+ * when it is done the moves made meanwhile are replayed onto it before it replaces the old one.
+ * A player who appears, dies or jumps (respawn) restarts that search; until it is done the minotaur still
+ * walks to where the player was. Only the first table of a game is searched in one go, so the minotaur
+ * moves from its first turn on. Walls and portals do not change in PLAY; if they do, everything is rebuilt.
+ *
+ * Moves depend on the order of turns since the first table, so the table belongs to one game: GameState
+ * resets it when a game starts, and a replay from the start state makes the same moves.
+ */
+public final class MinotaurChase {
+
+    /** Cells processed per minotaur turn by default. */
+    public static final int DEFAULT_BUDGET = 1 << 14;
+
+    // a background search spreads over at least this many turns, so small boards are not searched every turn
+    private static final int REFRESH_TURNS = 16;
+
+    /** Results of {@link #stepFrom}, besides Direction ordinals (same codes as DistanceFields). */
+    public static final int STEP_NONE = DistanceFields.STEP_NONE;
+    public static final int STEP_SKIP = DistanceFields.STEP_SKIP;
+
+    private final GameState state;
+    private int budget = DEFAULT_BUDGET;
+
+    private Board board;
+    private int wallVersion;
+    private MazeSearch search;
+    private final int[] deltas = new int[4];
+
+    // A cell's entry is valid only if its mark equals the table's generation, so starting
+    // a BFS does not clear anything and no turn costs O(cells).
+    private byte[] hop;      // table in use, null until the first BFS completes
+    private int[] hopMark;
+    private int hopGen;
+    private byte[] nextHop;  // table being built
+    private int[] nextMark;  // also the visited set of the BFS in progress
+    private int gen;
+    private int[] queue;
+    private int head, tail;
+    private boolean building;
+    private int refreshStep; // cells per turn of the background search
+
+    private int[] tracked = new int[0]; // tracked[i] = cell of living player i the table leads to, -1 none
+    private boolean stale;              // players moved since the table (or the one being built) was started
+    private int[] moves = new int[16];  // (from, to, step) of the moves made while the new table is built
+    private int moveCount;
+
+    public MinotaurChase(GameState state) {
+        this.state = state;
+    }
+
+    public void setBudget(int cellsPerTurn) {
+        this.budget = Math.max(1, cellsPerTurn);
+    }
+
+    /** Forgets the table (new game, board or portals changed). */
+    public void reset() {
+        board = null;
+        search = null;
+        hop = null;
+        building = false;
+    }
+
+    /** {@link #update} and {@link #stepFrom} in one, for a single minotaur. */
+    public int nextStep(int cell) {
+        update();
+        return stepFrom(cell);
+    }
+
+    /** Brings the table up to where the players are now and searches on; once per minotaur turn. */
+    public void update() {
+        Board b = state.getBoard();
+        if (b != board || b.getWallVersion() != wallVersion) attach(b);
+
+        if (hop == null) {
+            // first table of the game (or the first living player): searched at once
+            startBuild();
+            if (building) advance(Integer.MAX_VALUE);
+        } else {
+            followPlayers();
+        }
+        if (!building && stale && hop != null) startBuild();
+        if (building) advance(Math.min(budget, refreshStep));
+    }
+
+    /**
+     * A minotaur's move from cell for this turn (after {@link #update}): a Direction ordinal, {@link #STEP_SKIP}
+     * (stay on the portal and teleport) or {@link #STEP_NONE} (no living player reachable).
+     */
+    public int stepFrom(int cell) {
+        return (hop != null && hopMark[cell] == hopGen) ? hop[cell] : STEP_NONE;
+    }
+
+    /** Cell where the minotaur ends up after a step onto cell (teleport on landing). */
+    int landing(int cell) {
+        return search.landing(cell);
+    }
+
+    int portalDestination(int cell) {
+        return search.portalDestination(cell);
+    }
+
+    private void attach(Board b) {
+        board = b;
+        wallVersion = b.getWallVersion();
+        search = new MazeSearch(b, state.portals);
+        for (Direction d : Direction.values()) deltas[d.ordinal()] = b.cellDelta(d);
+        int cells = b.getSize() * b.getSize();
+        if (queue == null || queue.length != cells) {
+            queue = new int[cells];
+            nextHop = new byte[cells];
+            nextMark = new int[cells];
+            hopMark = new int[cells];
+            gen = 0;
+        }
+        refreshStep = Math.max(1, cells / REFRESH_TURNS);
+        hop = null;
+        building = false;
+    }
+
+    /**
+     * Brings the table in use up to the players' cells: a turn from the tracked cell is written into it
+     * (and kept for the table being built), anything else restarts the background search.
+     */
+    private void followPlayers() {
+        int count = state.playerCount();
+        boolean jumped = false;
+        if (tracked.length != count + 1) {
+            tracked = Arrays.copyOf(tracked, count + 1);
+            jumped = true;
+        }
+        for (int i = 1; i <= count; i++) {
+            int to = livingCell(state.player(i));
+            int from = tracked[i];
+            if (to == from) continue;
+            tracked[i] = to;
+            stale = true;
+            int step = (from >= 0 && to >= 0) ? stepBetween(from, to) : STEP_NONE;
+            if (step == STEP_NONE) {
+                jumped = true;
+                continue;
+            }
+            moveRoot(hop, hopMark, hopGen, from, to, step);
+            if (building) {
+                if (moveCount + 3 > moves.length) moves = Arrays.copyOf(moves, moves.length * 2);
+                moves[moveCount++] = from;
+                moves[moveCount++] = to;
+                moves[moveCount++] = step;
+            }
+        }
+        keepRoots(hop, hopMark, hopGen);
+        if (jumped) {
+            building = false; // started again below, from where everybody is now
+            stale = true;
+        }
+    }
+
+    /** Move of one turn from cell a to cell b (a step landing in b, or the end-turn teleport), or STEP_NONE. */
+    private int stepBetween(int a, int b) {
+        int mask = board.moveMask(a);
+        for (int d = 0; d < 4; d++) {
+            if ((mask & (1 << d)) != 0 && search.landing(a + deltas[d]) == b) return d;
+        }
+        return (search.portalDestination(a) == b) ? STEP_SKIP : STEP_NONE;
+    }
+
+    // a player left from for to: the ways into from go on to to, where they end
+    private static void moveRoot(byte[] table, int[] mark, int g, int from, int to, int step) {
+        table[from] = (byte) step;
+        mark[from] = g;
+        table[to] = (byte) STEP_NONE;
+        mark[to] = g;
+    }
+
+    // a player still in a cell somebody left keeps it a root
+    private void keepRoots(byte[] table, int[] mark, int g) {
+        for (int i = 1; i < tracked.length; i++) {
+            int c = tracked[i];
+            if (c < 0) continue;
+            table[c] = (byte) STEP_NONE;
+            mark[c] = g;
+        }
+    }
+
+    private int livingCell(GameState.PlayerState p) {
+        if (!p.isAlive() || p.x() < 0 || p.y() < 0) return -1;
+        return board.cellOf(p.x(), p.y());
+    }
+
+    private void startBuild() {
+        if (gen == Integer.MAX_VALUE) {
+            Arrays.fill(nextMark, 0);
+            Arrays.fill(hopMark, 0);
+            gen = 0;
+            hop = null;
+        }
+        gen++;
+        head = 0;
+        tail = 0;
+        moveCount = 0;
+        stale = false;
+        int count = state.playerCount();
+        if (tracked.length != count + 1) tracked = new int[count + 1];
+        for (int i = 1; i <= count; i++) {
+            int c = livingCell(state.player(i));
+            tracked[i] = c;
+            if (c >= 0) addSource(c);
+        }
+        building = tail > 0;
+        if (!building) hop = null; // nobody to chase
+    }
+
+    private void addSource(int c) {
+        if (nextMark[c] == gen) return;
+        nextMark[c] = gen;
+        nextHop[c] = (byte) STEP_NONE; // already there
+        queue[tail++] = c;
+    }
+
+    /** Reverse BFS as in MazeSearch.distancesTo, recording for each reached cell the move that leads on. */
+    private void advance(int cells) {
+        int end = (int) Math.min((long) head + cells, Integer.MAX_VALUE);
+        while (head < tail && head < end) {
+            int v = queue[head++];
+
+            // stepping onto v and staying there
+            if (search.portalDestination(v) < 0) relaxNeighbours(v);
+
+            // stepping onto (or waiting on) the portal that leads to v
+            int src = search.portalSource(v);
+            if (src >= 0) {
+                if (nextMark[src] != gen) {
+                    nextMark[src] = gen;
+                    nextHop[src] = (byte) STEP_SKIP;
+                    queue[tail++] = src;
+                }
+                relaxNeighbours(src);
+            }
+        }
+        if (head == tail) {
+            // the players went on while it was built: same moves as the table in use got
+            for (int i = 0; i < moveCount; i += 3) moveRoot(nextHop, nextMark, gen, moves[i], moves[i + 1], moves[i + 2]);
+            keepRoots(nextHop, nextMark, gen);
+            moveCount = 0;
+
+            byte[] done = nextHop;
+            int[] doneMark = nextMark;
+            nextHop = (hop != null) ? hop : new byte[done.length];
+            nextMark = hopMark;
+            hop = done;
+            hopMark = doneMark;
+            hopGen = gen;
+            building = false;
+        }
+    }
+
+    private void relaxNeighbours(int cell) {
+        int mask = board.moveMask(cell);
+        for (int d = 0; d < 4; d++) {
+            if ((mask & (1 << d)) == 0) continue;
+            int u = cell + deltas[d];
+            if (nextMark[u] == gen) continue;
+            nextMark[u] = gen;
+            nextHop[u] = (byte) (d ^ 1); // from u back towards cell: UP<->DOWN, LEFT<->RIGHT
+            queue[tail++] = u;
+        }
+    }
+}
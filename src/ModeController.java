@@ -5,5 +5,11 @@ public interface ModeController {
     default void mouseMoved(BoardPanel panel, int mx, int my) {}
     default void mouseExited(BoardPanel panel) {}
     default void mouseClicked(BoardPanel panel, MouseEvent e) {}
+    default void mousePressed(BoardPanel panel, MouseEvent e) {}
+    default void mouseDragged(BoardPanel panel, MouseEvent e) {}
+    default void mouseReleased(BoardPanel panel, MouseEvent e) {}
     default void keyPressed(BoardPanel panel, KeyEvent e) {}
+
+    /** The mode or board changed under a drag: forget it (the panel closes its undo step). */
+    default void cancelDrag(BoardPanel panel) {}
 }
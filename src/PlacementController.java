@@ -14,33 +14,69 @@ public final class PlacementController implements ModeController {
         panel.setHoverEdge(null);
     }
 
+    // правая кнопка: стирание, с перетаскиванием — по всем клеткам под курсором (одним шагом отмены)
+    private boolean erasing;
+    private int lastErased = -1;
+
     @Override
     public void mouseClicked(BoardPanel panel, MouseEvent e) {
-        if (!panel.hasBoard()) return;
+        if (!panel.hasBoard() || !SwingUtilities.isLeftMouseButton(e)) return;
 
         GridMetrics gm = panel.metrics();
         if (gm == null) return;
 
-        int[] cell = panel.cellAt(e.getX(), e.getY(), gm);
-        if (cell == null) return;
-
-        int x = cell[0], y = cell[1];
+        int cell = panel.cellIndexAt(e.getX(), e.getY(), gm);
+        if (cell < 0) return;
 
-        GameState state = panel.state();
+        int x = cell % gm.n, y = cell / gm.n;
 
-        if (SwingUtilities.isRightMouseButton(e)) {
-            panel.eraseAtCell(x, y);
-            panel.status("Erased at cell: (" + x + "," + y + ")");
-        } else {
-            PlacementTool placed = state.getPlacementTool();
-            if (panel.placeAtCell(x, y)) {
-                PlacementTool next = state.advancePlacementTool();
-                if (next != placed) panel.pushPlacementToolToUI(next);
-                panel.status("Placed " + placed + " at (" + x + "," + y + "). Next: " + next);
-            }
+        String placed = panel.state().placementToolName();
+        if (panel.placeAtCellAndAdvance(x, y)) {
+            panel.status(panel.withAnalysis("Placed " + placed + " at (" + x + "," + y + "). Next: " + panel.state().placementToolName()));
         }
 
-        panel.repaint();
         panel.requestFocusInWindow();
     }
+
+    @Override
+    public void mousePressed(BoardPanel panel, MouseEvent e) {
+        if (!panel.hasBoard() || !SwingUtilities.isRightMouseButton(e)) return;
+
+        erasing = true;
+        lastErased = -1;
+        panel.beginEdit();
+        eraseAt(panel, e.getX(), e.getY());
+        panel.requestFocusInWindow();
+    }
+
+    @Override
+    public void mouseDragged(BoardPanel panel, MouseEvent e) {
+        if (erasing) eraseAt(panel, e.getX(), e.getY());
+    }
+
+    @Override
+    public void mouseReleased(BoardPanel panel, MouseEvent e) {
+        if (!erasing || !SwingUtilities.isRightMouseButton(e)) return;
+        erasing = false;
+        panel.endEdit();
+    }
+
+    @Override
+    public void cancelDrag(BoardPanel panel) {
+        erasing = false;
+        lastErased = -1;
+    }
+
+    private void eraseAt(BoardPanel panel, int mx, int my) {
+        GridMetrics gm = panel.metrics();
+        if (gm == null) return;
+
+        int cell = panel.cellIndexAt(mx, my, gm);
+        if (cell < 0 || cell == lastErased) return;
+        lastErased = cell;
+
+        int x = cell % gm.n, y = cell / gm.n;
+        panel.eraseAtCellRecorded(x, y);
+        panel.status(panel.withAnalysis("Erased at cell: (" + x + "," + y + ")"));
+    }
 }
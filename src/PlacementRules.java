@@ -0,0 +1,78 @@
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/**
+ * Editor placement rules as a table built once: for every PlacementTool, the EntityGrid bits that must
+ * not be in the target cell, and the message for each rule it breaks. A placement is checked with one
+ * GameState.cellMask lookup and one AND, whatever the number of entities on the map; the messages are
+ * only looked at when the check fails, in the order the rules are listed below.
+ */
+public final class PlacementRules {
+
+    private static final PlacementTool[] TOOLS = PlacementTool.values();
+    private static final int ENTITIES = EntityGrid.KEY | EntityGrid.EXIT | EntityGrid.HOSPITAL
+            | EntityGrid.MINOTAUR | EntityGrid.PLAYER;
+
+    private static final int[] forbidden = new int[TOOLS.length];
+    private static final int[][] ruleMasks = new int[TOOLS.length][0];
+    private static final String[][] ruleMessages = new String[TOOLS.length][0];
+
+    static {
+        EnumSet<PlacementTool> portals = EnumSet.of(PlacementTool.PORTAL_PAIR, PlacementTool.PORTAL_CYCLE);
+        EnumSet<PlacementTool> players = EnumSet.of(PlacementTool.PLAYER);
+        String special = "Нельзя ставить ключ/выход/больницу в одну клетку.";
+
+        rule(portals, ENTITIES, "Нельзя ставить портал в клетку с сущностями/игроками.");
+        rule(EnumSet.complementOf(portals), EntityGrid.PORTAL, "Нельзя ставить сущности/игроков в клетку с порталом.");
+        // key/exit/hospital mutually exclusive
+        rule(EnumSet.of(PlacementTool.KEY), EntityGrid.EXIT | EntityGrid.HOSPITAL, special);
+        rule(EnumSet.of(PlacementTool.EXIT), EntityGrid.KEY | EntityGrid.HOSPITAL, special);
+        rule(EnumSet.of(PlacementTool.HOSPITAL), EntityGrid.KEY | EntityGrid.EXIT, special);
+        // players <-> minotaur нельзя вместе
+        rule(EnumSet.of(PlacementTool.MINOTAUR), EntityGrid.PLAYER, "Нельзя ставить минотавра в клетку с игроком.");
+        rule(players, EntityGrid.MINOTAUR, "Нельзя ставить игрока в клетку с минотавром.");
+        // players нельзя на ключ
+        rule(players, EntityGrid.KEY, "Нельзя ставить игрока на ключ.");
+        // ключ/выход под минотавром: SolvabilityChecker считает его клетку непроходимой и не пустил бы в игру
+        rule(EnumSet.of(PlacementTool.KEY, PlacementTool.EXIT), EntityGrid.MINOTAUR,
+                "Нельзя ставить ключ/выход в клетку с минотавром.");
+        rule(EnumSet.of(PlacementTool.MINOTAUR), EntityGrid.KEY | EntityGrid.EXIT,
+                "Нельзя ставить минотавра на ключ/выход.");
+        rule(portals, EntityGrid.PORTAL, "Клетка уже занята порталом.");
+    }
+
+    private PlacementRules() {
+    }
+
+    /** May tool be placed into a cell holding cellMask (GameState.cellMask)? */
+    public static boolean allows(PlacementTool tool, int cellMask) {
+        return (cellMask & forbidden[tool.ordinal()]) == 0;
+    }
+
+    /** Null if tool may be placed into a cell holding cellMask, else the message of the first rule it breaks. */
+    public static String check(PlacementTool tool, int cellMask) {
+        int t = tool.ordinal();
+        if ((cellMask & forbidden[t]) == 0) return null;
+        int[] masks = ruleMasks[t];
+        int i = 0;
+        while ((cellMask & masks[i]) == 0) i++;
+        return ruleMessages[t][i];
+    }
+
+    /** Bits a cell must not hold for tool to go there. */
+    public static int forbidden(PlacementTool tool) {
+        return forbidden[tool.ordinal()];
+    }
+
+    private static void rule(EnumSet<PlacementTool> tools, int mask, String message) {
+        for (PlacementTool tool : tools) {
+            int t = tool.ordinal();
+            forbidden[t] |= mask;
+            int k = ruleMasks[t].length;
+            ruleMasks[t] = Arrays.copyOf(ruleMasks[t], k + 1);
+            ruleMessages[t] = Arrays.copyOf(ruleMessages[t], k + 1);
+            ruleMasks[t][k] = mask;
+            ruleMessages[t][k] = message;
+        }
+    }
+}
@@ -4,7 +4,6 @@ public enum PlacementTool {
     HOSPITAL,
     MINOTAUR,
     PORTAL_PAIR,
-    PORTAL_CYCLE3,
-    PLAYER_1,
-    PLAYER_2
+    PORTAL_CYCLE,
+    PLAYER // номер игрока — GameState.getPlacementPlayer()
 }
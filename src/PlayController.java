@@ -24,15 +24,17 @@ public final class PlayController implements ModeController {
         if (!panel.hasBoard()) return;
 
         GameState state = panel.state();
-        if (state.gameOver) {
-            panel.status(state.gameOverMessage);
+        if (state.isGameOver()) {
+            panel.status(state.gameOverMessage());
             return;
         }
 
+        if (panel.isBotTurn()) return; // ждём ход бота
+
         GameState.PlayerState p = state.currentPlayer();
-        int idx = state.currentPlayerIndex;
+        int idx = state.currentPlayerIndex();
 
-        if (p.x < 0 || p.y < 0) {
+        if (p.x() < 0 || p.y() < 0) {
             panel.status("У текущего игрока нет стартовой позиции");
             return;
         }
@@ -46,7 +48,7 @@ public final class PlayController implements ModeController {
 
         // E: нож на своей клетке
         if (e.getKeyCode() == KeyEvent.VK_E) {
-            panel.performKnife(p, idx, p.x, p.y, "(self)");
+            panel.performKnife(p, idx, p.x(), p.y());
             panel.endTurn();
             return;
         }
@@ -73,13 +75,14 @@ public final class PlayController implements ModeController {
 
         // Ctrl + направление = нож в соседнюю клетку
         if (e.isControlDown()) {
-            if (!state.getBoard().canMove(p.x, p.y, dir)) {
+            if (!state.getBoard().canMove(p.x(), p.y(), dir)) {
                 panel.status("Knife blocked by wall/border");
                 panel.endTurn();
                 return;
             }
-            int[] target = state.getBoard().move(p.x, p.y, dir);
-            panel.performKnife(p, idx, target[0], target[1], "(adjacent)");
+            Board board = state.getBoard();
+            int target = board.moveCell(board.cellOf(p.x(), p.y()), dir);
+            panel.performKnife(p, idx, board.cellX(target), board.cellY(target));
             panel.endTurn();
             return;
         }
@@ -0,0 +1,388 @@
+import java.util.Arrays;
+
+/**
+ * Editor analysis of the portals: turns between entities along portal-aware shortest paths, and
+ * portals that do not work. Walls and portals follow the engine rules (see MazeSearch); minotaurs
+ * are not obstacles here, since they may move.
+ *
+ * The graph (move masks plus the portal network) is walked by one MazeSearch kept between runs.
+ * Every placed entity has a forward distance field, the exits also a reverse one (for dead ends);
+ * keys, exits, hospitals and minotaurs, of which a map may have many, count from the nearest one
+ * (one multi-source field).
+ * Queries bring the analysis up to date first, which costs nothing while walls, portals and entities
+ * stay put. Otherwise the placed portals are compared with the previous run, and the fields are
+ * repaired around the portals that changed ({@link MazeSearch#repairFrom}): placing or removing a portal
+ * costs the cells whose distance it changes, not the board. A moved entity (a key or minotaur moved,
+ * an exit or hospital added or removed) searches its own field again; a wall change searches everything again.
+ */
+public final class PortalAnalysis {
+
+    public enum Entity { P1, P2, KEY, EXIT, HOSPITAL, MINOTAUR }
+
+    public static final int UNREACHABLE = MazeSearch.UNREACHABLE;
+
+    // portal flags, see portalFlags()
+    public static final int NO_DESTINATION = 1; // the next portal of the group is not placed
+    public static final int WALLED_IN = 2;      // destination is closed on all four sides
+    public static final int UNUSED = 4;         // no player can get onto it
+    public static final int DEAD_END = 8;       // the exit cannot be reached from the destination
+
+    private static final Entity[] ENTITIES = Entity.values();
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final GameState state;
+
+    private Board board;
+    private int wallVersion;
+    private int portalVersion;
+    private MazeSearch search;
+
+    private final int[][] from = new int[ENTITIES.length][]; // forward field by source entity
+    private final int[] fromCell = new int[ENTITIES.length]; // players: source of the field, -1 = not placed
+    private final int[] fromVersion = new int[ENTITIES.length]; // exits / hospitals: EntityGrid version instead
+    private final int[][] roots = new int[ENTITIES.length][]; // sources of the field (one cell, or every exit...)
+    private final int[] rootCount = new int[ENTITIES.length]; // 0 = not placed
+    private int[] toExit;
+    private boolean toExitValid;
+
+    // placed portals of the last run, sorted: (cell << 32) | (destination + 1)
+    private long[] known = new long[0];
+    private int knownCount;
+    private long[] scratch = new long[0];
+
+    // portals that changed since the last run: cell, old and new destination (-1 = none)
+    private int[] changed = new int[0];
+    private int changedCount;
+
+    // flagged portals, sorted by cell
+    private int[] flagCells = new int[0];
+    private int[] flags = new int[0];
+    private int flaggedCount;
+
+    private long searched;
+
+    public PortalAnalysis(GameState state) {
+        this.state = state;
+        Arrays.fill(fromCell, -1);
+        for (int i = 0; i < ENTITIES.length; i++) roots[i] = new int[0];
+    }
+
+    /**
+     * Turns from one entity to another, {@link #UNREACHABLE} if impossible or either is not placed.
+     * With several keys, exits, hospitals or minotaurs, from the nearest source to the nearest target.
+     */
+    public int turns(Entity source, Entity target) {
+        if (!update()) return UNREACHABLE;
+        int si = source.ordinal();
+        if (rootCount[si] == 0) return UNREACHABLE;
+        if (target == Entity.EXIT) {
+            if (!toExitValid) return UNREACHABLE;
+            int best = UNREACHABLE;
+            for (int i = 0; i < rootCount[si]; i++) best = nearer(best, toExit[roots[si][i]]);
+            return best;
+        }
+        int ti = target.ordinal();
+        int[] f = from[si];
+        int best = UNREACHABLE;
+        for (int i = 0; i < rootCount[ti]; i++) best = nearer(best, f[roots[ti][i]]);
+        return best;
+    }
+
+    private static int nearer(int a, int b) {
+        return (a == UNREACHABLE || (b != UNREACHABLE && b < a)) ? b : a;
+    }
+
+    /** Flags of the portal at (x,y) (NO_DESTINATION, WALLED_IN, UNUSED, DEAD_END), 0 if none or no portal. */
+    public int portalFlags(int x, int y) {
+        if (!update() || x < 0 || y < 0 || x >= board.getSize() || y >= board.getSize()) return 0;
+        int i = Arrays.binarySearch(flagCells, 0, flaggedCount, board.cellOf(x, y));
+        return (i >= 0) ? flags[i] : 0;
+    }
+
+    /** Number of placed portals with the flag. */
+    public int countFlagged(int flag) {
+        if (!update()) return 0;
+        int count = 0;
+        for (int i = 0; i < flaggedCount; i++) {
+            if ((flags[i] & flag) != 0) count++;
+        }
+        return count;
+    }
+
+    /** Cells searched by the last update that changed anything (n*n for a whole field). */
+    public long searchedCells() {
+        return searched;
+    }
+
+    /** One line for the status bar: main distances and counts of problem portals. */
+    public String summary() {
+        if (!update()) return "";
+        StringBuilder sb = new StringBuilder("Turns:");
+        int start = sb.length();
+        appendTurns(sb, start, Entity.P1, Entity.KEY);
+        appendTurns(sb, start, Entity.P2, Entity.KEY);
+        appendTurns(sb, start, Entity.KEY, Entity.EXIT);
+        appendTurns(sb, start, Entity.HOSPITAL, Entity.KEY);
+        appendTurns(sb, start, Entity.MINOTAUR, Entity.P1);
+        appendTurns(sb, start, Entity.MINOTAUR, Entity.P2);
+        if (sb.length() == start) sb.append(" -");
+        sb.append(" | portals:");
+        start = sb.length();
+        appendFlag(sb, start, NO_DESTINATION, "no destination");
+        appendFlag(sb, start, WALLED_IN, "walled in");
+        appendFlag(sb, start, UNUSED, "unused");
+        appendFlag(sb, start, DEAD_END, "dead end");
+        if (sb.length() == start) sb.append(" ok");
+        return sb.toString();
+    }
+
+    private void appendTurns(StringBuilder sb, int start, Entity source, Entity target) {
+        if (rootCount[source.ordinal()] == 0 || rootCount[target.ordinal()] == 0) return;
+        int t = turns(source, target);
+        sb.append(sb.length() == start ? " " : ", ").append(source).append("→").append(target).append(' ');
+        if (t == UNREACHABLE) sb.append('-');
+        else sb.append(t);
+    }
+
+    private void appendFlag(StringBuilder sb, int start, int flag, String name) {
+        int count = countFlagged(flag);
+        if (count == 0) return;
+        sb.append(sb.length() == start ? " " : ", ").append(count).append(' ').append(name);
+    }
+
+    /** Brings fields and flags up to date; false if there is no board. */
+    private boolean update() {
+        Board b = state.getBoard();
+        if (b == null) {
+            board = null;
+            search = null;
+            return false;
+        }
+        boolean all = (b != board || b.getWallVersion() != wallVersion || search == null);
+        boolean portalsChanged = all || state.portals.getVersion() != portalVersion;
+        if (!portalsChanged && !entitiesMoved()) return true;
+
+        if (all) {
+            board = b;
+            wallVersion = b.getWallVersion();
+            search = new MazeSearch(b, state.portals);
+        }
+        portalVersion = state.portals.getVersion();
+        if (portalsChanged) diffPortals(!all);
+        else changedCount = 0;
+
+        searched = 0;
+        int cells = b.getSize() * b.getSize();
+        boolean exitsMoved = false;
+        for (int i = 0; i < ENTITIES.length; i++) {
+            Entity e = ENTITIES[i];
+            boolean moved = all || moved(e);
+            if (moved) {
+                readRoots(e);
+                if (e == Entity.EXIT) exitsMoved = true;
+            }
+            if (rootCount[i] == 0) continue;
+            if (moved) {
+                if (from[i] == null || from[i].length != cells) from[i] = new int[cells];
+                search.distancesFrom(roots[i], rootCount[i], from[i]);
+                searched += cells;
+            } else if (changedCount > 0) {
+                searched += search.repairFrom(roots[i], rootCount[i], from[i], changed, changedCount);
+            }
+        }
+
+        int exits = Entity.EXIT.ordinal();
+        if (rootCount[exits] == 0) {
+            toExitValid = false;
+        } else if (exitsMoved || !toExitValid) {
+            if (toExit == null || toExit.length != cells) toExit = new int[cells];
+            search.distancesTo(roots[exits], rootCount[exits], toExit);
+            toExitValid = true;
+            searched += cells;
+        } else if (changedCount > 0) {
+            searched += search.repairTo(roots[exits], rootCount[exits], toExit, changed, changedCount);
+        }
+
+        computeFlags();
+        return true;
+    }
+
+    private boolean entitiesMoved() {
+        for (Entity e : ENTITIES) {
+            if (moved(e)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Has the entity moved since its field was searched: O(1) for players, exits and hospitals (by their
+     * grid version), keys and minotaurs are compared with the roots one by one.
+     */
+    private boolean moved(Entity e) {
+        int i = e.ordinal();
+        int kind = staticKind(e);
+        if (kind != 0) return state.entities.getVersion(kind) != fromVersion[i];
+        if (isPiece(e)) return pieceCells(e, roots[i], true) != rootCount[i];
+        return entityCell(e) != fromCell[i];
+    }
+
+    /** Takes the entity's current cells as the sources of its field. */
+    private void readRoots(Entity e) {
+        int i = e.ordinal();
+        int kind = staticKind(e);
+        if (isPiece(e)) {
+            int count = isKey(e) ? state.keyCount() : state.minotaurCount();
+            if (roots[i].length < count) roots[i] = new int[count];
+            rootCount[i] = pieceCells(e, roots[i], false);
+            return;
+        }
+        if (kind == 0) {
+            int cell = entityCell(e);
+            fromCell[i] = cell;
+            if (roots[i].length == 0) roots[i] = new int[1];
+            roots[i][0] = cell;
+            rootCount[i] = (cell >= 0) ? 1 : 0;
+            return;
+        }
+        EntityGrid entities = state.entities;
+        int count = entities.count(kind);
+        if (roots[i].length < count) roots[i] = new int[count];
+        for (int j = 0; j < count; j++) roots[i][j] = board.cellOf(entities.x(kind, j), entities.y(kind, j));
+        rootCount[i] = count;
+        fromVersion[i] = entities.getVersion(kind);
+    }
+
+    private static boolean isPiece(Entity e) {
+        return e == Entity.KEY || e == Entity.MINOTAUR;
+    }
+
+    private static boolean isKey(Entity e) {
+        return e == Entity.KEY;
+    }
+
+    /**
+     * Cells of the keys on the board or the living minotaurs, in slot order, written into out; returns their
+     * number. With compare, out is only read: the count is returned while the cells match, -1 at the first
+     * that does not.
+     */
+    private int pieceCells(Entity e, int[] out, boolean compare) {
+        boolean key = isKey(e);
+        int slots = key ? state.keyCount() : state.minotaurCount();
+        int count = 0;
+        for (int j = 0; j < slots; j++) {
+            int x = key ? state.keyX(j) : state.minotaurX(j);
+            int y = key ? state.keyY(j) : state.minotaurY(j);
+            if (x < 0 || y < 0) continue;
+            int cell = board.cellOf(x, y);
+            if (!compare) out[count] = cell;
+            else if (count >= out.length || out[count] != cell) return -1;
+            count++;
+        }
+        return count;
+    }
+
+    private static int staticKind(Entity e) {
+        if (e == Entity.EXIT) return EntityGrid.EXIT;
+        if (e == Entity.HOSPITAL) return EntityGrid.HOSPITAL;
+        return 0;
+    }
+
+    /** Lists the placed portals, compares them with the previous run and tells the search what changed. */
+    private void diffPortals(boolean tellSearch) {
+        PortalNetwork portals = state.portals;
+        int count = 0;
+        for (PortalNetwork.Type type : PortalNetwork.Type.values()) {
+            for (int g = 0; g < portals.groupCount(type); g++) {
+                for (int i = 0; i < portals.groupSize(type, g); i++) {
+                    int x = portals.portalX(type, g, i);
+                    if (x < 0) continue;
+                    int cell = board.cellOf(x, portals.portalY(type, g, i));
+                    if (count == scratch.length) scratch = Arrays.copyOf(scratch, Math.max(16, count * 2));
+                    scratch[count++] = ((long) cell << 32) | (portals.destinationFrom(cell) + 1);
+                }
+            }
+        }
+        Arrays.sort(scratch, 0, count);
+
+        changedCount = 0;
+        int a = 0, b = 0;
+        while (a < knownCount || b < count) {
+            long oldEntry = (a < knownCount) ? known[a] : Long.MAX_VALUE;
+            long newEntry = (b < count) ? scratch[b] : Long.MAX_VALUE;
+            int oldCell = (int) (oldEntry >>> 32), newCell = (int) (newEntry >>> 32);
+            if (oldCell == newCell) {
+                if (oldEntry != newEntry) addChange(oldCell, (int) oldEntry - 1, (int) newEntry - 1);
+                a++;
+                b++;
+            } else if (oldEntry < newEntry) {
+                addChange(oldCell, (int) oldEntry - 1, -1);
+                a++;
+            } else {
+                addChange(newCell, -1, (int) newEntry - 1);
+                b++;
+            }
+        }
+
+        long[] t = known;
+        known = scratch;
+        knownCount = count;
+        scratch = t;
+
+        if (tellSearch) {
+            for (int i = 0; i < changedCount; i += 3) search.portalChanged(changed[i]);
+        }
+    }
+
+    private void addChange(int cell, int oldDest, int newDest) {
+        if (changedCount + 3 > changed.length) changed = Arrays.copyOf(changed, Math.max(24, changed.length * 2));
+        changed[changedCount++] = cell;
+        changed[changedCount++] = oldDest;
+        changed[changedCount++] = newDest;
+    }
+
+    private void computeFlags() {
+        if (flagCells.length < knownCount) {
+            flagCells = new int[knownCount];
+            flags = new int[knownCount];
+        }
+        int[] p1 = (rootCount[Entity.P1.ordinal()] > 0) ? from[Entity.P1.ordinal()] : null;
+        int[] p2 = (rootCount[Entity.P2.ordinal()] > 0) ? from[Entity.P2.ordinal()] : null;
+        int[] exit = toExitValid ? toExit : null;
+
+        flaggedCount = 0;
+        for (int i = 0; i < knownCount; i++) {
+            int cell = (int) (known[i] >>> 32);
+            int dest = (int) known[i] - 1;
+            int f = 0;
+            if (dest < 0) {
+                f |= NO_DESTINATION;
+            } else {
+                if (board.moveMask(dest) == 0) f |= WALLED_IN;
+                if (exit != null && exit[dest] == UNREACHABLE) f |= DEAD_END;
+            }
+            if ((p1 != null || p2 != null) && !entered(p1, cell) && !entered(p2, cell)) f |= UNUSED;
+            if (f != 0) {
+                flagCells[flaggedCount] = cell;
+                flags[flaggedCount++] = f;
+            }
+        }
+    }
+
+    /** Can the player of the field get onto the portal cell: teleported there, or stepping in from a neighbour? */
+    private boolean entered(int[] field, int cell) {
+        if (field == null) return false;
+        if (field[cell] != UNREACHABLE) return true;
+        int mask = board.moveMask(cell);
+        for (Direction dir : DIRECTIONS) {
+            if ((mask & dir.mask) != 0 && field[cell + board.cellDelta(dir)] != UNREACHABLE) return true;
+        }
+        return false;
+    }
+
+    /** Cell of player 1 or 2, -1 if not placed. */
+    private int entityCell(Entity e) {
+        GameState.PlayerState p = (e == Entity.P1) ? state.p1 : state.p2;
+        if (p.x() < 0 || p.y() < 0) return -1;
+        return board.cellOf(p.x(), p.y());
+    }
+}
@@ -1,14 +1,21 @@
-import java.util.*;
+import java.util.Arrays;
 
 /**
  * Portal storage with dynamic groups:
  *  - PAIR groups: size 2, teleport goes to (index+1) mod 2
- *  - CYCLE groups: size 3 (for now), teleport goes to (index+1) mod 3
+ *  - CYCLE groups: any size from 2, teleport goes to (index+1) mod size
  *
- * Also maintains fast lookup from a board cell to a portal reference.
+ * Everything is flat int arrays. Portals of one type are numbered slots, a group is a run of
+ * consecutive slots, and a slot keeps its position and the cell its teleport leads to (kept up to
+ * date when a portal of the group moves). An open-addressing table maps a board cell to the slot standing
+ * there, so portalAt / destinationFrom are one probe (expected) each and allocate nothing. Its memory
+ * follows the number of portals, not the board: one portal on a 40000x40000 maze costs a few dozen bytes.
  */
 public final class PortalNetwork {
 
+    private static final int EMPTY = -1;
+    private static final int MIN_CAPACITY = 8;
+
     public enum Type { PAIR, CYCLE }
 
     /** Reference to a portal inside the network: (type, group, index-in-group). */
@@ -24,67 +31,169 @@ public final class PortalNetwork {
         }
     }
 
-    // Each group is an array of positions; position = int[2]{x,y}. Unplaced = {-1,-1}.
-    private final ArrayList<int[][]> pairGroups = new ArrayList<>();   // each group is [2][2]
-    private final ArrayList<int[][]> cycleGroups = new ArrayList<>();  // each group is [3][2] (for now)
+    /** Groups of one type: slots of group g are start[g] .. start[g + 1] - 1. */
+    private static final class Groups {
+        final Type type;
+        int count;
+        int[] start = {0};
+        int slots;
+        int[] xs = new int[0], ys = new int[0]; // -1 = not placed
+        int[] dest = new int[0];               // cell of the next portal of the group, -1 = not placed
+        int[] group = new int[0];
+        Ref[] refs = new Ref[0];                // one per slot, so portalAt does not allocate
+
+        Groups(Type type) {
+            this.type = type;
+        }
+
+        int add(int size) {
+            if (count + 2 > start.length) start = Arrays.copyOf(start, start.length * 2);
+            if (slots + size > xs.length) {
+                int cap = Math.max(slots + size, xs.length * 2);
+                xs = Arrays.copyOf(xs, cap);
+                ys = Arrays.copyOf(ys, cap);
+                dest = Arrays.copyOf(dest, cap);
+                group = Arrays.copyOf(group, cap);
+                refs = Arrays.copyOf(refs, cap);
+            }
+            int g = count++;
+            for (int i = 0; i < size; i++, slots++) {
+                xs[slots] = -1;
+                ys[slots] = -1;
+                dest[slots] = -1;
+                group[slots] = g;
+                refs[slots] = new Ref(type, g, i);
+            }
+            start[count] = slots;
+            return g;
+        }
+
+        int slot(int g, int index) {
+            if (g < 0 || g >= count || index < 0 || index >= start[g + 1] - start[g]) {
+                throw new IndexOutOfBoundsException(type + " portal " + g + ":" + index);
+            }
+            return start[g] + index;
+        }
+
+        int next(int s) {
+            int g = group[s];
+            return (s + 1 == start[g + 1]) ? start[g] : s + 1;
+        }
+
+        int prev(int s) {
+            int g = group[s];
+            return (s == start[g]) ? start[g + 1] - 1 : s - 1;
+        }
+    }
+
+    private final Groups[] groups = {new Groups(Type.PAIR), new Groups(Type.CYCLE)};
+
+    private int n;       // board size the cell index is for
+    private int version; // bumped on every placement / removal, so caches can tell the portals changed
 
-    // cell -> portal ref
-    private final HashMap<Long, Ref> cellToPortal = new HashMap<>();
+    // cell index: cells[i] -> codes[i] = (slot << 1 | type ordinal) + 1
+    private int[] cells;
+    private int[] codes;
+    private int used;
+    private int shift;
 
-    private static long key(int x, int y) {
-        return (((long) x) << 32) ^ (y & 0xffffffffL);
+    public PortalNetwork() {
+        emptyIndex();
     }
 
-    private static int[][] newGroup(int size) {
-        int[][] g = new int[size][2];
-        for (int i = 0; i < size; i++) {
-            g[i][0] = -1;
-            g[i][1] = -1;
+    /** Board the cells refer to; a new size re-indexes the placed portals (those off the board are dropped). */
+    public void setBoardSize(int size) {
+        if (size == n) return;
+        n = size;
+        emptyIndex();
+        for (Groups gs : groups) {
+            for (int s = 0; s < gs.slots; s++) {
+                if (gs.xs[s] >= n || gs.ys[s] >= n) unplace(gs, s);
+            }
+            for (int s = 0; s < gs.slots; s++) {
+                if (gs.xs[s] >= 0) index(gs, s);
+            }
         }
-        return g;
     }
 
     public void clear() {
-        pairGroups.clear();
-        cycleGroups.clear();
-        cellToPortal.clear();
+        for (Groups gs : groups) {
+            gs.count = 0;
+            gs.slots = 0;
+        }
+        emptyIndex();
+        version++;
+    }
+
+    public int getVersion() {
+        return version;
     }
 
     public int addPairGroup() {
-        pairGroups.add(newGroup(2));
-        return pairGroups.size() - 1;
+        return groups[Type.PAIR.ordinal()].add(2);
     }
 
-    public int addCycleGroup3() {
-        cycleGroups.add(newGroup(3));
-        return cycleGroups.size() - 1;
+    /** Adds an empty cycle of size portals (at least 2) and returns its group index. */
+    public int addCycleGroup(int size) {
+        if (size < 2) throw new IllegalArgumentException("cycle of " + size);
+        return groups[Type.CYCLE.ordinal()].add(size);
     }
 
-    public List<int[][]> getPairGroups() {
-        return Collections.unmodifiableList(pairGroups);
+    /** Adds an empty group of the type: a pair, or a cycle of size portals. */
+    public int addGroup(Type type, int size) {
+        return (type == Type.PAIR) ? addPairGroup() : addCycleGroup(size);
     }
 
-    public List<int[][]> getCycleGroups() {
-        return Collections.unmodifiableList(cycleGroups);
+    /** Drops groups past the first count (with their placed portals); used by editor undo. */
+    public void truncateGroups(Type type, int count) {
+        Groups gs = groups[type.ordinal()];
+        if (count >= gs.count) return;
+        for (int s = gs.start[count]; s < gs.slots; s++) {
+            if (gs.xs[s] >= 0) removeCell(gs.ys[s] * n + gs.xs[s]);
+        }
+        gs.count = count;
+        gs.slots = gs.start[count];
+        version++;
     }
 
-    /** Returns portal ref at cell, or null. */
-    public Ref portalAt(int x, int y) {
-        return cellToPortal.get(key(x, y));
+    public int groupCount(Type type) {
+        return groups[type.ordinal()].count;
     }
 
-    /** Removes portal from cell if present. */
-    public void removeAt(int x, int y) {
-        Ref ref = cellToPortal.remove(key(x, y));
-        if (ref == null) return;
-        int[][] g = groupArray(ref.type, ref.group);
-        g[ref.index][0] = -1;
-        g[ref.index][1] = -1;
+    public int groupSize(Type type, int group) {
+        Groups gs = groups[type.ordinal()];
+        gs.slot(group, 0);
+        return gs.start[group + 1] - gs.start[group];
+    }
+
+    /** X of portal (type, group, index), -1 if not placed. */
+    public int portalX(Type type, int group, int index) {
+        Groups gs = groups[type.ordinal()];
+        return gs.xs[gs.slot(group, index)];
+    }
+
+    public int portalY(Type type, int group, int index) {
+        Groups gs = groups[type.ordinal()];
+        return gs.ys[gs.slot(group, index)];
+    }
+
+    /** Returns portal ref at cell, or null. */
+    public Ref portalAt(int x, int y) {
+        int code = code(x, y);
+        if (code == 0) return null;
+        return groups[(code - 1) & 1].refs[(code - 1) >>> 1];
     }
 
     /** Returns true if any portal already occupies cell (x,y). */
     public boolean hasPortalAt(int x, int y) {
-        return cellToPortal.containsKey(key(x, y));
+        return code(x, y) != 0;
+    }
+
+    /** Removes portal from cell if present. */
+    public void removeAt(int x, int y) {
+        int code = code(x, y);
+        if (code == 0) return;
+        unplace(groups[(code - 1) & 1], (code - 1) >>> 1);
     }
 
     /**
@@ -92,45 +201,137 @@ public final class PortalNetwork {
      * Fails if (x,y) already has ANY portal.
      */
     public boolean place(Type type, int group, int index, int x, int y) {
-        long k = key(x, y);
-        if (cellToPortal.containsKey(k)) return false;
-
-        int[][] g = groupArray(type, group);
+        Groups gs = groups[type.ordinal()];
+        int s = gs.slot(group, index);
+        if (n == 0) throw new IllegalStateException("board size is not set");
+        if (x < 0 || y < 0 || x >= n || y >= n) throw new IndexOutOfBoundsException("cell " + x + "," + y);
+        if (lookup(y * n + x) != 0) return false;
 
         // if this portal already placed elsewhere -> remove old mapping
-        int oldX = g[index][0], oldY = g[index][1];
-        if (oldX >= 0 && oldY >= 0) {
-            cellToPortal.remove(key(oldX, oldY));
-        }
+        if (gs.xs[s] >= 0) unplace(gs, s);
 
-        g[index][0] = x;
-        g[index][1] = y;
-        cellToPortal.put(k, new Ref(type, group, index));
+        gs.xs[s] = x;
+        gs.ys[s] = y;
+        index(gs, s);
         return true;
     }
 
+    /** Destination cell of the portal at cell (next index in its group), or -1 if none or not placed yet. */
+    public int destinationFrom(int cell) {
+        int code = lookup(cell);
+        if (code == 0) return -1;
+        return groups[(code - 1) & 1].dest[(code - 1) >>> 1];
+    }
+
     /**
-     * Computes destination cell for portal you are standing on.
-     * Rule: nextIndex = (index + 1) mod groupSize.
-     * Returns null if destination portal is not placed yet.
+     * Cell of the portal that teleports INTO cell (previous index in the group),
+     * or -1 if cell is not a portal or that portal is not placed.
      */
-    public int[] destinationFrom(int x, int y) {
-        Ref from = portalAt(x, y);
-        if (from == null) return null;
+    public int sourceOf(int cell) {
+        int code = lookup(cell);
+        if (code == 0) return -1;
+        Groups gs = groups[(code - 1) & 1];
+        int p = gs.prev((code - 1) >>> 1);
+        return (gs.xs[p] >= 0) ? gs.ys[p] * n + gs.xs[p] : -1;
+    }
+
+    private int code(int x, int y) {
+        if (x < 0 || y < 0 || x >= n || y >= n) return 0;
+        return lookup(y * n + x);
+    }
+
+    /** Writes slot s into the cell index and points the previous portal of its group at it. */
+    private void index(Groups gs, int s) {
+        int cell = gs.ys[s] * n + gs.xs[s];
+        putCell(cell, ((s << 1) | gs.type.ordinal()) + 1);
+        version++;
+        gs.dest[gs.prev(s)] = cell;
+        int next = gs.next(s);
+        gs.dest[s] = (gs.xs[next] >= 0) ? gs.ys[next] * n + gs.xs[next] : -1;
+    }
+
+    private void unplace(Groups gs, int s) {
+        if (gs.xs[s] < 0) return;
+        if (gs.xs[s] < n && gs.ys[s] < n) removeCell(gs.ys[s] * n + gs.xs[s]);
+        gs.xs[s] = -1;
+        gs.ys[s] = -1;
+        gs.dest[gs.prev(s)] = -1;
+        version++;
+    }
+
+    // ===== cell index =====
+
+    /** Code of the portal at cell, 0 = none. */
+    private int lookup(int cell) {
+        if (used == 0) return 0;
+        int i = find(cell);
+        return (cells[i] == EMPTY) ? 0 : codes[i];
+    }
 
-        int[][] g = groupArray(from.type, from.group);
-        int size = g.length;
+    private void putCell(int cell, int code) {
+        int i = find(cell);
+        if (cells[i] == EMPTY) {
+            if (2 * (used + 1) > cells.length) {
+                grow();
+                i = find(cell);
+            }
+            cells[i] = cell;
+            used++;
+        }
+        codes[i] = code;
+    }
 
-        int next = from.index + 1;
-        if (next >= size) next = 0;
+    private void removeCell(int cell) {
+        int i = find(cell);
+        if (cells[i] != EMPTY) delete(i);
+    }
 
-        int tx = g[next][0], ty = g[next][1];
-        if (tx < 0 || ty < 0) return null;
-        return new int[]{tx, ty};
+    private void emptyIndex() {
+        cells = new int[MIN_CAPACITY];
+        Arrays.fill(cells, EMPTY);
+        codes = new int[MIN_CAPACITY];
+        shift = 32 - Integer.numberOfTrailingZeros(MIN_CAPACITY);
+        used = 0;
     }
 
-    private int[][] groupArray(Type type, int groupIndex) {
-        if (type == Type.PAIR) return pairGroups.get(groupIndex);
-        return cycleGroups.get(groupIndex);
+    /** Twice the slots, so the load factor stays <= 1/2. */
+    private void grow() {
+        int[] oldCells = cells, oldCodes = codes;
+        cells = new int[oldCells.length * 2];
+        Arrays.fill(cells, EMPTY);
+        codes = new int[cells.length];
+        shift--;
+        for (int j = 0; j < oldCells.length; j++) {
+            if (oldCells[j] == EMPTY) continue;
+            int i = find(oldCells[j]);
+            cells[i] = oldCells[j];
+            codes[i] = oldCodes[j];
+        }
+    }
+
+    private int home(int cell) {
+        return (cell * 0x9E3779B9) >>> shift;
+    }
+
+    /** Index holding cell, or the free one where it would go. */
+    private int find(int cell) {
+        int i = home(cell);
+        while (cells[i] != EMPTY && cells[i] != cell) i = (i + 1) & (cells.length - 1);
+        return i;
+    }
+
+    /** Frees index i, moving later entries of its probe run back so lookups still find them. */
+    private void delete(int i) {
+        int mask = cells.length - 1;
+        for (int j = (i + 1) & mask; cells[j] != EMPTY; j = (j + 1) & mask) {
+            int h = home(cells[j]);
+            if (((j - h) & mask) >= ((j - i) & mask)) {
+                cells[i] = cells[j];
+                codes[i] = codes[j];
+                i = j;
+            }
+        }
+        cells[i] = EMPTY;
+        used--;
     }
 }
@@ -0,0 +1,87 @@
+import java.util.Arrays;
+
+/**
+ * Checks that a set-up game can be won: for each player, is a KEY reachable, is an EXIT reachable
+ * after picking one up, and how many turns the shortest win takes (over every key, to the nearest exit).
+ * Walls and portals follow the engine rules (see MazeSearch); minotaur cells are treated as impassable
+ * (walking into one kills).
+ *
+ * Three searches whatever the number of players and keys: turns from every cell to an exit, then to a key,
+ * then to a win through the best key (a search that takes each key in at its own turns to the exit).
+ */
+public final class SolvabilityChecker {
+
+    public static final class PlayerReport {
+        public final int playerIndex;
+        public final boolean keyReachable;
+        public final boolean exitReachableWithKey;
+        public final int turnsToKey; // nearest key, -1 if unreachable
+        public final int turnsToWin; // key + exit, -1 if impossible
+
+        PlayerReport(int playerIndex, int turnsToKey, int turnsToWin) {
+            this.playerIndex = playerIndex;
+            this.keyReachable = turnsToKey >= 0;
+            this.exitReachableWithKey = turnsToWin >= 0;
+            this.turnsToKey = turnsToKey;
+            this.turnsToWin = turnsToWin;
+        }
+
+        public boolean canWin() {
+            return turnsToWin >= 0;
+        }
+    }
+
+    private SolvabilityChecker() {
+    }
+
+    /** Requires board, a key, an exit and every player to be placed. Returns reports for players 1..playerCount(). */
+    public static PlayerReport[] check(GameState state) {
+        Board board = state.getBoard();
+        MazeSearch search = new MazeSearch(board, state.portals);
+        EntityGrid entities = state.entities;
+        int cells = board.getSize() * board.getSize();
+
+        int[] minotaurs = new int[state.minotaurCount()];
+        int m = 0;
+        for (int i = 0; i < state.minotaurCount(); i++) {
+            if (state.minotaurX(i) >= 0) minotaurs[m++] = board.cellOf(state.minotaurX(i), state.minotaurY(i));
+        }
+
+        int[] exits = new int[entities.count(EntityGrid.EXIT)];
+        for (int i = 0; i < exits.length; i++) {
+            exits[i] = board.cellOf(entities.x(EntityGrid.EXIT, i), entities.y(EntityGrid.EXIT, i));
+        }
+        int[] field = new int[cells];
+        search.distancesTo(exits, null, exits.length, minotaurs, m, field);
+
+        // keys by turns to the nearest exit, those without one left out of the win search
+        int[] keys = new int[state.keysOnBoard()];
+        long[] byExit = new long[keys.length];
+        int k = 0, winnable = 0;
+        for (int i = 0; i < state.keyCount(); i++) {
+            if (state.keyX(i) < 0) continue;
+            int c = board.cellOf(state.keyX(i), state.keyY(i));
+            keys[k++] = c;
+            if (field[c] != MazeSearch.UNREACHABLE) byExit[winnable++] = ((long) field[c] << 32) | c;
+        }
+        Arrays.sort(byExit, 0, winnable);
+        int[] winKeys = new int[winnable], winStarts = new int[winnable];
+        for (int i = 0; i < winnable; i++) {
+            winKeys[i] = (int) byExit[i];
+            winStarts[i] = (int) (byExit[i] >>> 32);
+        }
+
+        int[] toWin = new int[cells];
+        search.distancesTo(winKeys, winStarts, winnable, minotaurs, m, toWin);
+        int[] toKey = field; // the exit field is not needed any more
+        search.distancesTo(keys, null, k, minotaurs, m, toKey);
+
+        PlayerReport[] reports = new PlayerReport[state.playerCount()];
+        for (int i = 1; i <= reports.length; i++) {
+            GameState.PlayerState p = state.player(i);
+            int start = board.cellOf(p.x(), p.y());
+            reports[i - 1] = new PlayerReport(i, toKey[start], toWin[start]);
+        }
+        return reports;
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Status bar text from GameEngine events. Only the last event of an action is kept (as plain
+ * fields, nothing is allocated per event); the text is built by {@link #format} when the status
+ * bar actually shows it, once per action.
+ */
+public final class StatusLine implements GameEventListener {
+
+    private enum Kind { NONE, MOVED, BLOCKED, REJECTED, TELEPORTED, KEY_PICKED, EXIT_LOCKED, SHOT, KNIFE_MISSED,
+        KILLED, RESPAWNED, ELIMINATED, TURN_ENDED, GAME_OVER }
+
+    private Kind kind = Kind.NONE;
+    private int player, x, y;
+    private boolean flag;   // teleported: atTurnEnd, shot: hit
+    private int count;      // shot: shots left
+    private Rejection rejection;
+
+    // last kill: respawned/eliminated come right after it and are shown together with it
+    private int victim, killer, killX, killY;
+    private Cause cause;
+
+    public boolean hasEvent() {
+        return kind != Kind.NONE;
+    }
+
+    public void clear() {
+        kind = Kind.NONE;
+    }
+
+    @Override
+    public void moved(int player, int fromX, int fromY, int toX, int toY) {
+        set(Kind.MOVED, player, toX, toY);
+    }
+
+    @Override
+    public void blocked(int player, Direction dir) {
+        set(Kind.BLOCKED, player, -1, -1);
+    }
+
+    @Override
+    public void rejected(int player, Rejection reason) {
+        set(Kind.REJECTED, player, -1, -1);
+        rejection = reason;
+    }
+
+    @Override
+    public void teleported(int player, int fromX, int fromY, int toX, int toY, boolean atTurnEnd) {
+        set(Kind.TELEPORTED, player, toX, toY);
+        flag = atTurnEnd;
+    }
+
+    @Override
+    public void keyPicked(int player, int x, int y) {
+        set(Kind.KEY_PICKED, player, x, y);
+    }
+
+    @Override
+    public void exitLocked(int player) {
+        set(Kind.EXIT_LOCKED, player, -1, -1);
+    }
+
+    @Override
+    public void shot(int player, Direction dir, boolean hit, int shotsLeft) {
+        set(Kind.SHOT, player, -1, -1);
+        flag = hit;
+        count = shotsLeft;
+    }
+
+    @Override
+    public void knifeMissed(int player, int x, int y) {
+        set(Kind.KNIFE_MISSED, player, x, y);
+    }
+
+    @Override
+    public void killed(int victim, Cause cause, int killer, int x, int y) {
+        set(Kind.KILLED, victim, x, y);
+        this.victim = victim;
+        this.cause = cause;
+        this.killer = killer;
+        this.killX = x;
+        this.killY = y;
+    }
+
+    @Override
+    public void respawned(int player, int x, int y) {
+        set(Kind.RESPAWNED, player, x, y);
+    }
+
+    @Override
+    public void eliminated(int player) {
+        set(Kind.ELIMINATED, player, -1, -1);
+    }
+
+    @Override
+    public void turnEnded(int nextPlayer) {
+        set(Kind.TURN_ENDED, nextPlayer, -1, -1);
+    }
+
+    @Override
+    public void gameOver(int winner) {
+        set(Kind.GAME_OVER, winner, -1, -1);
+    }
+
+    /** Text for the last event ("" if there was none); state supplies shots left and the game-over message. */
+    public String format(GameState state) {
+        switch (kind) {
+            case MOVED: return "Player " + player + " moved to (" + x + "," + y + ")";
+            case BLOCKED: return "Blocked by wall/border. Player " + player;
+            case REJECTED:
+                return (rejection == Rejection.NO_SHOTS) ? "Player " + player + ": no shots left" : state.gameOverMessage();
+            case TELEPORTED:
+                return "Player " + player + " portal (" + (flag ? "end-turn" : "landing") + ") -> (" + x + "," + y + ")";
+            case KEY_PICKED: return "Player " + player + " picked up KEY";
+            case EXIT_LOCKED: return "Need KEY to exit!";
+            case SHOT: return "Player " + player + " shot: " + (flag ? "HIT" : "MISS") + " (shots left " + count + ")";
+            case KNIFE_MISSED: return "Player " + player + " knife: no target at (" + x + "," + y + ")";
+            case KILLED: return killText();
+            case RESPAWNED: return killText() + " -> respawn to HOSPITAL (" + x + "," + y + ")";
+            case ELIMINATED: return killText() + " -> NO HOSPITAL (player removed)";
+            case TURN_ENDED: {
+                GameState.PlayerState p = state.player(player);
+                return "Turn: Player " + player + " (shots " + p.shotsLeft() + ")";
+            }
+            case GAME_OVER: return state.gameOverMessage();
+            default: return "";
+        }
+    }
+
+    private String killText() {
+        String at = " at (" + killX + "," + killY + ")";
+        if (victim == MINOTAUR) {
+            return "Player " + killer + (cause == Cause.SHOT ? " shot" : " knifed") + " MINOTAUR" + at;
+        }
+        switch (cause) {
+            case MINOTAUR: return "Player " + victim + " died (MINOTAUR)";
+            case SHOT: return "Player " + killer + " shot player " + victim + at;
+            default: return "Player " + killer + " knifed player " + victim + at;
+        }
+    }
+
+    private void set(Kind kind, int player, int x, int y) {
+        this.kind = kind;
+        this.player = player;
+        this.x = x;
+        this.y = y;
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size table of search results keyed by {@link GameState#hash()}, shared by all search threads
+ * without locks. An entry is a playout count and the mean reward of player 1 from that position.
+ *
+ * Every slot is two longs, (hash ^ data, data), written and read with opaque (atomic, unordered)
+ * accesses. A reader whose two loads come from different writes sees a check that does not match
+ * and takes the slot as empty, so racing writers can lose an update but never corrupt one.
+ * Slots are grouped in buckets of two: the first keeps the entry with more playouts, the second
+ * takes whatever comes, so a well-searched position is not pushed out by a stream of fresh ones.
+ */
+public final class TranspositionTable {
+
+    private static final int SLOT_LONGS = 2;
+    private static final int BUCKET_LONGS = 2 * SLOT_LONGS;
+
+    private final AtomicLongArray slots;
+    private final int bucketMask;
+
+    /** @param entries rounded up to a power of two, at least 2 */
+    public TranspositionTable(int entries) {
+        int buckets = Integer.highestOneBit(Math.max(2, entries) - 1); // entries rounded up, / 2
+        this.bucketMask = buckets - 1;
+        this.slots = new AtomicLongArray(buckets * BUCKET_LONGS);
+    }
+
+    public int capacity() {
+        return slots.length() / SLOT_LONGS;
+    }
+
+    /** Entry of the position, 0 if it is not in the table (see {@link #visits} and {@link #mean}). */
+    public long probe(long hash) {
+        int b = bucket(hash);
+        for (int s = b; s < b + BUCKET_LONGS; s += SLOT_LONGS) {
+            long data = slots.getOpaque(s + 1);
+            if ((slots.getOpaque(s) ^ data) == hash && data != 0) return data;
+        }
+        return 0;
+    }
+
+    /** Adds one playout result (reward of player 1, 0..1) to the position's running mean. */
+    public void add(long hash, double reward) {
+        long e = probe(hash);
+        int n = visits(e) + 1;
+        if (n < 0) return; // saturated
+        double m = mean(e);
+        store(hash, entry(n, (float) (m + (reward - m) / n)));
+    }
+
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) slots.setOpaque(i, 0);
+    }
+
+    public static int visits(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    public static double mean(long entry) {
+        return Float.intBitsToFloat((int) entry);
+    }
+
+    private static long entry(int visits, float mean) {
+        return ((long) visits << 32) | (Float.floatToRawIntBits(mean) & 0xFFFFFFFFL);
+    }
+
+    private void store(long hash, long data) {
+        int b = bucket(hash);
+        int s;
+        if (matches(b, hash)) s = b;
+        else if (matches(b + SLOT_LONGS, hash)) s = b + SLOT_LONGS;
+        else s = (visits(data) >= visits(slots.getOpaque(b + 1))) ? b : b + SLOT_LONGS;
+        slots.setOpaque(s + 1, data);
+        slots.setOpaque(s, hash ^ data);
+    }
+
+    private boolean matches(int s, long hash) {
+        long data = slots.getOpaque(s + 1);
+        return (slots.getOpaque(s) ^ data) == hash && data != 0;
+    }
+
+    private int bucket(long hash) {
+        // both halves pick the bucket, the whole hash is the check
+        return (((int) hash ^ (int) (hash >>> 32)) & bucketMask) * BUCKET_LONGS;
+    }
+}
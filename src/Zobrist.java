@@ -0,0 +1,59 @@
+/**
+ * Zobrist keys for GameState.hash(): one pseudo-random 64-bit key per (feature, value), XORed together
+ * over the position. Keys are not stored in tables but computed by a bijective mix of the packed
+ * (feature, value), so any board size costs no memory and every game gets the same keys.
+ */
+public final class Zobrist {
+
+    // features
+    static final int TURN = 0;           // current player index
+    static final int TELEPORTED = 1;     // 0/1
+    static final int PLAYER = 2;         // + PLAYER_FEATURES * (index - 1) + one of the below
+    static final int AT = 0, HAS_KEY = 1, ALIVE = 2, SHOTS = 3; // HAS_KEY: carried key slot + 1
+    static final int PLAYER_FEATURES = 4;
+    static final int KEY = 1 << 29;      // + key slot: square of that key on the board
+    static final int MINOTAUR = 2 << 29; // + minotaur slot: square
+
+    private Zobrist() {}
+
+    static int player(int index, int feature) {
+        return PLAYER + PLAYER_FEATURES * (index - 1) + feature;
+    }
+
+    static int key(int slot) {
+        return KEY + slot;
+    }
+
+    static int minotaur(int slot) {
+        return MINOTAUR + slot;
+    }
+
+    /** Key of a piece standing on (x,y); 0 when it is not on the board (x or y < 0). */
+    static long square(int feature, int x, int y) {
+        if (x < 0 || y < 0) return 0;
+        // n * n fits an int, so x and y fit 16 bits each
+        return mix(((long) feature << 32) | ((long) x << 16) | y);
+    }
+
+    static long value(int feature, int v) {
+        return mix(((long) feature << 32) | (v & 0xFFFFFFFFL));
+    }
+
+    static long flag(int feature, boolean on) {
+        return on ? value(feature, 1) : 0;
+    }
+
+    /** Key of a value where 0 means "none" and hashes to nothing (like a piece off the board). */
+    static long optional(int feature, int v) {
+        return (v != 0) ? value(feature, v) : 0;
+    }
+
+    // SplitMix64 step: a bijection, so distinct packed inputs never share a key,
+    // and the +1 keeps the packed 0 (feature 0, value 0) off the zero key
+    private static long mix(long packed) {
+        long z = (packed + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}